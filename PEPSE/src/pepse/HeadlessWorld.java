@@ -0,0 +1,161 @@
+package pepse;
+
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.StreamingWindow;
+import pepse.world.Terrain;
+import pepse.world.WorldFrame;
+import pepse.world.WorldGenerator;
+import pepse.world.daynight.DayNightClock;
+import pepse.world.trees.Tree;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A world without a window, which a scripted avatar walks through. It streams frames in and out around
+ * the avatar the same way the game does, and builds them fully (terrain, trees and leaves), but does not
+ * add them to any game. The avatar is only an x which moves by the script: there is no avatar object, no
+ * physics, no collisions and no rendering, so the time of a step measures the generation and streaming of
+ * the world only, not a frame of the game. Every world holds its own state, so many of them can run in
+ * the same process, each on its own thread.
+ */
+public class HeadlessWorld {
+    /* Constants */
+    private static final float CYCLE_LENGTH = 50;
+    // the same layout as the game at its normal quality: one frame outside the screen on each side
+    private static final int STREAMING_MARGIN = 1;
+    // the traversal, as legs of seconds and horizontal velocity, which are repeated in order
+    private static final float[][] SCRIPT = {
+            {20, 300},
+            {5, -300},
+            {15, 900},
+            {10, -900}
+    };
+    private static final float SCRIPT_LENGTH = scriptLength();
+
+    /* Fields */
+    private final int seed;
+    private final int frameSize;
+    private final StreamingWindow streamingWindow;
+    private final WorldGenerator worldGenerator;
+    private final DayNightClock dayNightClock;
+    // the built frames in the window, by their minX
+    private final Map<Integer, WorldFrame> frames = new HashMap<>();
+    private float avatarX;
+    private float scriptTime;
+    private long framesBuilt;
+
+    /**
+     * Creates a world and builds the frames of its initial window.
+     *
+     * @param seed             The seed of the world.
+     * @param windowDimensions The dimensions of the window the world is generated for.
+     * @param pool             The pool which builds the frames, shared between worlds.
+     */
+    public HeadlessWorld(int seed, Vector2 windowDimensions, ForkJoinPool pool) {
+        this.seed = seed;
+        this.frameSize = StreamingWindow.frameSizeOf(windowDimensions.x());
+        this.streamingWindow = new StreamingWindow(frameSize, STREAMING_MARGIN);
+        Terrain terrain = new Terrain(null, 0, windowDimensions, seed);
+        Tree trees = new Tree(null, 0, 0, windowDimensions, seed, terrain::groundHeightAt);
+        this.worldGenerator = new WorldGenerator(terrain, trees, frameSize, seed, pool);
+        this.dayNightClock = new DayNightClock(windowDimensions, CYCLE_LENGTH);
+        this.avatarX = streamingWindow.getInitialAvatarX();
+        build(streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary());
+    }
+
+    /**
+     * Advances the world: the avatar walks by the script, and frames are streamed in and out around it.
+     *
+     * @param deltaTime The seconds of the step.
+     */
+    public void step(float deltaTime) {
+        avatarX += scriptedVelocity() * deltaTime;
+        scriptTime += deltaTime;
+        dayNightClock.update(deltaTime);
+
+        while (streamingWindow.shouldMoveRight(avatarX)) {
+            frames.remove(streamingWindow.getLeftBoundary());
+            streamingWindow.moveRight();
+            build(streamingWindow.getRightBoundary() - frameSize, streamingWindow.getRightBoundary());
+        }
+        while (streamingWindow.shouldMoveLeft(avatarX)) {
+            streamingWindow.moveLeft();
+            frames.remove(streamingWindow.getRightBoundary());
+            build(streamingWindow.getLeftBoundary(), streamingWindow.getLeftBoundary() + frameSize);
+        }
+    }
+
+    /**
+     * getter for the seed
+     *
+     * @return the seed of the world
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * getter for the number of built frames
+     *
+     * @return the number of frames which were built since the world was created
+     */
+    public long getFramesBuilt() {
+        return framesBuilt;
+    }
+
+    /**
+     * getter for the number of built columns
+     *
+     * @return the number of columns which were built since the world was created
+     */
+    public long getColumnsBuilt() {
+        return framesBuilt * (long) (frameSize / Block.SIZE);
+    }
+
+    /**
+     * getter for the place of the avatar
+     *
+     * @return the x of the avatar
+     */
+    public float getAvatarX() {
+        return avatarX;
+    }
+
+    /*
+     * the horizontal velocity of the avatar, by the leg of the script it is in
+     */
+    private float scriptedVelocity() {
+        float legTime = scriptTime % SCRIPT_LENGTH;
+        for (float[] leg : SCRIPT) {
+            if (legTime < leg[0]) {
+                return leg[1];
+            }
+            legTime -= leg[0];
+        }
+        return 0;
+    }
+
+    /*
+     * the seconds of a whole run of the script
+     */
+    private static float scriptLength() {
+        float scriptLength = 0;
+        for (float[] leg : SCRIPT) {
+            scriptLength += leg[0];
+        }
+        return scriptLength;
+    }
+
+    /*
+     * builds the frames of a range, and keeps them as the frames of the window
+     */
+    private void build(int minX, int maxX) {
+        for (WorldFrame frame : worldGenerator.generateInRange(minX, maxX)) {
+            frames.put(frame.getMinX(), frame);
+            framesBuilt++;
+        }
+    }
+}
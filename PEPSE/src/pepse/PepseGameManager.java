@@ -10,13 +10,26 @@ import danogl.gui.UserInputListener;
 import danogl.gui.WindowController;
 import danogl.gui.rendering.Camera;
 import danogl.util.Vector2;
+import pepse.util.SpriteAtlas;
 import pepse.world.*;
+import pepse.world.daynight.DayNightClock;
 import pepse.world.daynight.Night;
+import pepse.world.daynight.SkyBackdrop;
 import pepse.world.daynight.Sun;
 import pepse.world.daynight.SunHalo;
+import pepse.world.chunks.ChunkStore;
+import pepse.world.chunks.FrameArena;
 import pepse.world.trees.Tree;
 
 import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main class of the simulator.
@@ -26,29 +39,107 @@ public class PepseGameManager extends GameManager {
     private static final float GRAVITY_LEVEL = 500;
     private static final Color SUN_HALO_COLOR = new Color(255, 255, 0, 20);
     private static final Vector2 ENERGY_LEVEL_TEXT_VECTOR = new Vector2(100, 20);
+    private static final Vector2 AVATAR_DIMENSIONS = new Vector2(Block.SIZE + Block.SIZE / 3f, Block.SIZE * 2);
     private static final float CYCLE_LENGTH = 50;
 
     private static final int SEED = 3343;
     private static final String GAME_NAME = "PEPSE";
+    // when set to a directory, generated chunks and the outputs of every generation stage are kept there and
+    // read back on later runs
+    private static final String CHUNK_STORE_PROPERTY = "pepse.chunkStore";
+    // off-heap bytes for keeping frames which were streamed out, 0 to drop them
+    private static final String FRAME_ARENA_PROPERTY = "pepse.frameArenaBytes";
+    private static final int DEFAULT_FRAME_ARENA_BYTES = 4 << 20;
+    // true composites the sky, sun and halo into one image; the night darkens the world either way
+    private static final String SKY_BACKDROP_PROPERTY = "pepse.skyBackdrop";
+    private static final String SKY_REDRAW_RATE_PROPERTY = "pepse.skyRedrawRate";
+    private static final String DEFAULT_SKY_REDRAW_RATE = "30";
+    // steps per second of the avatar, which is drawn interpolated between steps, or 0 to move it once a frame
+    private static final String FIXED_STEP_RATE_PROPERTY = "pepse.fixedStepRate";
+    private static final String DEFAULT_FIXED_STEP_RATE = "0";
+    // a frame which is late by more steps than that drops the rest, instead of falling further behind
+    private static final int MAX_STEPS_PER_FRAME = 8;
+    // when set to a file, the session is restored from it on start, and saved to it on F5 and on exit
+    private static final String SAVE_FILE_PROPERTY = "pepse.saveFile";
+    private static final int SAVE_KEY = KeyEvent.VK_F5;
+    // estimated bytes which the live objects of the world may take, whatever the screen size, 0 for no cap
+    private static final String MEMORY_BUDGET_PROPERTY = "pepse.memoryBudgetBytes";
+    // seconds between checks of the budget, which is also checked whenever frames are streamed
+    private static final float MEMORY_BUDGET_PERIOD = 1;
+    // lower terrain this far above or below the camera exists too, so it is there before it scrolls in
+    private static final float VERTICAL_CULLING_MARGIN = 4 * Block.SIZE;
+    // true prints the counts of every frame's batch of world mutations which changed anything
+    private static final String LOG_MUTATIONS_PROPERTY = "pepse.logMutations";
+    // frames per second which the quality of the world is adapted to hold, or 0 to keep the normal quality
+    private static final String TARGET_FRAME_RATE_PROPERTY = "pepse.targetFrameRate";
+    private static final String DEFAULT_TARGET_FRAME_RATE = "0";
+    // true prints every change of the quality, with the frame time which caused it
+    private static final String LOG_QUALITY_PROPERTY = "pepse.logQuality";
+    private static final float NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+    // true audits the objects of the world in the game after every change of the window, and reports leaks
+    private static final String AUDIT_WORLD_PROPERTY = "pepse.auditWorld";
+    // dig the block in front of the avatar (or under it), and place a block of the last dug material there
+    private static final int DIG_KEY = KeyEvent.VK_Z;
+    private static final int PLACE_KEY = KeyEvent.VK_X;
+    // teleport this many frames ahead of the avatar, and print how long the destination took to be ready
+    private static final int TELEPORT_KEY = KeyEvent.VK_T;
+    private static final int TELEPORT_FRAMES = 50;
 
 
     /* Fields */
     private Avatar avatar;
     private Tree trees;
     private Terrain terrain;
+    private WorldGenerator worldGenerator;
+    private ChunkStore chunkStore;
+    private DayNightClock dayNightClock;
+    private SkyParticles skyParticles;
+    private MutationQueue mutations;
+    private SpatialIndex spatialIndex;
+    private WorldAuditor worldAuditor;
+    private boolean shouldAudit;
+    private boolean shouldLogMutations;
+    private UserInputListener inputListener;
+    private boolean wasSaveKeyPressed;
+    private boolean wasTeleportKeyPressed;
+    private float memoryBudgetTime;
+    private boolean isOverBudgetReported;
+    // whether the memory budget dropped the frames outside the screen, until the game is reset
+    private boolean isWindowShrunk;
+    private QualityController qualityController;
+    private boolean shouldLogQuality;
+
+    /* Edits */
+    private WorldEdits edits;
+    private boolean wasDigKeyPressed;
+    private boolean wasPlaceKeyPressed;
+    private boolean isFacingRight;
+    private SurfaceMaterial heldMaterial;
+
+    /* Fixed step */
+    private float fixedStep;
+    private float stepAccumulator;
+    // top-left corners of the avatar, kept in primitives so a frame creates no vectors
+    private boolean hasPreviousStep;
+    private float previousAvatarX;
+    private float previousAvatarY;
+    private boolean hasSimulatedStep;
+    private float simulatedAvatarX;
+    private float simulatedAvatarY;
 
     /* Frames */
-    private static int windowFrameSize;
+    private final int windowFrameSize;
     private final Vector2 windowDimensions;
-    private int curLeftWorldBoundary;
-    private int curRightWorldBoundary;
-    private final int framesInWindow = 3;
+    // the frames which are built around the avatar, with a margin outside the screen by the quality
+    private StreamingWindow streamingWindow;
 
     /* Layers */
     private static final int NIGHT_LAYER = Layer.FOREGROUND;
     private static final int SKY_LAYER = Layer.BACKGROUND;
     private static final int SUN_LAYER = Layer.BACKGROUND + 1;
     private static final int SUN_HALO_LAYER = Layer.BACKGROUND + 2;
+    private static final int MOUNTAINS_LAYER = Layer.BACKGROUND + 3;
+    private static final int SKY_PARTICLES_LAYER = Layer.BACKGROUND + 4;
     private static final int TREE_LAYER = Layer.DEFAULT + 1;
     private static final int TERRAIN_LAYER = Layer.DEFAULT + 2;
     private static final int BACKGROUND_LAYER = Layer.DEFAULT + 3;
@@ -62,7 +153,19 @@ public class PepseGameManager extends GameManager {
         super(windowTitle);
         this.windowDimensions = new Vector2((float) Toolkit.getDefaultToolkit().getScreenSize().getWidth(),
                 (float) Toolkit.getDefaultToolkit().getScreenSize().getHeight());
-        windowFrameSize = (int) (((int) (((1f / framesInWindow) * this.windowDimensions.x()) / Block.SIZE)) * Block.SIZE);
+        windowFrameSize = StreamingWindow.frameSizeOf(this.windowDimensions.x());
+    }
+
+    /**
+     * Constructor of a game in a window of given dimensions, instead of the size of the screen.
+     *
+     * @param windowTitle      The title of the window.
+     * @param windowDimensions The dimensions of the window.
+     */
+    public PepseGameManager(String windowTitle, Vector2 windowDimensions) {
+        super(windowTitle, windowDimensions);
+        this.windowDimensions = windowDimensions;
+        windowFrameSize = StreamingWindow.frameSizeOf(this.windowDimensions.x());
     }
 
     /**
@@ -84,63 +187,123 @@ public class PepseGameManager extends GameManager {
                                WindowController windowController) {
         super.initializeGame(imageReader, soundReader,
                 inputListener, windowController);
+        // a reset builds the world anew, and opens the stores again
+        closeStores();
+
+        // the sprites are decoded in parallel while the world is generated, and packed into a single atlas
+        CompletableFuture<SpriteAtlas> spriteLoading = SpriteAtlas.loadAsync(Avatar.getSprites(),
+                ForkJoinPool.commonPool());
 
         /* Create new objects for the field */
-        this.terrain = new Terrain(gameObjects(), TERRAIN_LAYER, windowDimensions, SEED);
+        this.mutations = new MutationQueue(gameObjects());
+        this.shouldLogMutations = Boolean.getBoolean(LOG_MUTATIONS_PROPERTY);
+        this.terrain = new Terrain(mutations, TERRAIN_LAYER, windowDimensions, SEED);
         terrain.setBackgroundLayer(BACKGROUND_LAYER);
-        this.trees = new Tree(gameObjects(), TREE_LAYER,
+        this.spatialIndex = new SpatialIndex();
+        terrain.setSpatialIndex(spatialIndex);
+        this.trees = new Tree(mutations, TREE_LAYER,
                 TERRAIN_LAYER, windowDimensions, SEED, terrain::groundHeightAt);
         trees.setLeavesLayers(LEAVES_LAYER, FALLING_LEAVES_LAYER);
+        trees.setSpatialIndex(spatialIndex);
+        float targetFrameRate = Float.parseFloat(System.getProperty(TARGET_FRAME_RATE_PROPERTY,
+                DEFAULT_TARGET_FRAME_RATE));
+        this.qualityController = targetFrameRate > 0
+                ? new QualityController(targetFrameRate, QualityController.Level.NORMAL) : null;
+        this.shouldLogQuality = Boolean.getBoolean(LOG_QUALITY_PROPERTY);
+        this.streamingWindow = new StreamingWindow(windowFrameSize,
+                QualityController.Level.NORMAL.getStreamingMargin());
+        this.isWindowShrunk = false;
+        this.worldGenerator = new WorldGenerator(terrain, trees, windowFrameSize, SEED);
+        openChunkStore();
+        int frameArenaBytes = Integer.getInteger(FRAME_ARENA_PROPERTY, DEFAULT_FRAME_ARENA_BYTES);
+        if (frameArenaBytes > 0) {
+            worldGenerator.setFrameArena(new FrameArena(frameArenaBytes, (int) (windowFrameSize / Block.SIZE)));
+        }
+        long memoryBudgetBytes = Long.getLong(MEMORY_BUDGET_PROPERTY, 0L);
+        if (memoryBudgetBytes > 0) {
+            worldGenerator.setMemoryBudget(new MemoryBudget(memoryBudgetBytes));
+        }
 
-        /* Create the sky */
-        Sky.create(gameObjects(), windowDimensions, SKY_LAYER);
-
-        /* Create the night, sun, and sun halo, and sync it all together */
-        Night.create(gameObjects(),
+        /* Create the sky, night, sun, and sun halo, and sync it all together */
+        GameObject night = Night.create(gameObjects(),
                 NIGHT_LAYER,
                 windowDimensions,
-                CYCLE_LENGTH
-        );
-        GameObject sun = Sun.create(gameObjects(),
-                SUN_LAYER,
-                windowDimensions,
-                CYCLE_LENGTH
+                SEED
         );
-        GameObject sunHalo = SunHalo.create(gameObjects(),
-                SUN_HALO_LAYER,
-                sun,
-                SUN_HALO_COLOR
-        );
-        sunHalo.addComponent(deltaTime -> sunHalo.setCenter(sun.getCenter()));
+        if (Boolean.parseBoolean(System.getProperty(SKY_BACKDROP_PROPERTY, Boolean.TRUE.toString()))) {
+            // the sky, sun and halo composited into a single background image, redrawn at a reduced rate
+            this.dayNightClock = new DayNightClock(windowDimensions, CYCLE_LENGTH, null, null, night);
+            SkyBackdrop.create(gameObjects(), SKY_LAYER, windowDimensions, dayNightClock, SUN_HALO_COLOR,
+                    Float.parseFloat(System.getProperty(SKY_REDRAW_RATE_PROPERTY, DEFAULT_SKY_REDRAW_RATE)));
+        } else {
+            Sky.create(gameObjects(), windowDimensions, SKY_LAYER);
+            GameObject sun = Sun.create(gameObjects(),
+                    SUN_LAYER,
+                    windowDimensions
+            );
+            GameObject sunHalo = SunHalo.create(gameObjects(),
+                    SUN_HALO_LAYER,
+                    sun,
+                    SUN_HALO_COLOR
+            );
+            this.dayNightClock = new DayNightClock(windowDimensions, CYCLE_LENGTH, sun, sunHalo, night);
+            sun.addComponent(dayNightClock);
+        }
 
 
         /* Create the world in frames */
-        //one frame outside the screen on left
-        curLeftWorldBoundary = -windowFrameSize;
+        SessionSnapshot snapshot = readSnapshot();
+        // the dug and placed blocks are applied to every column which is built, from the first one
+        this.edits = snapshot != null ? snapshot.getEdits() : new WorldEdits();
+        terrain.setEdits(edits);
+        Vector2 initialAvatarLocation;
+        if (snapshot != null) {
+            // only the frames of the saved window are built, with their leaves as they were
+            streamingWindow.setBoundaries(snapshot.getLeftWorldBoundary(), snapshot.getRightWorldBoundary());
+            cullTerrain(snapshot.getAvatarY());
+            worldGenerator.createInRange(streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary(),
+                    snapshot.getLeafStates());
+            initialAvatarLocation = new Vector2(snapshot.getAvatarX(), snapshot.getAvatarY());
+            dayNightClock.setTime(snapshot.getTime());
+        } else {
+            // the initial window is made of the frames of the screen, and the margin on each side
+            initialAvatarLocation = new Vector2(streamingWindow.getInitialAvatarX(), -400);
+            cullTerrain(initialAvatarLocation.y());
 
-        // framesInWindow frames in screen and one more outside on the right
-        curRightWorldBoundary = windowFrameSize * (framesInWindow + 1);
-
-        createInRange(curLeftWorldBoundary, curRightWorldBoundary);
+            // the frames are independent, so they are built in parallel and attached in order
+            worldGenerator.createInRange(streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary());
+        }
 
 
         /* Create the avatar */
-        Vector2 initialAvatarLocation = new Vector2(windowFrameSize * framesInWindow / 2f, -400);
-        Avatar.setAvatarDimensions(Block.SIZE + Block.SIZE / 3f, Block.SIZE * 2);
         this.avatar = Avatar.create(gameObjects(),
                 AVATAR_LAYER,
                 initialAvatarLocation,
+                AVATAR_DIMENSIONS,
                 inputListener,
-                imageReader
+                spriteLoading.join()
         );
         gameObjects().layers().shouldLayersCollide(AVATAR_LAYER, TERRAIN_LAYER, true);
         gameObjects().layers().shouldLayersCollide(AVATAR_LAYER, TREE_LAYER, true);
+        // new trees are built at the normal quality, which sets the window around the avatar as it is now
+        setQuality(QualityController.Level.NORMAL);
         setCamera(new Camera(avatar,
                 Vector2.ZERO, //initialAvatarLocation.subtract(Vector2.LEFT.mult(10)), todo: check this
                 windowController.getWindowDimensions(),
                 windowController.getWindowDimensions())
         );
 
+        /* Create the distant hills, which scroll with the camera */
+        Mountains.create(gameObjects(), MOUNTAINS_LAYER, windowDimensions, terrain::groundHeightAt, camera());
+
+        /* Create the clouds and birds of the frames in the world */
+        // the window is widest at the highest quality
+        int maxFramesInWorld = StreamingWindow.FRAMES_IN_SCREEN
+                + 2 * QualityController.Level.HIGH.getStreamingMargin();
+        this.skyParticles = SkyParticles.create(gameObjects(), SKY_PARTICLES_LAYER, windowDimensions, camera(),
+                windowFrameSize, maxFramesInWorld, SEED);
+        skyParticles.spawnInRange(streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary());
+
         /* Create the energy level display of the avatar */
         GameObject avatarEnergyLevelText = AvatarEnergyLevelDisplay.create(gameObjects(),
                 AVATAR_ENERGY_DISPLAY_LAYER,
@@ -153,39 +316,468 @@ public class PepseGameManager extends GameManager {
         /* Prevent intersections between objects and create gravity */
         avatar.physics().preventIntersectionsFromDirection(Vector2.ZERO);
         avatar.transform().setAccelerationY(GRAVITY_LEVEL);
+        if (snapshot != null) {
+            avatar.transform().setVelocity(snapshot.getAvatarVelocityX(), snapshot.getAvatarVelocityY());
+            avatar.energyLevel = snapshot.getEnergyLevel();
+        }
+        this.inputListener = inputListener;
+        this.wasSaveKeyPressed = false;
+        this.wasTeleportKeyPressed = false;
+        this.wasDigKeyPressed = false;
+        this.wasPlaceKeyPressed = false;
+        this.isFacingRight = true;
+        this.heldMaterial = SurfaceMaterial.SOIL;
+        this.memoryBudgetTime = 0;
+        this.isOverBudgetReported = false;
+        enforceMemoryBudget(avatar.getCenter().x());
+
+        float fixedStepRate = Float.parseFloat(System.getProperty(FIXED_STEP_RATE_PROPERTY,
+                DEFAULT_FIXED_STEP_RATE));
+        this.fixedStep = fixedStepRate > 0 ? 1 / fixedStepRate : 0;
+        if (fixedStep > 0) {
+            avatar.setFixedStep(GRAVITY_LEVEL);
+        }
+        this.stepAccumulator = 0;
+        this.hasPreviousStep = false;
+        this.hasSimulatedStep = false;
+
+        // the world is in the game before the first frame
+        mutations.flush();
+        this.worldAuditor = Boolean.getBoolean(AUDIT_WORLD_PROPERTY)
+                ? new WorldAuditor(gameObjects(), terrain, trees, TERRAIN_LAYER, BACKGROUND_LAYER, TREE_LAYER,
+                LEAVES_LAYER, FALLING_LEAVES_LAYER) : null;
+        this.shouldAudit = true;
+    }
+
 
+    /*
+     * Opens the persistent chunk store, if one was asked for. The game works the same without it.
+     */
+    private void openChunkStore() {
+        String chunkStoreDirectory = System.getProperty(CHUNK_STORE_PROPERTY);
+        if (chunkStoreDirectory == null) {
+            return;
+        }
+        try {
+            chunkStore = ChunkStore.open(Paths.get(chunkStoreDirectory), SEED,
+                    WorldGenerator.GENERATOR_VERSION, (int) windowDimensions.y());
+            worldGenerator.setChunkStore(chunkStore);
+        } catch (IOException e) {
+            System.err.println("Chunk store is not available, generating the world instead: " + e.getMessage());
+            return;
+        }
+        try {
+            worldGenerator.getPipeline().persistTo(Paths.get(chunkStoreDirectory), (int) windowDimensions.y());
+        } catch (IOException e) {
+            System.err.println("Stage stores are not available, caching stages in memory only: "
+                    + e.getMessage());
+        }
     }
 
+    /*
+     * Flushes and closes the chunk store and the stage stores, if they are open
+     */
+    private void closeStores() {
+        if (chunkStore == null) {
+            return;
+        }
+        try {
+            chunkStore.close();
+            worldGenerator.getPipeline().close();
+        } catch (IOException e) {
+            System.err.println("Chunk store could not be closed: " + e.getMessage());
+        }
+        chunkStore = null;
+    }
+
+    /*
+     * Reads the saved session, if one was asked for and it was saved of this world. The game starts anew
+     * without it.
+     */
+    private SessionSnapshot readSnapshot() {
+        String saveFile = System.getProperty(SAVE_FILE_PROPERTY);
+        if (saveFile == null || !Files.exists(Paths.get(saveFile))) {
+            return null;
+        }
+        try {
+            SessionSnapshot snapshot = SessionSnapshot.read(Paths.get(saveFile));
+            if (snapshot.matches(SEED, WorldGenerator.GENERATOR_VERSION, (int) windowDimensions.y(),
+                    windowFrameSize)) {
+                return snapshot;
+            }
+            System.err.println("Saved session is of another world, starting a new one");
+        } catch (IOException e) {
+            System.err.println("Saved session is not available, starting a new one: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Saves the session: the streaming window, the avatar, the time of day, the state of the leaves in
+     * the window and the blocks which were dug and placed. The world itself is generated again from its
+     * seed when the session is restored.
+     *
+     * @param file The file to save to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        // in fixed step mode, the avatar may be drawn between steps, so its simulated place is saved
+        float avatarX = hasSimulatedStep ? simulatedAvatarX : avatar.getTopLeftCorner().x();
+        float avatarY = hasSimulatedStep ? simulatedAvatarY : avatar.getTopLeftCorner().y();
+        new SessionSnapshot(SEED, WorldGenerator.GENERATOR_VERSION, (int) windowDimensions.y(), windowFrameSize,
+                streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary(),
+                avatarX, avatarY, avatar.getMovementX(), avatar.getMovementY(),
+                avatar.energyLevel, dayNightClock.getTime(), worldGenerator.getLiveLeafStates(), edits
+        ).write(file);
+    }
+
+    /*
+     * Saves the session to the save file, if one was asked for
+     */
+    private void saveSession() {
+        String saveFile = System.getProperty(SAVE_FILE_PROPERTY);
+        if (saveFile == null || avatar == null) {
+            return;
+        }
+        try {
+            save(Paths.get(saveFile));
+        } catch (IOException e) {
+            System.err.println("Session could not be saved: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Digs or places a block in front of the avatar, once per press of a key. A dig which finds nothing in
+     * front of the avatar digs the block under it, and a placed block is of the last dug material.
+     */
+    private void editWorld() {
+        float velocityX = avatar.getMovementX();
+        if (velocityX != 0) {
+            isFacingRight = velocityX > 0;
+        }
+        boolean isDigKeyPressed = inputListener.isKeyPressed(DIG_KEY);
+        boolean isPlaceKeyPressed = inputListener.isKeyPressed(PLACE_KEY);
+        boolean shouldDig = isDigKeyPressed && !wasDigKeyPressed;
+        boolean shouldPlace = isPlaceKeyPressed && !wasPlaceKeyPressed;
+        wasDigKeyPressed = isDigKeyPressed;
+        wasPlaceKeyPressed = isPlaceKeyPressed;
+        if (!shouldDig && !shouldPlace) {
+            return;
+        }
+
+        // the middle of the first column which is wholly in front of the avatar, at the height of its feet
+        Vector2 topLeftCorner = avatar.getTopLeftCorner();
+        Vector2 dimensions = avatar.getDimensions();
+        float frontX = isFacingRight
+                ? (float) Math.ceil((topLeftCorner.x() + dimensions.x()) / Block.SIZE) * Block.SIZE + Block.SIZE / 2
+                : (float) Math.floor(topLeftCorner.x() / Block.SIZE) * Block.SIZE - Block.SIZE / 2;
+        float bottomY = topLeftCorner.y() + dimensions.y();
+        if (shouldDig) {
+            SurfaceMaterial dugMaterial = terrain.dig(frontX, bottomY - Block.SIZE / 2);
+            if (dugMaterial == null) {
+                dugMaterial = terrain.dig(topLeftCorner.x() + dimensions.x() / 2, bottomY + Block.SIZE / 2);
+            }
+            if (dugMaterial != null) {
+                heldMaterial = dugMaterial;
+            }
+        }
+        if (shouldPlace) {
+            terrain.place(frontX, bottomY - Block.SIZE / 2, heldMaterial);
+        }
+    }
+
+    /*
+     * Keeps the live objects of the world within the memory budget, if there is one, around a given x. When
+     * even the least detail passes it, the frames outside the screen are dropped, and only then is the
+     * overrun reported
+     */
+    private void enforceMemoryBudget(float cameraX) {
+        memoryBudgetTime = 0;
+        if (worldGenerator.enforceBudget(cameraX, windowDimensions.x() / 2)) {
+            return;
+        }
+        if (streamingWindow.getMargin() > 0) {
+            // even the least detail passes the cap, so no frames are kept outside the screen any more
+            isWindowShrunk = true;
+            setStreamingMargin(0);
+            return;
+        }
+        if (!isOverBudgetReported) {
+            isOverBudgetReported = true;
+            System.err.println("Memory budget is too small for the frames on the screen: "
+                    + worldGenerator.getMemoryBudget().report());
+        }
+    }
+
+    /*
+     * Keeps only the lower terrain which a camera centered at a given y shows
+     */
+    private void cullTerrain(float cameraCenterY) {
+        float visibleHalfHeight = windowDimensions.y() / 2 + VERTICAL_CULLING_MARGIN;
+        terrain.setVisibleRange(cameraCenterY - visibleHalfHeight, cameraCenterY + visibleHalfHeight);
+    }
 
     public void createInRange(int minX, int maxX) {
-        terrain.createInRange(minX, maxX);
-        trees.createInRange(minX, maxX);
+        worldGenerator.createInRange(minX, maxX);
+        skyParticles.spawnInRange(minX, maxX);
     }
 
     public void deleteInRange(int minX, int maxX) {
-        terrain.removeInRange(minX, maxX);
-        trees.removeInRange(minX, maxX);
+        worldGenerator.removeInRange(minX, maxX);
+        skyParticles.despawnInRange(minX, maxX);
     }
 
+    /**
+     * Moves the avatar instantly to a given x-value, standing on the ground. The whole current window is
+     * dropped at once, and the frames around the destination are built in parallel by the world generator
+     * before being added to the game.
+     *
+     * @param targetX The x-value to teleport to.
+     * @return The time it took until the destination was playable, in milliseconds.
+     */
+    public long teleport(float targetX) {
+        long startTime = System.nanoTime();
+
+        worldGenerator.removeAll();
+        skyParticles.clear();
+
+        // the same layout as the initial world: the avatar is in the middle frame of the window
+        streamingWindow.centerOn(targetX);
+
+        float columnX = (float) (Math.floor(targetX / Block.SIZE) * Block.SIZE);
+        // the avatar stands on the ground, so its center is half its height above it
+        float targetY = terrain.groundHeightAt(columnX) - avatar.getDimensions().y() / 2;
+        cullTerrain(targetY);
+        worldGenerator.createInRange(streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary());
+        skyParticles.spawnInRange(streamingWindow.getLeftBoundary(), streamingWindow.getRightBoundary());
+
+        avatar.setCenter(new Vector2(targetX, targetY));
+        avatar.setMovement(0, 0);
+        enforceMemoryBudget(targetX);
+        mutations.flush();
+        // nothing to interpolate from, the avatar did not move there
+        hasPreviousStep = false;
+        hasSimulatedStep = false;
+        shouldAudit = true;
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    /*
+     * Teleports the avatar TELEPORT_FRAMES frames in the direction it faces, and prints how long it took
+     */
+    private void teleportAhead() {
+        float distance = (isFacingRight ? 1 : -1) * TELEPORT_FRAMES * windowFrameSize;
+        float targetX = avatar.getTopLeftCorner().x() + avatar.getDimensions().x() / 2 + distance;
+        long teleportTime = teleport(targetX);
+        System.out.printf("Teleported to x = %.0f in %d ms%n", targetX, teleportTime);
+    }
+
+    /**
+     * getter for the clock of the day-night cycle
+     *
+     * @return the clock which holds the time of day
+     */
+    public DayNightClock getDayNightClock() {
+        return dayNightClock;
+    }
+
+    /**
+     * getter for the index of the live objects of the world, which answers which surface blocks, trees
+     * and leaves are in a range of x-values, and which is the nearest one to a point
+     *
+     * @return the spatial index of the world
+     */
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Advances the game. In fixed step mode, the avatar moves in steps of the same length however long the
+     * frame was, and is drawn (and followed by the camera) between its last two stepped positions, by how
+     * far the time is into the next step. The engine advances the rest of the world once a frame.
+     *
+     * @param deltaTime time since the last frame
+     */
     @Override
     public void update(float deltaTime) {
+        long updateStart = System.nanoTime();
+        // the changes of the window in the last frame were applied by now
+        if (worldAuditor != null && shouldAudit) {
+            auditWorld();
+        }
+        boolean isSaveKeyPressed = inputListener.isKeyPressed(SAVE_KEY);
+        if (isSaveKeyPressed && !wasSaveKeyPressed) {
+            saveSession();
+        }
+        wasSaveKeyPressed = isSaveKeyPressed;
+        boolean isTeleportKeyPressed = inputListener.isKeyPressed(TELEPORT_KEY);
+        if (isTeleportKeyPressed && !wasTeleportKeyPressed) {
+            teleportAhead();
+        }
+        wasTeleportKeyPressed = isTeleportKeyPressed;
+        editWorld();
+
+        if (fixedStep == 0) {
+            simulate(deltaTime);
+        } else {
+            simulateFixedSteps(deltaTime);
+        }
+        if (qualityController != null
+                && qualityController.onFrame(deltaTime, (System.nanoTime() - updateStart) / NANOS_IN_SECOND)) {
+            if (shouldLogQuality) {
+                System.out.printf("Quality: %s at %.1f ms per frame%n", qualityController.getLevel(),
+                        qualityController.getMeanFrameTime() * 1000);
+            }
+            setQuality(qualityController.getLevel());
+        }
+        flushMutations();
+    }
+
+    /*
+     * Moves the avatar in steps of the same length, advances the rest of the world once by the whole
+     * frame, and draws the avatar between its last two stepped positions
+     */
+    private void simulateFixedSteps(float deltaTime) {
+        // the steps continue from where the avatar really is, not from where it was drawn
+        if (hasSimulatedStep) {
+            avatar.transform().setTopLeftCornerX(simulatedAvatarX);
+            avatar.transform().setTopLeftCornerY(simulatedAvatarY);
+        }
+        stepAccumulator = Math.min(stepAccumulator + deltaTime, MAX_STEPS_PER_FRAME * fixedStep);
+        while (stepAccumulator >= fixedStep) {
+            previousAvatarX = avatar.getTopLeftCorner().x();
+            previousAvatarY = avatar.getTopLeftCorner().y();
+            hasPreviousStep = true;
+            avatar.step(fixedStep);
+            stepAccumulator -= fixedStep;
+        }
+        // a frame shorter than a step still advances the world, and resolves the collisions of the steps
+        super.update(deltaTime);
+        streamWorld(deltaTime);
+
+        simulatedAvatarX = avatar.getTopLeftCorner().x();
+        simulatedAvatarY = avatar.getTopLeftCorner().y();
+        hasSimulatedStep = true;
+        if (hasPreviousStep) {
+            float stepPart = stepAccumulator / fixedStep;
+            avatar.transform().setTopLeftCornerX(previousAvatarX + (simulatedAvatarX - previousAvatarX) * stepPart);
+            avatar.transform().setTopLeftCornerY(previousAvatarY + (simulatedAvatarY - previousAvatarY) * stepPart);
+            camera().update(0);
+        }
+    }
+
+    /*
+     * Sets the quality of the world: the leaves of new trees and their sway, whether falling leaves land,
+     * and how many frames are kept outside the screen
+     */
+    private void setQuality(QualityController.Level level) {
+        trees.setLeafDensity(level.getLeafDensity());
+        trees.setLeafSwayInterval(level.getLeafSwayInterval());
+        trees.setFallingLeavesCollide(level.shouldFallingLeavesCollide());
+        setStreamingMargin(isWindowShrunk ? 0 : level.getStreamingMargin());
+    }
+
+    /*
+     * Keeps a given number of frames outside the screen on each side of the avatar, streaming the frames
+     * on the edges of the window in or out
+     */
+    private void setStreamingMargin(int margin) {
+        if (margin == streamingWindow.getMargin()) {
+            return;
+        }
+        int curLeftWorldBoundary = streamingWindow.getLeftBoundary();
+        int curRightWorldBoundary = streamingWindow.getRightBoundary();
+
+        // the avatar is kept in the middle frame of the window
+        float avatarCenterX = avatar.getTopLeftCorner().x() + avatar.getDimensions().x() / 2;
+        streamingWindow.setMargin(margin);
+        streamingWindow.centerOn(avatarCenterX);
+        int leftWorldBoundary = streamingWindow.getLeftBoundary();
+        int rightWorldBoundary = streamingWindow.getRightBoundary();
+        if (leftWorldBoundary >= curRightWorldBoundary || rightWorldBoundary <= curLeftWorldBoundary) {
+            deleteInRange(curLeftWorldBoundary, curRightWorldBoundary);
+            createInRange(leftWorldBoundary, rightWorldBoundary);
+        } else {
+            if (curLeftWorldBoundary < leftWorldBoundary) {
+                deleteInRange(curLeftWorldBoundary, leftWorldBoundary);
+            }
+            if (rightWorldBoundary < curRightWorldBoundary) {
+                deleteInRange(rightWorldBoundary, curRightWorldBoundary);
+            }
+            if (leftWorldBoundary < curLeftWorldBoundary) {
+                createInRange(leftWorldBoundary, curLeftWorldBoundary);
+            }
+            if (curRightWorldBoundary < rightWorldBoundary) {
+                createInRange(curRightWorldBoundary, rightWorldBoundary);
+            }
+        }
+        enforceMemoryBudget(avatarCenterX);
+        shouldAudit = true;
+    }
+
+    /*
+     * Checks that the objects of the world in the game are exactly the ones of the window, and reports
+     * the leaked and orphaned ones if they are not
+     */
+    private void auditWorld() {
+        shouldAudit = false;
+        WorldAuditor.Report report = worldAuditor.audit(streamingWindow.getLeftBoundary(),
+                streamingWindow.getRightBoundary());
+        if (!report.isClean()) {
+            System.err.println(report);
+        }
+    }
+
+    /*
+     * Applies the world mutations of the frame in a single batch
+     */
+    private void flushMutations() {
+        mutations.flush();
+        if (shouldLogMutations && mutations.getLastRequested() > 0) {
+            System.out.println("World mutations: " + mutations.report());
+        }
+    }
+
+    /*
+     * Runs a single step of the simulation, and streams frames in and out around the avatar
+     */
+    private void simulate(float deltaTime) {
         super.update(deltaTime);
+        streamWorld(deltaTime);
+    }
+
+    /*
+     * Streams frames in and out around the avatar, after the engine advanced the world
+     */
+    private void streamWorld(float deltaTime) {
+        // the falling leaves moved in this update
+        spatialIndex.refresh();
+        float avatarCenterX = avatar.getTopLeftCorner().x() + avatar.getDimensions().x() / 2;
+        cullTerrain(camera().getTopLeftCorner().y() + camera().getDimensions().y() / 2);
+        int leftWorldBoundary = streamingWindow.getLeftBoundary();
 
         //If moving to right, create frame to the right, and delete leftmost frame
-        if (avatar.getCenter().x() > (curLeftWorldBoundary + (framesInWindow * windowFrameSize))) {
-            curLeftWorldBoundary = (curLeftWorldBoundary + windowFrameSize);
-            curRightWorldBoundary = (curRightWorldBoundary + windowFrameSize);
-            deleteInRange((curLeftWorldBoundary - windowFrameSize), curLeftWorldBoundary);
-            createInRange((curRightWorldBoundary - windowFrameSize), curRightWorldBoundary);
+        if (streamingWindow.shouldMoveRight(avatarCenterX)) {
+            streamingWindow.moveRight();
+            deleteInRange(streamingWindow.getLeftBoundary() - windowFrameSize, streamingWindow.getLeftBoundary());
+            createInRange(streamingWindow.getRightBoundary() - windowFrameSize, streamingWindow.getRightBoundary());
         }
 
         //If moving to left, create frame to the left, and delete rightmost frame
-        if (avatar.getCenter().x() < (curRightWorldBoundary - (framesInWindow * windowFrameSize))) {
-            curLeftWorldBoundary = (curLeftWorldBoundary - windowFrameSize);
-            curRightWorldBoundary = (curRightWorldBoundary - windowFrameSize);
-            deleteInRange(curRightWorldBoundary, (curRightWorldBoundary + windowFrameSize));
-            createInRange(curLeftWorldBoundary, (curLeftWorldBoundary + windowFrameSize));
+        if (streamingWindow.shouldMoveLeft(avatarCenterX)) {
+            streamingWindow.moveLeft();
+            deleteInRange(streamingWindow.getRightBoundary(), streamingWindow.getRightBoundary() + windowFrameSize);
+            createInRange(streamingWindow.getLeftBoundary(), streamingWindow.getLeftBoundary() + windowFrameSize);
+        }
+
+        // leaves keep falling between streams, so the budget is checked from time to time as well
+        memoryBudgetTime += deltaTime;
+        boolean hasMoved = streamingWindow.getLeftBoundary() != leftWorldBoundary;
+        if (hasMoved || memoryBudgetTime >= MEMORY_BUDGET_PERIOD) {
+            enforceMemoryBudget(avatarCenterX);
         }
+        shouldAudit |= hasMoved;
     }
 
     /**
@@ -194,7 +786,10 @@ public class PepseGameManager extends GameManager {
      * @param args This argument should not be used.
      */
     public static void main(String[] args) {
-        new PepseGameManager(GAME_NAME).run();
+        PepseGameManager gameManager = new PepseGameManager(GAME_NAME);
+        gameManager.run();
+        gameManager.saveSession();
+        gameManager.closeStores();
     }
 
 }
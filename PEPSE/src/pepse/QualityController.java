@@ -0,0 +1,174 @@
+package pepse;
+
+/**
+ * Holds a target frame rate by stepping the quality of the world up or down. It keeps the frame times
+ * and the update times of the last second: when the frames are slower than the target, the quality is
+ * stepped down, and only after the frames have been on target with plenty of spare update time for a
+ * while, it is stepped up again. After every step, the times of a whole second at the new level are
+ * gathered before the next one, so a level is never judged by the frames of another.
+ * A frame of the controller creates no objects.
+ */
+public class QualityController {
+    /**
+     * The levels of quality, from the cheapest to the most detailed.
+     */
+    public enum Level {
+        LOW(0.5f, 1 / 15f, 1, false),
+        REDUCED(0.75f, 1 / 30f, 1, false),
+        NORMAL(1, 0, 1, true),
+        HIGH(1, 0, 2, true);
+
+        /* Fields */
+        private final float leafDensity;
+        private final float leafSwayInterval;
+        private final int streamingMargin;
+        private final boolean fallingLeavesCollide;
+
+        Level(float leafDensity, float leafSwayInterval, int streamingMargin, boolean fallingLeavesCollide) {
+            this.leafDensity = leafDensity;
+            this.leafSwayInterval = leafSwayInterval;
+            this.streamingMargin = streamingMargin;
+            this.fallingLeavesCollide = fallingLeavesCollide;
+        }
+
+        /**
+         * getter for the leaf density
+         *
+         * @return the part of the leaf anchors of a new tree top which get a leaf
+         */
+        public float getLeafDensity() {
+            return leafDensity;
+        }
+
+        /**
+         * getter for the rate of the sway of the leaves
+         *
+         * @return the seconds between redraws of the sway, 0 to redraw it every frame
+         */
+        public float getLeafSwayInterval() {
+            return leafSwayInterval;
+        }
+
+        /**
+         * getter for the streaming margin
+         *
+         * @return the number of frames which are kept outside the screen on each side
+         */
+        public int getStreamingMargin() {
+            return streamingMargin;
+        }
+
+        /**
+         * getter for the collision of falling leaves
+         *
+         * @return true if falling leaves land on the ground
+         */
+        public boolean shouldFallingLeavesCollide() {
+            return fallingLeavesCollide;
+        }
+    }
+
+    /* Constants */
+    private static final Level[] LEVELS = Level.values();
+    // frames which are slower than the target by that factor, on average, step the quality down
+    private static final float SLOW_FACTOR = 1.15f;
+    // frames which are on target by that factor, with updates shorter than that part of a frame, have room
+    private static final float ON_TARGET_FACTOR = 1.05f;
+    private static final float SPARE_UPDATE_PART = 0.5f;
+    // seconds which the frames must have room for, before the quality is stepped up
+    private static final float STEP_UP_DELAY = 3;
+
+    /* Fields */
+    private final float targetFrameTime;
+    private final float[] frameTimes;
+    private final float[] updateTimes;
+    private double frameTimeSum;
+    private double updateTimeSum;
+    private int nextFrame;
+    private int numOfFrames;
+    private float roomTime;
+    private Level level;
+
+    /**
+     * Constructor
+     *
+     * @param targetFrameRate The frames per second to hold.
+     * @param initialLevel    The level to start at.
+     */
+    public QualityController(float targetFrameRate, Level initialLevel) {
+        this.targetFrameTime = 1 / targetFrameRate;
+        int window = Math.max(1, Math.round(targetFrameRate));
+        this.frameTimes = new float[window];
+        this.updateTimes = new float[window];
+        this.level = initialLevel;
+    }
+
+    /**
+     * Records the times of a frame, and steps the level if the last second calls for it.
+     *
+     * @param frameTime  The seconds since the last frame.
+     * @param updateTime The seconds which the update of the game took in this frame.
+     * @return true if the level was changed
+     */
+    public boolean onFrame(float frameTime, float updateTime) {
+        if (numOfFrames == frameTimes.length) {
+            frameTimeSum -= frameTimes[nextFrame];
+            updateTimeSum -= updateTimes[nextFrame];
+        } else {
+            numOfFrames++;
+        }
+        frameTimes[nextFrame] = frameTime;
+        updateTimes[nextFrame] = updateTime;
+        frameTimeSum += frameTime;
+        updateTimeSum += updateTime;
+        nextFrame = (nextFrame + 1) % frameTimes.length;
+        if (numOfFrames < frameTimes.length) {
+            return false;
+        }
+
+        float meanFrameTime = getMeanFrameTime();
+        if (meanFrameTime > targetFrameTime * SLOW_FACTOR) {
+            return step(-1);
+        }
+        boolean hasRoom = meanFrameTime <= targetFrameTime * ON_TARGET_FACTOR
+                && updateTimeSum / numOfFrames < targetFrameTime * SPARE_UPDATE_PART;
+        roomTime = hasRoom ? roomTime + frameTime : 0;
+        return roomTime >= STEP_UP_DELAY && step(1);
+    }
+
+    /**
+     * getter for the level
+     *
+     * @return the current level of quality
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * getter for the mean frame time
+     *
+     * @return the mean seconds of the recorded frames, 0 if there are none
+     */
+    public float getMeanFrameTime() {
+        return numOfFrames == 0 ? 0 : (float) (frameTimeSum / numOfFrames);
+    }
+
+    /*
+     * moves a given number of levels up (or down), and starts gathering the times of the new level
+     */
+    private boolean step(int levels) {
+        int ordinal = Math.max(0, Math.min(LEVELS.length - 1, level.ordinal() + levels));
+        if (ordinal == level.ordinal()) {
+            roomTime = 0;
+            return false;
+        }
+        level = LEVELS[ordinal];
+        numOfFrames = 0;
+        nextFrame = 0;
+        frameTimeSum = 0;
+        updateTimeSum = 0;
+        roomTime = 0;
+        return true;
+    }
+}
@@ -0,0 +1,328 @@
+package pepse;
+
+import pepse.world.WorldEdits;
+import pepse.world.chunks.LeafStates;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The state of a game session, in a compact versioned binary format. The world itself is not saved, as it
+ * is generated again from its seed: only the streaming window, the avatar, the time of day, the state
+ * of the leaves of the frames in the window and the blocks which were dug and placed are kept, so a
+ * restore builds just the visible frames.
+ * <p>
+ * Layout: a header (magic, format version, generator version, seed, window height, frame size), the
+ * window boundaries, the avatar (top-left corner, velocity and energy), the time of day, every frame in
+ * the window with its minX, number of leaves, and the phase and falling flag of each leaf, and then the
+ * edits of the world (see WorldEdits.write).
+ */
+public class SessionSnapshot {
+    /* Constants */
+    private static final int MAGIC = 0x50535356; // "PSSV"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+    private static final int BODY_SIZE = 2 * Integer.BYTES + 6 * Float.BYTES + Integer.BYTES;
+    private static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int LEAF_SIZE = Float.BYTES + 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /* Fields */
+    private final int seed;
+    private final int generatorVersion;
+    private final int windowHeight;
+    private final int frameSize;
+    private final int leftWorldBoundary;
+    private final int rightWorldBoundary;
+    private final float avatarX;
+    private final float avatarY;
+    private final float avatarVelocityX;
+    private final float avatarVelocityY;
+    private final float energyLevel;
+    private final float time;
+    private final Map<Integer, LeafStates> leafStates;
+    private final WorldEdits edits;
+
+    /**
+     * Constructor
+     *
+     * @param seed               The seed of the world.
+     * @param generatorVersion   The version of the world generator.
+     * @param windowHeight       The height of the window the world was generated for.
+     * @param frameSize          The width of a single frame.
+     * @param leftWorldBoundary  The left boundary of the streaming window.
+     * @param rightWorldBoundary The right boundary of the streaming window.
+     * @param avatarX            The x of the top-left corner of the avatar.
+     * @param avatarY            The y of the top-left corner of the avatar.
+     * @param avatarVelocityX    The horizontal velocity of the avatar.
+     * @param avatarVelocityY    The vertical velocity of the avatar.
+     * @param energyLevel        The energy level of the avatar.
+     * @param time               The seconds since the beginning of the current day-night cycle.
+     * @param leafStates         The state of the leaves of the frames in the window, by their minX.
+     * @param edits              The blocks which were dug and placed in the world.
+     */
+    public SessionSnapshot(int seed, int generatorVersion, int windowHeight, int frameSize,
+                           int leftWorldBoundary, int rightWorldBoundary,
+                           float avatarX, float avatarY, float avatarVelocityX, float avatarVelocityY,
+                           float energyLevel, float time, Map<Integer, LeafStates> leafStates,
+                           WorldEdits edits) {
+        this.seed = seed;
+        this.generatorVersion = generatorVersion;
+        this.windowHeight = windowHeight;
+        this.frameSize = frameSize;
+        this.leftWorldBoundary = leftWorldBoundary;
+        this.rightWorldBoundary = rightWorldBoundary;
+        this.avatarX = avatarX;
+        this.avatarY = avatarY;
+        this.avatarVelocityX = avatarVelocityX;
+        this.avatarVelocityY = avatarVelocityY;
+        this.energyLevel = energyLevel;
+        this.time = time;
+        this.leafStates = Collections.unmodifiableMap(new TreeMap<>(leafStates));
+        this.edits = edits;
+    }
+
+    /**
+     * Writes the snapshot through a single buffer. The file is replaced only once it was fully written,
+     * so a failed save keeps the previous one.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size());
+        buffer.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(generatorVersion)
+                .putInt(seed)
+                .putInt(windowHeight)
+                .putInt(frameSize)
+                .putInt(leftWorldBoundary)
+                .putInt(rightWorldBoundary)
+                .putFloat(avatarX)
+                .putFloat(avatarY)
+                .putFloat(avatarVelocityX)
+                .putFloat(avatarVelocityY)
+                .putFloat(energyLevel)
+                .putFloat(time)
+                .putInt(leafStates.size());
+        for (Map.Entry<Integer, LeafStates> entry : leafStates.entrySet()) {
+            LeafStates frameLeaves = entry.getValue();
+            buffer.putInt(entry.getKey()).putInt(frameLeaves.size());
+            for (int leaf = 0; leaf < frameLeaves.size(); leaf++) {
+                buffer.putFloat(frameLeaves.getPhase(leaf)).put((byte) (frameLeaves.isFalling(leaf) ? 1 : 0));
+            }
+        }
+        edits.write(buffer);
+        buffer.flip();
+
+        Path absoluteFile = file.toAbsolutePath();
+        Path tempFile = absoluteFile.resolveSibling(absoluteFile.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(tempFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot through a single buffer.
+     *
+     * @param file The file to read.
+     * @return The snapshot in the file.
+     * @throws IOException If the file cannot be read, or is not a snapshot of this format.
+     */
+    public static SessionSnapshot read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + BODY_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a session snapshot: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // reads until the buffer is full
+            }
+        }
+        buffer.flip();
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a session snapshot: " + file);
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported session snapshot version " + formatVersion + ": " + file);
+        }
+        int generatorVersion = buffer.getInt();
+        int seed = buffer.getInt();
+        int windowHeight = buffer.getInt();
+        int frameSize = buffer.getInt();
+        int leftWorldBoundary = buffer.getInt();
+        int rightWorldBoundary = buffer.getInt();
+        float avatarX = buffer.getFloat();
+        float avatarY = buffer.getFloat();
+        float avatarVelocityX = buffer.getFloat();
+        float avatarVelocityY = buffer.getFloat();
+        float energyLevel = buffer.getFloat();
+        float time = buffer.getFloat();
+
+        int numOfFrames = buffer.getInt();
+        Map<Integer, LeafStates> leafStates = new TreeMap<>();
+        for (int frame = 0; frame < numOfFrames; frame++) {
+            if (buffer.remaining() < FRAME_HEADER_SIZE) {
+                throw new IOException("Truncated session snapshot: " + file);
+            }
+            int minX = buffer.getInt();
+            int numOfLeaves = buffer.getInt();
+            if (numOfLeaves < 0 || buffer.remaining() < (long) numOfLeaves * LEAF_SIZE) {
+                throw new IOException("Truncated session snapshot: " + file);
+            }
+            LeafStates frameLeaves = new LeafStates(numOfLeaves);
+            for (int leaf = 0; leaf < numOfLeaves; leaf++) {
+                frameLeaves.set(leaf, buffer.getFloat(), buffer.get() != 0);
+            }
+            leafStates.put(minX, frameLeaves);
+        }
+        WorldEdits edits;
+        try {
+            edits = WorldEdits.read(buffer);
+        } catch (IOException e) {
+            throw new IOException(e.getMessage() + ": " + file, e);
+        }
+
+        return new SessionSnapshot(seed, generatorVersion, windowHeight, frameSize, leftWorldBoundary,
+                rightWorldBoundary, avatarX, avatarY, avatarVelocityX, avatarVelocityY, energyLevel, time,
+                leafStates, edits);
+    }
+
+    /**
+     * Checks whether the snapshot was taken of the same world, so the frames it describes can be built
+     * again as they were.
+     *
+     * @param seed             The seed of the world.
+     * @param generatorVersion The version of the world generator.
+     * @param windowHeight     The height of the window.
+     * @param frameSize        The width of a single frame.
+     * @return true if the snapshot can be restored into this world
+     */
+    public boolean matches(int seed, int generatorVersion, int windowHeight, int frameSize) {
+        return this.seed == seed
+                && this.generatorVersion == generatorVersion
+                && this.windowHeight == windowHeight
+                && this.frameSize == frameSize
+                && leftWorldBoundary % frameSize == 0
+                && rightWorldBoundary > leftWorldBoundary
+                && (rightWorldBoundary - leftWorldBoundary) % frameSize == 0;
+    }
+
+    /**
+     * getter for the left boundary of the streaming window
+     *
+     * @return the minX of the leftmost frame
+     */
+    public int getLeftWorldBoundary() {
+        return leftWorldBoundary;
+    }
+
+    /**
+     * getter for the right boundary of the streaming window
+     *
+     * @return the maxX of the rightmost frame
+     */
+    public int getRightWorldBoundary() {
+        return rightWorldBoundary;
+    }
+
+    /**
+     * getter for the x of the avatar
+     *
+     * @return the x of the top-left corner of the avatar
+     */
+    public float getAvatarX() {
+        return avatarX;
+    }
+
+    /**
+     * getter for the y of the avatar
+     *
+     * @return the y of the top-left corner of the avatar
+     */
+    public float getAvatarY() {
+        return avatarY;
+    }
+
+    /**
+     * getter for the horizontal velocity of the avatar
+     *
+     * @return the horizontal velocity of the avatar
+     */
+    public float getAvatarVelocityX() {
+        return avatarVelocityX;
+    }
+
+    /**
+     * getter for the vertical velocity of the avatar
+     *
+     * @return the vertical velocity of the avatar
+     */
+    public float getAvatarVelocityY() {
+        return avatarVelocityY;
+    }
+
+    /**
+     * getter for the energy level of the avatar
+     *
+     * @return the energy level of the avatar
+     */
+    public float getEnergyLevel() {
+        return energyLevel;
+    }
+
+    /**
+     * getter for the time of day
+     *
+     * @return the seconds since the beginning of the current day-night cycle
+     */
+    public float getTime() {
+        return time;
+    }
+
+    /**
+     * getter for the state of the leaves
+     *
+     * @return the state of the leaves of the frames in the window, by their minX
+     */
+    public Map<Integer, LeafStates> getLeafStates() {
+        return leafStates;
+    }
+
+    /**
+     * getter for the edits of the world
+     *
+     * @return the blocks which were dug and placed in the world
+     */
+    public WorldEdits getEdits() {
+        return edits;
+    }
+
+    /*
+     * the size in bytes of the snapshot
+     */
+    private int size() {
+        int size = HEADER_SIZE + BODY_SIZE + edits.serializedSize();
+        for (LeafStates frameLeaves : leafStates.values()) {
+            size += FRAME_HEADER_SIZE + frameLeaves.size() * LEAF_SIZE;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,74 @@
+package pepse;
+
+import danogl.util.Vector2;
+import pepse.world.Block;
+import pepse.world.Terrain;
+import pepse.world.WorldGenerator;
+import pepse.world.chunks.ChunkStore;
+import pepse.world.pipeline.GenerationPipeline;
+import pepse.world.trees.Tree;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-generates a range of a world into a chunk store, without opening a window. The game reads the
+ * baked world when it runs with -Dpepse.chunkStore set to the same directory (and the same seed and
+ * window height).
+ */
+public class WorldBaker {
+    /* Constants */
+    private static final String USAGE =
+            "usage: WorldBaker <seed> <minX> <maxX> <width>x<height> <chunk store directory>";
+    private static final String RESOLUTION_SEPARATOR = "x";
+    private static final int FRAME_COLUMNS = 256;
+    private static final int FRAME_SIZE = (int) (FRAME_COLUMNS * Block.SIZE);
+    private static final double NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Bakes a range of a world into a chunk store, using all the cores, and prints the throughput.
+     *
+     * @param args seed, x-range, virtual resolution and the directory of the chunk store.
+     * @throws IOException If the chunk store cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5 || !args[3].contains(RESOLUTION_SEPARATOR)) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        int seed = Integer.parseInt(args[0]);
+        int minX = Math.floorDiv(Integer.parseInt(args[1]), FRAME_SIZE) * FRAME_SIZE;
+        int maxX = -Math.floorDiv(-Integer.parseInt(args[2]), FRAME_SIZE) * FRAME_SIZE;
+        String[] resolution = args[3].split(RESOLUTION_SEPARATOR);
+        Vector2 windowDimensions = new Vector2(Float.parseFloat(resolution[0]), Float.parseFloat(resolution[1]));
+
+        int columnsPerSide = (int) (Math.max(Math.abs(minX), Math.abs(maxX)) / Block.SIZE) + 1;
+        if (columnsPerSide > ChunkStore.MAX_COLUMNS_PER_SIDE) {
+            System.err.println("The range is too large, x must be within " +
+                    (int) (ChunkStore.MAX_COLUMNS_PER_SIDE * Block.SIZE) + " of 0");
+            System.exit(1);
+        }
+
+        Terrain terrain = new Terrain(null, 0, windowDimensions, seed);
+        Tree trees = new Tree(null, 0, 0, windowDimensions, seed, terrain::groundHeightAt);
+        WorldGenerator worldGenerator = new WorldGenerator(terrain, trees, FRAME_SIZE, seed);
+
+        try (ChunkStore chunkStore = ChunkStore.open(Paths.get(args[4]), seed, WorldGenerator.GENERATOR_VERSION,
+                (int) windowDimensions.y(), Math.max(columnsPerSide, ChunkStore.DEFAULT_COLUMNS_PER_SIDE));
+             GenerationPipeline pipeline = worldGenerator.getPipeline()) {
+            worldGenerator.setChunkStore(chunkStore);
+            // the output of every stage is kept too, so a changed stage re-bakes only it and the later ones
+            pipeline.persistTo(Paths.get(args[4]), (int) windowDimensions.y());
+
+            long startTime = System.nanoTime();
+            worldGenerator.describeAllInRange(minX, maxX);
+            double seconds = (System.nanoTime() - startTime) / NANOS_IN_SECOND;
+
+            long columns = (long) ((maxX - minX) / Block.SIZE);
+            System.out.printf("Baked %d columns of seed %d in %.3f seconds (%.0f columns per second)%n",
+                    columns, seed, seconds, columns / seconds);
+            System.out.print(pipeline.timingReport());
+        }
+    }
+}
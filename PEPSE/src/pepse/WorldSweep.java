@@ -0,0 +1,151 @@
+package pepse;
+
+import danogl.util.Vector2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates many independent worlds at once, without opening a window, to validate a sweep of seeds.
+ * Every world runs on its own virtual thread (or, on a JVM without virtual threads, on a pool of a thread
+ * per core), and the frames of all the worlds are built on a single shared pool. It prints the step-time
+ * statistics of every world, and the aggregate generation throughput. A step generates and streams the
+ * world only (see HeadlessWorld), so its time is not the time of a frame of the game.
+ */
+public class WorldSweep {
+    /* Constants */
+    private static final String USAGE =
+            "usage: WorldSweep <first seed> <number of worlds> <simulated seconds> <width>x<height> [steps per second]";
+    private static final String RESOLUTION_SEPARATOR = "x";
+    private static final int DEFAULT_STEP_RATE = 60;
+    private static final double NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double NANOS_IN_MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double MEDIAN = 0.5;
+    private static final double HIGH_PERCENTILE = 0.99;
+
+    /**
+     * Runs the worlds and reports their statistics.
+     *
+     * @param args the first seed, the number of worlds (of consecutive seeds), the simulated seconds of
+     *             every world, the virtual resolution, and optionally the steps per simulated second.
+     * @throws InterruptedException If the sweep is interrupted.
+     * @throws ExecutionException   If a world fails.
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        if (args.length < 4 || args.length > 5 || !args[3].contains(RESOLUTION_SEPARATOR)) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        int firstSeed = Integer.parseInt(args[0]);
+        int numOfWorlds = Integer.parseInt(args[1]);
+        float seconds = Float.parseFloat(args[2]);
+        String[] resolution = args[3].split(RESOLUTION_SEPARATOR);
+        Vector2 windowDimensions = new Vector2(Float.parseFloat(resolution[0]), Float.parseFloat(resolution[1]));
+        int stepRate = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_STEP_RATE;
+        int numOfSteps = (int) (seconds * stepRate);
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = newWorldExecutor();
+        long startTime = System.nanoTime();
+        List<Future<WorldStats>> futures = new ArrayList<>(numOfWorlds);
+        for (int i = 0; i < numOfWorlds; i++) {
+            int seed = firstSeed + i;
+            futures.add(executor.submit(() -> simulate(new HeadlessWorld(seed, windowDimensions, pool),
+                    numOfSteps, 1f / stepRate)));
+        }
+
+        long columnsBuilt = 0;
+        long framesBuilt = 0;
+        double[] highFrameTimes = new double[numOfWorlds];
+        for (int i = 0; i < numOfWorlds; i++) {
+            WorldStats stats = futures.get(i).get();
+            columnsBuilt += stats.columnsBuilt;
+            framesBuilt += stats.framesBuilt;
+            highFrameTimes[i] = stats.highMillis;
+            System.out.println(stats);
+        }
+        double wallSeconds = (System.nanoTime() - startTime) / NANOS_IN_SECOND;
+        executor.shutdown();
+        pool.shutdown();
+
+        Arrays.sort(highFrameTimes);
+        System.out.printf("%d worlds of %.0f simulated seconds in %.3f seconds: %d frames (%.0f per second), "
+                        + "%d columns (%.0f per second)%n",
+                numOfWorlds, seconds, wallSeconds, framesBuilt, framesBuilt / wallSeconds,
+                columnsBuilt, columnsBuilt / wallSeconds);
+        System.out.printf("p99 step time over worlds: median %.3f ms, worst %.3f ms%n",
+                percentile(highFrameTimes, MEDIAN), highFrameTimes[numOfWorlds - 1]);
+    }
+
+    /*
+     * an executor of a virtual thread per world when the JVM has them, and of a thread per core otherwise
+     */
+    private static ExecutorService newWorldExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not available, running a thread per core instead");
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /*
+     * runs the steps of a world, and times every one of them
+     */
+    private static WorldStats simulate(HeadlessWorld world, int numOfSteps, float deltaTime) {
+        double[] stepMillis = new double[numOfSteps];
+        for (int step = 0; step < numOfSteps; step++) {
+            long stepStart = System.nanoTime();
+            world.step(deltaTime);
+            stepMillis[step] = (System.nanoTime() - stepStart) / NANOS_IN_MILLISECOND;
+        }
+        return new WorldStats(world, stepMillis);
+    }
+
+    /*
+     * the value at a given part of sorted values
+     */
+    private static double percentile(double[] sortedValues, double part) {
+        if (sortedValues.length == 0) {
+            return 0;
+        }
+        return sortedValues[(int) Math.min(sortedValues.length - 1, Math.floor(part * sortedValues.length))];
+    }
+
+    /*
+     * The step times and generation of a single world
+     */
+    private static class WorldStats {
+        private final int seed;
+        private final long framesBuilt;
+        private final long columnsBuilt;
+        private final double meanMillis;
+        private final double medianMillis;
+        private final double highMillis;
+        private final double maxMillis;
+
+        WorldStats(HeadlessWorld world, double[] stepMillis) {
+            this.seed = world.getSeed();
+            this.framesBuilt = world.getFramesBuilt();
+            this.columnsBuilt = world.getColumnsBuilt();
+            this.meanMillis = Arrays.stream(stepMillis).average().orElse(0);
+            Arrays.sort(stepMillis);
+            this.medianMillis = percentile(stepMillis, MEDIAN);
+            this.highMillis = percentile(stepMillis, HIGH_PERCENTILE);
+            this.maxMillis = stepMillis.length == 0 ? 0 : stepMillis[stepMillis.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("seed %d: %d frames, step time mean %.3f ms, p50 %.3f ms, p99 %.3f ms, "
+                    + "max %.3f ms", seed, framesBuilt, meanMillis, medianMillis, highMillis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package pepse.util;
+
+import java.util.Random;
+
+/**
+ * Multi-octave gradient (Perlin) noise. Every lattice point has a slope drawn from [-1, 1], and between
+ * two points the noise blends the lines of their slopes with a quintic fade. Such a blend is at most 1/2
+ * in absolute value (at the middle of a cell, with opposite slopes of 1), so it is doubled into [-1, 1].
+ */
+public class GradientNoise extends OctaveNoise {
+    /* Constants */
+    private static final float BOUND_NORMALIZATION = 2;
+
+    /* Fields */
+    private final float[] gradients = new float[TABLE_SIZE];
+
+    /**
+     * Constructor
+     *
+     * @param seed        The seed of the noise.
+     * @param wavelength  The wavelength of the first octave, in columns.
+     * @param octaves     The number of octaves.
+     * @param persistence The amplitude of every octave relative to the one before it.
+     */
+    public GradientNoise(long seed, double wavelength, int octaves, float persistence) {
+        this(new Random(seed), wavelength, octaves, persistence);
+    }
+
+    /*
+     * draws the tables from a single random, so they are the same for the same seed
+     */
+    private GradientNoise(Random random, double wavelength, int octaves, float persistence) {
+        super(random, wavelength, octaves, persistence);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            gradients[i] = 2 * random.nextFloat() - 1;
+        }
+    }
+
+    @Override
+    protected float latticeNoise(double x) {
+        int point = floor(x);
+        float t = (float) (x - point);
+        float fade = t * t * t * (t * (t * 6 - 15) + 10);
+        float left = gradients[hash(point)] * t;
+        float right = gradients[hash(point + 1)] * (t - 1);
+        return BOUND_NORMALIZATION * (left + fade * (right - left));
+    }
+}
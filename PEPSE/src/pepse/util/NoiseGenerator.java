@@ -0,0 +1,27 @@
+package pepse.util;
+
+/**
+ * One dimensional coherent noise over the columns of the world, whose output is guaranteed to be in
+ * [-1, 1], so the range of anything built from it is known in advance.
+ */
+public interface NoiseGenerator {
+    /**
+     * Samples the noise.
+     *
+     * @param x The position to sample, in columns (fractions are allowed).
+     * @return The noise at x, in [-1, 1].
+     */
+    float noiseAt(double x);
+
+    /**
+     * Samples the noise at a run of whole columns. Every sample equals noiseAt of its column.
+     *
+     * @param out         The array to fill, one sample per column.
+     * @param startColumn The column of the first sample.
+     */
+    default void fill(float[] out, long startColumn) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = noiseAt(startColumn + i);
+        }
+    }
+}
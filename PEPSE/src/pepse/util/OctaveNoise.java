@@ -0,0 +1,117 @@
+package pepse.util;
+
+import java.util.Random;
+
+/**
+ * A sum of octaves of a noise in [-1, 1], each of double the frequency of the one before it. The
+ * amplitudes of the octaves are normalized to sum up to 1, so the sum stays in [-1, 1]. The lattice of
+ * every octave is shifted by a seeded offset, and lattice points are hashed through a seeded permutation
+ * table, which is computed once.
+ */
+public abstract class OctaveNoise implements NoiseGenerator {
+    /* Constants */
+    /**
+     * Size of the permutation table and of the tables of the lattice points.
+     */
+    protected static final int TABLE_SIZE = 256;
+
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final int TABLE_BITS = 8;
+    private static final double MAX_OFFSET = 1 << 16;
+
+    /* Fields */
+    private final int[] permutation = new int[TABLE_SIZE];
+    private final double[] frequencies;
+    private final float[] amplitudes;
+    private final double[] offsets;
+
+    /**
+     * Constructor
+     *
+     * @param random      A seeded random, which shuffles the tables.
+     * @param wavelength  The wavelength of the first octave, in columns.
+     * @param octaves     The number of octaves.
+     * @param persistence The amplitude of every octave relative to the one before it.
+     */
+    protected OctaveNoise(Random random, double wavelength, int octaves, float persistence) {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            permutation[i] = i;
+        }
+        for (int i = TABLE_SIZE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swapped = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swapped;
+        }
+
+        this.frequencies = new double[octaves];
+        this.amplitudes = new float[octaves];
+        this.offsets = new double[octaves];
+        float amplitudesSum = 0;
+        float amplitude = 1;
+        for (int o = 0; o < octaves; o++) {
+            frequencies[o] = (1 << o) / wavelength;
+            amplitudes[o] = amplitude;
+            offsets[o] = random.nextDouble() * MAX_OFFSET;
+            amplitudesSum += amplitude;
+            amplitude *= persistence;
+        }
+        for (int o = 0; o < octaves; o++) {
+            amplitudes[o] /= amplitudesSum;
+        }
+    }
+
+    @Override
+    public float noiseAt(double x) {
+        float noise = 0;
+        for (int o = 0; o < frequencies.length; o++) {
+            noise += amplitudes[o] * latticeNoise(x * frequencies[o] + offsets[o]);
+        }
+        return noise;
+    }
+
+    @Override
+    public void fill(float[] out, long startColumn) {
+        // octave by octave, so the constants of an octave stay in registers over the whole run
+        for (int i = 0; i < out.length; i++) {
+            out[i] = 0;
+        }
+        for (int o = 0; o < frequencies.length; o++) {
+            double frequency = frequencies[o];
+            float amplitude = amplitudes[o];
+            double offset = offsets[o];
+            for (int i = 0; i < out.length; i++) {
+                out[i] += amplitude * latticeNoise((double) (startColumn + i) * frequency + offset);
+            }
+        }
+    }
+
+    /**
+     * Samples a single octave.
+     *
+     * @param x The position in the lattice of the octave.
+     * @return The noise at x, in [-1, 1].
+     */
+    protected abstract float latticeNoise(double x);
+
+    /**
+     * Hashes a lattice point into an index of a table.
+     *
+     * @param point The lattice point.
+     * @return An index in [0, TABLE_SIZE).
+     */
+    protected final int hash(int point) {
+        return permutation[(permutation[point & TABLE_MASK] + (point >>> TABLE_BITS)) & TABLE_MASK];
+    }
+
+    /**
+     * Rounds a position down to its lattice point, faster than Math.floor.
+     *
+     * @param x The position.
+     * @return The greatest lattice point which is not greater than x.
+     */
+    protected static int floor(double x) {
+        int point = (int) x;
+        return x < point ? point - 1 : point;
+    }
+}
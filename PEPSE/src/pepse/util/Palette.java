@@ -0,0 +1,98 @@
+package pepse.util;
+
+import danogl.gui.rendering.RectangleRenderable;
+import danogl.gui.rendering.Renderable;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * A fixed set of renderables in colors around a base color, which are computed once from a seed. An object
+ * picks its variant by hashing its position, so neighbouring objects differ in color, the same position
+ * always gets the same color, and no color or renderable is created per object. The variants never change
+ * after construction, so a palette can be used from any thread.
+ */
+public final class Palette {
+    /* Constants */
+    /**
+     * Number of variants of a palette, unless given otherwise.
+     */
+    public static final int DEFAULT_VARIANTS = 8;
+
+    // the same delta as ColorSupplier's default, sampled from a seeded random instead of a shared one
+    private static final int COLOR_DELTA = 10;
+    private static final int MAX_CHANNEL = 255;
+    private static final int X_PRIME = 73856093;
+    private static final int Y_PRIME = 19349663;
+    private static final int MIX_FACTOR = 0x85EBCA6B;
+
+    /* Fields */
+    private final Renderable[] variants;
+    private final int seed;
+
+    /**
+     * Constructor for a palette of the default number of variants
+     *
+     * @param baseColor The color which the variants approximate.
+     * @param seed      The seed of the world.
+     */
+    public Palette(Color baseColor, int seed) {
+        this(baseColor, DEFAULT_VARIANTS, seed);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param baseColor      The color which the variants approximate.
+     * @param numOfVariants  The number of variants.
+     * @param seed           The seed of the world.
+     */
+    public Palette(Color baseColor, int numOfVariants, int seed) {
+        this.seed = seed;
+        this.variants = new Renderable[numOfVariants];
+        Random random = new Random(((long) seed << Integer.SIZE) ^ baseColor.getRGB());
+        for (int i = 0; i < numOfVariants; i++) {
+            variants[i] = new RectangleRenderable(approximateColor(baseColor, random));
+        }
+    }
+
+    /**
+     * Picks the variant of an object in a given position.
+     *
+     * @param x The x of the object.
+     * @param y The y of the object.
+     * @return The renderable of the object.
+     */
+    public Renderable variantAt(int x, int y) {
+        int hash = x * X_PRIME ^ y * Y_PRIME ^ seed;
+        hash ^= hash >>> 16;
+        hash *= MIX_FACTOR;
+        hash ^= hash >>> 13;
+        return variants[Math.floorMod(hash, variants.length)];
+    }
+
+    /**
+     * getter for the number of variants
+     *
+     * @return the number of variants of the palette
+     */
+    public int size() {
+        return variants.length;
+    }
+
+    /*
+     * a color which differs from the base color by at most COLOR_DELTA per channel
+     */
+    private static Color approximateColor(Color baseColor, Random random) {
+        return new Color(channelNear(baseColor.getRed(), random), channelNear(baseColor.getGreen(), random),
+                channelNear(baseColor.getBlue(), random));
+    }
+
+    /*
+     * a channel in [channel - COLOR_DELTA, channel + COLOR_DELTA], clipped to [0, 255]
+     */
+    private static int channelNear(int channel, Random random) {
+        int sampled = channel - COLOR_DELTA + random.nextInt(2 * COLOR_DELTA + 1);
+        return Math.min(MAX_CHANNEL, Math.max(sampled, 0));
+    }
+}
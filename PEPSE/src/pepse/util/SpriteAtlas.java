@@ -0,0 +1,230 @@
+package pepse.util;
+
+import danogl.gui.rendering.AnimationRenderable;
+import danogl.gui.rendering.ImageRenderable;
+import danogl.gui.rendering.Renderable;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A set of sprites which are decoded in parallel and packed into a single shared image. Every sprite is
+ * handed out as a renderable of a sub-image of the atlas, which shares its pixels, so all the sprites are
+ * a single texture in memory, and every renderable is created once and cached. Sprites are read from the
+ * classpath (or from a file, when not found there), with the color of their top-left pixel transparent,
+ * the same as the game's image reader. The atlas never changes after it is packed, so it can be used from
+ * any thread.
+ */
+public final class SpriteAtlas {
+    /**
+     * A sprite to load, and the cell which it is centered in inside the atlas.
+     */
+    public static final class Sprite {
+        /* Fields */
+        private final String path;
+        private final int cellWidth;
+        private final int cellHeight;
+
+        /**
+         * Constructor for a sprite which takes exactly its own size
+         *
+         * @param path The path of the image.
+         */
+        public Sprite(String path) {
+            this(path, 0, 0);
+        }
+
+        /**
+         * Constructor for a sprite which is centered in a larger cell, so it is drawn in proportion inside
+         * objects of the cell's proportions.
+         *
+         * @param path       The path of the image.
+         * @param cellWidth  The minimal width of the sprite's cell.
+         * @param cellHeight The minimal height of the sprite's cell.
+         */
+        public Sprite(String path, int cellWidth, int cellHeight) {
+            this.path = path;
+            this.cellWidth = cellWidth;
+            this.cellHeight = cellHeight;
+        }
+
+        /**
+         * getter for the path
+         *
+         * @return the path of the image of the sprite
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+
+    /* Fields */
+    // the renderables are sub-images of a single image, which they keep alive
+    private final Map<String, Renderable> renderables;
+
+    private SpriteAtlas(Map<String, Renderable> renderables) {
+        this.renderables = renderables;
+    }
+
+    /**
+     * Starts decoding sprites in parallel, and packing them once they are all decoded.
+     *
+     * @param sprites  The sprites to load.
+     * @param executor The executor which decodes the sprites, one task per sprite.
+     * @return A future of the packed atlas, which completes exceptionally with an {@link UncheckedIOException}
+     * if any sprite cannot be read.
+     */
+    public static CompletableFuture<SpriteAtlas> loadAsync(Collection<Sprite> sprites, Executor executor) {
+        List<CompletableFuture<BufferedImage>> decoded = new ArrayList<>(sprites.size());
+        for (Sprite sprite : sprites) {
+            decoded.add(CompletableFuture.supplyAsync(() -> decode(sprite), executor));
+        }
+        List<Sprite> spriteList = new ArrayList<>(sprites);
+        return CompletableFuture.allOf(decoded.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<BufferedImage> cells = new ArrayList<>(decoded.size());
+                    for (CompletableFuture<BufferedImage> cell : decoded) {
+                        cells.add(cell.join());
+                    }
+                    return pack(spriteList, cells);
+                });
+    }
+
+    /**
+     * getter for the renderable of a sprite
+     *
+     * @param path The path of the sprite.
+     * @return the renderable of the sprite's cell in the atlas
+     * @throws IllegalArgumentException If the sprite is not in the atlas.
+     */
+    public Renderable getRenderable(String path) {
+        Renderable renderable = renderables.get(path);
+        if (renderable == null) {
+            throw new IllegalArgumentException("Sprite is not in the atlas: " + path);
+        }
+        return renderable;
+    }
+
+    /**
+     * Creates an animation of sprites of the atlas.
+     *
+     * @param paths            The paths of the sprites, in the order of the animation.
+     * @param timeBetweenClips The seconds every sprite is shown.
+     * @return an animation of the cached renderables of the sprites
+     */
+    public Renderable getAnimation(String[] paths, double timeBetweenClips) {
+        Renderable[] clips = new Renderable[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            clips[i] = getRenderable(paths[i]);
+        }
+        return new AnimationRenderable(clips, timeBetweenClips);
+    }
+
+    /*
+     * reads a sprite into an image of its cell, with the sprite centered and its background transparent
+     */
+    private static BufferedImage decode(Sprite sprite) {
+        BufferedImage image;
+        try (InputStream input = open(sprite.path)) {
+            image = ImageIO.read(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read sprite " + sprite.path, e);
+        }
+        if (image == null) {
+            throw new UncheckedIOException(new IOException("Not an image: " + sprite.path));
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage cell = new BufferedImage(Math.max(width, sprite.cellWidth),
+                Math.max(height, sprite.cellHeight), BufferedImage.TYPE_INT_ARGB);
+        int offsetX = (cell.getWidth() - width) / 2;
+        int offsetY = (cell.getHeight() - height) / 2;
+        int transparentColor = image.getRGB(0, 0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color = image.getRGB(x, y);
+                cell.setRGB(offsetX + x, offsetY + y, color == transparentColor ? 0 : color);
+            }
+        }
+        return cell;
+    }
+
+    /*
+     * the stream of a sprite on the classpath, or of a file if it is not there
+     */
+    private static InputStream open(String path) throws IOException {
+        InputStream resource = SpriteAtlas.class.getClassLoader().getResourceAsStream(path);
+        if (resource != null) {
+            return resource;
+        }
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("Sprite not found: " + path);
+        }
+        return Files.newInputStream(file);
+    }
+
+    /*
+     * packs the cells into rows of a roughly square image, tallest first, and creates their renderables
+     */
+    private static SpriteAtlas pack(List<Sprite> sprites, List<BufferedImage> cells) {
+        Integer[] order = new Integer[cells.size()];
+        long area = 0;
+        int width = 1;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            area += (long) cells.get(i).getWidth() * cells.get(i).getHeight();
+            width = Math.max(width, cells.get(i).getWidth());
+        }
+        width = Math.max(width, (int) Math.ceil(Math.sqrt(area)));
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> cells.get(i).getHeight()).reversed());
+
+        // the place of every cell, rows from the top, each as tall as its first (tallest) cell
+        int[] xs = new int[order.length];
+        int[] ys = new int[order.length];
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        for (int i : order) {
+            BufferedImage cell = cells.get(i);
+            if (x + cell.getWidth() > width) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            xs[i] = x;
+            ys[i] = y;
+            x += cell.getWidth();
+            rowHeight = Math.max(rowHeight, cell.getHeight());
+        }
+
+        BufferedImage atlas = new BufferedImage(width, Math.max(1, y + rowHeight), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = atlas.createGraphics();
+        Map<String, Renderable> renderables = new HashMap<>();
+        for (int i = 0; i < order.length; i++) {
+            BufferedImage cell = cells.get(i);
+            graphics.drawImage(cell, xs[i], ys[i], null);
+            renderables.put(sprites.get(i).path, new ImageRenderable(
+                    atlas.getSubimage(xs[i], ys[i], cell.getWidth(), cell.getHeight())));
+        }
+        graphics.dispose();
+        return new SpriteAtlas(renderables);
+    }
+}
@@ -0,0 +1,44 @@
+package pepse.util;
+
+import java.util.Random;
+
+/**
+ * Multi-octave value noise. Every lattice point has a value drawn from [-1, 1], and between two points the
+ * noise blends their values with a smoothstep, so it never leaves [-1, 1]. Cheaper than gradient noise,
+ * but blockier.
+ */
+public class ValueNoise extends OctaveNoise {
+    /* Fields */
+    private final float[] values = new float[TABLE_SIZE];
+
+    /**
+     * Constructor
+     *
+     * @param seed        The seed of the noise.
+     * @param wavelength  The wavelength of the first octave, in columns.
+     * @param octaves     The number of octaves.
+     * @param persistence The amplitude of every octave relative to the one before it.
+     */
+    public ValueNoise(long seed, double wavelength, int octaves, float persistence) {
+        this(new Random(seed), wavelength, octaves, persistence);
+    }
+
+    /*
+     * draws the tables from a single random, so they are the same for the same seed
+     */
+    private ValueNoise(Random random, double wavelength, int octaves, float persistence) {
+        super(random, wavelength, octaves, persistence);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            values[i] = 2 * random.nextFloat() - 1;
+        }
+    }
+
+    @Override
+    protected float latticeNoise(double x) {
+        int point = floor(x);
+        float t = (float) (x - point);
+        float smooth = t * t * (3 - 2 * t);
+        float left = values[hash(point)];
+        return left + smooth * (values[hash(point + 1)] - left);
+    }
+}
@@ -1,14 +1,15 @@
 package pepse.world;
 
 import danogl.GameObject;
+import danogl.collisions.Collision;
 import danogl.collisions.GameObjectCollection;
-import danogl.gui.ImageReader;
 import danogl.gui.UserInputListener;
-import danogl.gui.rendering.AnimationRenderable;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
+import pepse.util.SpriteAtlas;
 
 import java.awt.event.KeyEvent;
+import java.util.List;
 
 /**
  * An avatar can move around the world.
@@ -23,22 +24,40 @@ public class Avatar extends GameObject {
     private static final float MAX_VELOCITY_Y_DOWN = 200;
 
     private static final float MAX_VELOCITY_Y_UP = -300;
-    private static final int MAX_ENERGY_LEVEL = 100;
+    static final int MAX_ENERGY_LEVEL = 100;
     private static final double ANIMATION_FRAME_RATE = 0.2;
-    private static final double ENERGY_LEVEL_STEP = 0.5;
+    // energy gained per second while standing, and lost per second while flying
+    private static final float ENERGY_LEVEL_RATE = 30;
     private static final String BASIC_AVATAR_PATH = "pepse/assets/StandingMage.png";
     private static final String AVATAR_LEFT_MOVE_PATH = "pepse/assets/LeftFootMage.png";
     private static final String AVATAR_RIGHT_MOVE_PATH = "pepse/assets/RightFootMage.png";
+    private static final String[] WALKING_PATHS = {BASIC_AVATAR_PATH, AVATAR_LEFT_MOVE_PATH, AVATAR_RIGHT_MOVE_PATH};
+    private static final String[] FLYING_PATHS = {"pepse/assets/FlyingMage1.png",
+            "pepse/assets/FlyingMage2.png", "pepse/assets/FlyingMage3.png"};
+    // the flying sprites are centered in cells of the standing sprite's size, so they keep their proportions
+    private static final int SPRITE_WIDTH = 8;
+    private static final int SPRITE_HEIGHT = 12;
     private static final float FELL_THROUGH_GROUND = 1800;
+    // the center y which an avatar that fell through the ground drops again from
+    private static final float FELL_THROUGH_RESPAWN_Y = -1000;
 
     /* Fields */
-    private static float avatarLength = 40;
-    private static float avatarHeight = 60;
-    private static UserInputListener inputListener;
-    private static Renderable staticAvatarRenderable;
-    private static Renderable walkingAvatarRenderable;
+    // every avatar has its own input and renderables, so several worlds can live in the same process
+    private UserInputListener inputListener;
+    private final Renderable staticAvatarRenderable;
+    private final Renderable walkingAvatarRenderable;
+    private final Renderable flyingAvatarRenderable;
     public float energyLevel;
 
+    /* Fixed step */
+    // in fixed step mode the game moves the avatar in steps, and the engine only resolves its collisions
+    private boolean isStepped;
+    private float gravity;
+    private float stepVelocityX;
+    private float stepVelocityY;
+    // whether the avatar touched the ground in the last update of the engine, and has not left it since
+    private boolean isOnGround;
+
 
     /**
      * Construct a new GameObject instance.
@@ -49,11 +68,43 @@ public class Avatar extends GameObject {
      * @param renderable    The renderable representing the object. Can be null, in which case
      */
     public Avatar(Vector2 topLeftCorner, Vector2 dimensions, Renderable renderable) {
-        super(topLeftCorner, dimensions, renderable);
+        this(topLeftCorner, dimensions, renderable, renderable, renderable);
+    }
+
+    /**
+     * Construct a new GameObject instance.
+     *
+     * @param topLeftCorner      Position of the object, in window coordinates (pixels).
+     *                           Note that (0,0) is the top-left corner of the window.
+     * @param dimensions         Width and height in window coordinates.
+     * @param standingRenderable The renderable of the avatar when standing. Can be null.
+     * @param walkingRenderable  The renderable of the avatar when walking. Can be null.
+     * @param flyingRenderable   The renderable of the avatar when flying. Can be null.
+     */
+    public Avatar(Vector2 topLeftCorner, Vector2 dimensions, Renderable standingRenderable,
+                  Renderable walkingRenderable, Renderable flyingRenderable) {
+        super(topLeftCorner, dimensions, standingRenderable);
+        this.staticAvatarRenderable = standingRenderable;
+        this.walkingAvatarRenderable = walkingRenderable;
+        this.flyingAvatarRenderable = flyingRenderable;
         this.energyLevel = MAX_ENERGY_LEVEL;
     }
 
 
+    /**
+     * getter for the sprites of the avatar, to be loaded into an atlas before the avatar is created
+     *
+     * @return the standing, walking and flying sprites of the avatar
+     */
+    public static List<SpriteAtlas.Sprite> getSprites() {
+        return List.of(new SpriteAtlas.Sprite(BASIC_AVATAR_PATH),
+                new SpriteAtlas.Sprite(AVATAR_LEFT_MOVE_PATH),
+                new SpriteAtlas.Sprite(AVATAR_RIGHT_MOVE_PATH),
+                new SpriteAtlas.Sprite(FLYING_PATHS[0], SPRITE_WIDTH, SPRITE_HEIGHT),
+                new SpriteAtlas.Sprite(FLYING_PATHS[1], SPRITE_WIDTH, SPRITE_HEIGHT),
+                new SpriteAtlas.Sprite(FLYING_PATHS[2], SPRITE_WIDTH, SPRITE_HEIGHT));
+    }
+
     /**
      * This function creates an avatar that can travel the world and is followed by the camera. The can stand,
      * walk, jump and fly, and never reaches the end of the world.
@@ -61,25 +112,24 @@ public class Avatar extends GameObject {
      * @param gameObjects   The collection of all participating game objects.
      * @param layer         The number of the layer to which the created avatar should be added.
      * @param topLeftCorner The location of the top-left corner of the created avatar.
+     * @param dimensions    The length and height of the avatar.
      * @param inputListener Used for reading input from the user.
-     * @param imageReader   Used for reading images from disk or from within a jar.
+     * @param sprites       An atlas which the sprites of {@link #getSprites()} were loaded into.
      * @return A newly created representing the avatar.
      */
     public static Avatar create(GameObjectCollection gameObjects,
                                 int layer, Vector2 topLeftCorner,
+                                Vector2 dimensions,
                                 UserInputListener inputListener,
-                                ImageReader imageReader) {
+                                SpriteAtlas sprites) {
 
-        Avatar.inputListener = inputListener;
+        Renderable staticAvatarRenderable = sprites.getRenderable(BASIC_AVATAR_PATH);
+        Renderable walkingAvatarRenderable = sprites.getAnimation(WALKING_PATHS, ANIMATION_FRAME_RATE);
+        Renderable flyingAvatarRenderable = sprites.getAnimation(FLYING_PATHS, ANIMATION_FRAME_RATE);
 
-        Avatar.staticAvatarRenderable = imageReader.readImage(BASIC_AVATAR_PATH,
-                true);
-        Avatar.walkingAvatarRenderable = new AnimationRenderable(new String[]{BASIC_AVATAR_PATH,
-                AVATAR_LEFT_MOVE_PATH,
-                AVATAR_RIGHT_MOVE_PATH},
-                imageReader, true, ANIMATION_FRAME_RATE);
-
-        Avatar avatar = new Avatar(topLeftCorner, new Vector2(avatarLength, avatarHeight), Avatar.staticAvatarRenderable);
+        Avatar avatar = new Avatar(topLeftCorner, dimensions, staticAvatarRenderable, walkingAvatarRenderable,
+                flyingAvatarRenderable);
+        avatar.setInputListener(inputListener);
         gameObjects.addGameObject(avatar, layer);
 
         return avatar;
@@ -87,53 +137,165 @@ public class Avatar extends GameObject {
     }
 
     /**
-     * setter for the avatar dimensions
+     * setter for the listener which the avatar reads the keys from
+     *
+     * @param inputListener Used for reading input from the user.
+     */
+    public void setInputListener(UserInputListener inputListener) {
+        this.inputListener = inputListener;
+    }
+
+
+    /**
+     * Moves the avatar in fixed steps of the game from now on, instead of by the engine. The engine still
+     * updates the avatar once a frame, and resolves its collisions with the ground.
      *
-     * @param length length of the avatar
-     * @param height height of the avatar
+     * @param gravity The downwards acceleration of the avatar, which the engine no longer applies.
      */
-    public static void setAvatarDimensions(float length, float height){
-        avatarLength = length;
-        avatarHeight = height;
+    public void setFixedStep(float gravity) {
+        this.isStepped = true;
+        this.gravity = gravity;
+        transform().setAccelerationY(0);
+        setMovement(getVelocity().x(), getVelocity().y());
     }
 
+    /**
+     * setter for the velocity of the avatar, whether it is moved by the engine or in fixed steps
+     *
+     * @param velocityX The horizontal velocity.
+     * @param velocityY The vertical velocity.
+     */
+    public void setMovement(float velocityX, float velocityY) {
+        if (isStepped) {
+            stepVelocityX = velocityX;
+            stepVelocityY = velocityY;
+            transform().setVelocity(0, 0);
+        } else {
+            transform().setVelocity(velocityX, velocityY);
+        }
+    }
+
+    /**
+     * getter for the horizontal velocity of the avatar, whether it is moved by the engine or in fixed steps
+     *
+     * @return the horizontal velocity
+     */
+    public float getMovementX() {
+        return isStepped ? stepVelocityX : getVelocity().x();
+    }
+
+    /**
+     * getter for the vertical velocity of the avatar, whether it is moved by the engine or in fixed steps
+     *
+     * @return the vertical velocity
+     */
+    public float getMovementY() {
+        return isStepped ? stepVelocityY : getVelocity().y();
+    }
+
+    /**
+     * Advances the avatar by a single fixed step: reads the input, falls, and moves by its velocity. Only
+     * used in fixed step mode.
+     *
+     * @param deltaTime The length of the step.
+     */
+    public void step(float deltaTime) {
+        float velocityY = isOnGround ? Math.min(stepVelocityY, 0) : stepVelocityY + gravity * deltaTime;
+        move(deltaTime, velocityY, isOnGround);
+        // the collisions are only resolved once a frame, so a step which jumps leaves the ground at once, and
+        // the later steps of the frame neither jump again nor skip the gravity
+        if (stepVelocityY < 0) {
+            isOnGround = false;
+        }
+        transform().setTopLeftCornerX(getTopLeftCorner().x() + stepVelocityX * deltaTime);
+        transform().setTopLeftCornerY(getTopLeftCorner().y() + stepVelocityY * deltaTime);
+    }
 
     /**
      * Checks constantly for user input, and moves the avatar
      * as needed. He can jump, move left and right, and fly
-     * In addition, restricts the maximum movement of the y-axis
+     * In addition, restricts the maximum movement of the y-axis.
+     * The velocity is computed in primitives, so a frame of the avatar creates no vectors.
+     * In fixed step mode, the input is read by the steps instead, and the ground is looked for again.
      */
     @Override
     public void update(float deltaTime) {
         super.update(deltaTime);
+        if (isStepped) {
+            // the collisions of this update tell whether the avatar stands on the ground
+            isOnGround = false;
+            return;
+        }
+        float currentVelocityY = getVelocity().y();
+        move(deltaTime, currentVelocityY, currentVelocityY == 0);
+    }
 
-        renderer().setRenderable(Avatar.staticAvatarRenderable);
+    /**
+     * In fixed step mode, stops the fall of the avatar when it lands on something, and its rise when it
+     * hits something with its head.
+     *
+     * @param other     The object the avatar collided with.
+     * @param collision Information about the collision.
+     */
+    @Override
+    public void onCollisionStay(GameObject other, Collision collision) {
+        super.onCollisionStay(other, collision);
+        if (!isStepped) {
+            return;
+        }
+        float avatarMiddleY = getTopLeftCorner().y() + getDimensions().y() / 2;
+        if (other.getTopLeftCorner().y() >= avatarMiddleY) {
+            isOnGround = true;
+            stepVelocityY = Math.min(stepVelocityY, 0);
+        } else if (other.getTopLeftCorner().y() + other.getDimensions().y() <= avatarMiddleY) {
+            stepVelocityY = Math.max(stepVelocityY, 0);
+        }
+    }
+
+    /**
+     * In fixed step mode, stops the avatar as onCollisionStay does.
+     *
+     * @param other     The object the avatar collided with.
+     * @param collision Information about the collision.
+     */
+    @Override
+    public void onCollisionEnter(GameObject other, Collision collision) {
+        super.onCollisionEnter(other, collision);
+        onCollisionStay(other, collision);
+    }
+
+    /*
+     * reads the input and sets the velocity of the avatar, starting from a given vertical velocity
+     */
+    private void move(float deltaTime, float currentVelocityY, boolean isStanding) {
+        renderer().setRenderable(staticAvatarRenderable);
 
         /* If avatar is standing on something, energy regenerates */
-        if (energyLevel < MAX_ENERGY_LEVEL && getVelocity().y() == 0) {
-            energyLevel += ENERGY_LEVEL_STEP;
+        if (energyLevel < MAX_ENERGY_LEVEL && isStanding) {
+            energyLevel = Math.min(MAX_ENERGY_LEVEL, energyLevel + ENERGY_LEVEL_RATE * deltaTime);
         }
 
-        Vector2 movementDir = new Vector2(0, getVelocity().y());
+        float velocityX = 0;
+        float velocityY = currentVelocityY;
 
         /* Move to left */
         if (inputListener.isKeyPressed(KeyEvent.VK_LEFT)) {
-            movementDir = movementDir.add(Vector2.LEFT.mult(MOVEMENT_SPEED));
+            velocityX -= MOVEMENT_SPEED;
             renderer().setIsFlippedHorizontally(true);
-            renderer().setRenderable(Avatar.walkingAvatarRenderable);
+            renderer().setRenderable(walkingAvatarRenderable);
         }
 
         /* Move to right */
         if (inputListener.isKeyPressed(KeyEvent.VK_RIGHT)) {
-            movementDir = movementDir.add(Vector2.RIGHT.mult(MOVEMENT_SPEED));
+            velocityX += MOVEMENT_SPEED;
             renderer().setIsFlippedHorizontally(false);
-            renderer().setRenderable(Avatar.walkingAvatarRenderable);
+            renderer().setRenderable(walkingAvatarRenderable);
         }
 
         /* Jumping */
         if (inputListener.isKeyPressed(KeyEvent.VK_SPACE)) {
-            if (getVelocity().y() == 0) {
-                movementDir = movementDir.add(Vector2.UP.mult(JUMPING_SPEED));
+            if (isStanding) {
+                velocityY -= JUMPING_SPEED;
             }
         }
 
@@ -141,26 +303,26 @@ public class Avatar extends GameObject {
         if (inputListener.isKeyPressed(KeyEvent.VK_SHIFT)
                 && inputListener.isKeyPressed(KeyEvent.VK_SPACE)
                 && energyLevel > 0) {
-            movementDir = movementDir.add(Vector2.UP.mult(FLYING_SPEED));
-            energyLevel -= ENERGY_LEVEL_STEP;
+            velocityY -= FLYING_SPEED;
+            energyLevel -= ENERGY_LEVEL_RATE * deltaTime;
+            renderer().setRenderable(flyingAvatarRenderable);
         }
 
         /* Restrict the maximum movement of the Y axis */
-        if (movementDir.y() > MAX_VELOCITY_Y_DOWN) {
-            movementDir = new Vector2(movementDir.x(), MAX_VELOCITY_Y_DOWN);
-        } else if (movementDir.y() < MAX_VELOCITY_Y_UP) {
-            movementDir = new Vector2(movementDir.x(), MAX_VELOCITY_Y_UP);
+        if (velocityY > MAX_VELOCITY_Y_DOWN) {
+            velocityY = MAX_VELOCITY_Y_DOWN;
+        } else if (velocityY < MAX_VELOCITY_Y_UP) {
+            velocityY = MAX_VELOCITY_Y_UP;
         }
 
-        setVelocity(movementDir);
-
         /* THIS SHOULD NOT HAPPEN
            This is a fail-safe if the avatar falls through the ground
            (It looks natural, as if there is another world down below!) */
-        if (getCenter().y() > FELL_THROUGH_GROUND)
+        if (getTopLeftCorner().y() + getDimensions().y() / 2 > FELL_THROUGH_GROUND)
         {
-            setCenter(new Vector2(getCenter().x(), -1000));
-            setVelocity(movementDir.multY(0));
+            transform().setTopLeftCornerY(FELL_THROUGH_RESPAWN_Y - getDimensions().y() / 2);
+            velocityY = 0;
         }
+        setMovement(velocityX, velocityY);
     }
 }
@@ -10,21 +10,36 @@ import java.awt.*;
 public class AvatarEnergyLevelDisplay extends GameObject {
     private static final String ENERGY_DISPLAY_TEXT = "Energy level: ";
     /* Constants */
-    private static float prevEnergyLevel;
+    // the energy changes gradually, and is shown in whole units, whose texts are made once
+    private static final String[] ENERGY_TEXTS = new String[Avatar.MAX_ENERGY_LEVEL + 1];
+
+    static {
+        for (int energyLevel = 0; energyLevel < ENERGY_TEXTS.length; energyLevel++) {
+            ENERGY_TEXTS[energyLevel] = ENERGY_DISPLAY_TEXT + energyLevel;
+        }
+    }
 
     /* Fields */
-    private static TextRenderable textRenderable;
-    private static Avatar avatar;
+    private final TextRenderable textRenderable;
+    private final Avatar avatar;
+    private int prevEnergyLevel;
 
     /**
      * Construct a new GameObject instance.
      *
-     * @param topLeftCorner Position of the object, in window coordinates (pixels).
-     *                      Note that (0,0) is the top-left corner of the window.
-     * @param dimensions    Width and height in window coordinates.
+     * @param topLeftCorner  Position of the object, in window coordinates (pixels).
+     *                       Note that (0,0) is the top-left corner of the window.
+     * @param dimensions     Width and height in window coordinates.
+     * @param textRenderable The text which shows the energy level.
+     * @param avatar         The avatar whose energy level is shown.
      */
-    public AvatarEnergyLevelDisplay(Vector2 topLeftCorner, Vector2 dimensions) {
+    public AvatarEnergyLevelDisplay(Vector2 topLeftCorner, Vector2 dimensions, TextRenderable textRenderable,
+                                    Avatar avatar) {
         super(topLeftCorner, dimensions, textRenderable);
+        this.textRenderable = textRenderable;
+        this.avatar = avatar;
+        this.prevEnergyLevel = energyLevelOf(avatar);
+        textRenderable.setString(ENERGY_TEXTS[prevEnergyLevel]);
     }
 
     /**
@@ -40,12 +55,11 @@ public class AvatarEnergyLevelDisplay extends GameObject {
     public static AvatarEnergyLevelDisplay create(GameObjectCollection gameObjects, int layer,
                                                   Vector2 topLeftCorner, Vector2 dimensions,
                                                   Avatar avatar) {
-        AvatarEnergyLevelDisplay.avatar = avatar;
-        AvatarEnergyLevelDisplay.prevEnergyLevel = avatar.energyLevel;
-        AvatarEnergyLevelDisplay.textRenderable = new TextRenderable(ENERGY_DISPLAY_TEXT + prevEnergyLevel);
-        AvatarEnergyLevelDisplay.textRenderable.setColor(Color.WHITE);
+        TextRenderable textRenderable = new TextRenderable(ENERGY_TEXTS[energyLevelOf(avatar)]);
+        textRenderable.setColor(Color.WHITE);
 
-        AvatarEnergyLevelDisplay energyLevelText = new AvatarEnergyLevelDisplay(topLeftCorner, dimensions);
+        AvatarEnergyLevelDisplay energyLevelText = new AvatarEnergyLevelDisplay(topLeftCorner, dimensions,
+                textRenderable, avatar);
         gameObjects.addGameObject(energyLevelText, layer);
         return energyLevelText;
     }
@@ -56,10 +70,18 @@ public class AvatarEnergyLevelDisplay extends GameObject {
     @Override
     public void update(float deltaTime) {
         super.update(deltaTime);
-        if (avatar.energyLevel != prevEnergyLevel) {
-            AvatarEnergyLevelDisplay.textRenderable.setString(ENERGY_DISPLAY_TEXT + avatar.energyLevel);
+        int energyLevel = energyLevelOf(avatar);
+        if (energyLevel != prevEnergyLevel) {
+            textRenderable.setString(ENERGY_TEXTS[energyLevel]);
         }
-        prevEnergyLevel = avatar.energyLevel;
+        prevEnergyLevel = energyLevel;
+    }
+
+    /*
+     * the energy level of an avatar, in whole units within the range of the texts
+     */
+    private static int energyLevelOf(Avatar avatar) {
+        return Math.max(0, Math.min(Avatar.MAX_ENERGY_LEVEL, (int) avatar.energyLevel));
     }
 
 }
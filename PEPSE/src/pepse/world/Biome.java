@@ -0,0 +1,82 @@
+package pepse.world;
+
+import java.util.Random;
+
+/**
+ * The kinds of land the world is divided into. The world is split into regions of a fixed number of
+ * columns, and the biome of every region is drawn from the seed, so it is the same however the world is
+ * streamed. A biome decides how dense its trees are and what its surface is made of.
+ */
+public enum Biome {
+    // the first biome is also the biome of columns which were never classified
+    PLAINS(5, SurfaceMaterial.SOIL),
+    FOREST(15, SurfaceMaterial.SOIL),
+    DESERT(0, SurfaceMaterial.SAND);
+
+    /* Constants */
+    /**
+     * Width of a region of a single biome, in columns.
+     */
+    public static final int REGION_COLUMNS = 64;
+
+    private static final int SEED_REGION_FACTOR = 92821;
+    private static final Biome[] BIOMES = values();
+
+    /* Fields */
+    private final int treeChances;
+    private final SurfaceMaterial surface;
+
+    Biome(int treeChances, SurfaceMaterial surface) {
+        this.treeChances = treeChances;
+        this.surface = surface;
+    }
+
+    /**
+     * Classifies a column.
+     *
+     * @param seed   The seed of the world.
+     * @param column The number of the column (its x divided by Block.SIZE).
+     * @return The biome of the column.
+     */
+    public static Biome of(int seed, int column) {
+        int region = Math.floorDiv(column, REGION_COLUMNS);
+        return BIOMES[new Random((long) seed * SEED_REGION_FACTOR + region).nextInt(BIOMES.length)];
+    }
+
+    /**
+     * Returns the biome of a stored id.
+     *
+     * @param id The id of the biome, as returned by getId.
+     * @return The biome.
+     */
+    public static Biome fromId(int id) {
+        return BIOMES[id];
+    }
+
+    /**
+     * getter for the id of the biome, which is stored in the description of a column
+     *
+     * @return the id of the biome
+     */
+    public int getId() {
+        return ordinal();
+    }
+
+    /**
+     * getter for the chances of a tree in a column, out of a hundred
+     *
+     * @return the chances of a tree to be planted in a column of the biome
+     */
+    public int getTreeChances() {
+        return treeChances;
+    }
+
+    /**
+     * getter for the material of the surface
+     *
+     * @return the material of the upper blocks of the biome, on moderate slopes
+     */
+    public SurfaceMaterial getSurface() {
+        return surface;
+    }
+}
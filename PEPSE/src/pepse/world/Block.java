@@ -21,7 +21,18 @@ public class Block extends GameObject {
      * @param renderable    A renderable to render as the block.
      */
     public Block(Vector2 topLeftCorner, Renderable renderable) {
-        super(topLeftCorner, Vector2.ONES.mult(SIZE), renderable);
+        this(topLeftCorner, 1, renderable);
+    }
+
+    /**
+     * Constructor for a single object which stands for a stack of blocks
+     *
+     * @param topLeftCorner The location of the top-left corner of the top block.
+     * @param numOfBlocks   The number of blocks in the stack.
+     * @param renderable    A renderable to render as the stack.
+     */
+    public Block(Vector2 topLeftCorner, int numOfBlocks, Renderable renderable) {
+        super(topLeftCorner, new Vector2(SIZE, numOfBlocks * SIZE), renderable);
         physics().preventIntersectionsFromDirection(Vector2.ZERO);
         physics().setMass(GameObjectPhysics.IMMOVABLE_MASS);
     }
@@ -0,0 +1,149 @@
+package pepse.world;
+
+/**
+ * A cap on the memory of the live objects of the world, which does not depend on the size of the screen.
+ * The objects are tallied per subsystem, and their bytes are estimated from a fixed cost per object of
+ * that subsystem (a game object with its transform, renderer and physics, and for leaves also their
+ * scheduled movements). The world generator degrades the frames which are farthest from the camera
+ * while the cap is exceeded, and restores them once there is room again.
+ */
+public class MemoryBudget {
+    /**
+     * The kinds of live objects which are tallied.
+     */
+    public enum Subsystem {
+        // estimates, not measurements: the engine's own objects cannot be sized without a heap dump of the
+        // running game, so a cap is approximate and the tallies are meant to compare, not to add up exactly
+        TERRAIN(480),
+        TRUNKS(480),
+        LEAVES(640),
+        FALLING_LEAVES(800);
+
+        /* Fields */
+        private final int bytesPerObject;
+
+        Subsystem(int bytesPerObject) {
+            this.bytesPerObject = bytesPerObject;
+        }
+
+        /**
+         * getter for the estimated size of an object
+         *
+         * @return the estimated bytes of a single live object of the subsystem
+         */
+        public int getBytesPerObject() {
+            return bytesPerObject;
+        }
+    }
+
+    /* Constants */
+    private static final Subsystem[] SUBSYSTEMS = Subsystem.values();
+
+    /* Fields */
+    private final long capBytes;
+    private final long[] liveObjects = new long[SUBSYSTEMS.length];
+
+    /**
+     * Constructor
+     *
+     * @param capBytes The maximal estimated bytes of the live objects.
+     */
+    public MemoryBudget(long capBytes) {
+        this.capBytes = capBytes;
+    }
+
+    /**
+     * getter for the cap
+     *
+     * @return the maximal estimated bytes of the live objects
+     */
+    public long getCapBytes() {
+        return capBytes;
+    }
+
+    /**
+     * Forgets every tallied object, before tallying them again.
+     */
+    public void clear() {
+        for (int i = 0; i < liveObjects.length; i++) {
+            liveObjects[i] = 0;
+        }
+    }
+
+    /**
+     * Tallies objects which were added to the game, or removed from it.
+     *
+     * @param subsystem    The subsystem of the objects.
+     * @param numOfObjects The number of objects which were added, negative if they were removed.
+     */
+    public void add(Subsystem subsystem, long numOfObjects) {
+        liveObjects[subsystem.ordinal()] += numOfObjects;
+    }
+
+    /**
+     * getter for the number of live objects of a subsystem
+     *
+     * @param subsystem The subsystem.
+     * @return the number of tallied objects of the subsystem
+     */
+    public long getLiveObjects(Subsystem subsystem) {
+        return liveObjects[subsystem.ordinal()];
+    }
+
+    /**
+     * getter for the estimated memory of a subsystem
+     *
+     * @param subsystem The subsystem.
+     * @return the estimated bytes of the tallied objects of the subsystem
+     */
+    public long getEstimatedBytes(Subsystem subsystem) {
+        return getLiveObjects(subsystem) * subsystem.getBytesPerObject();
+    }
+
+    /**
+     * getter for the estimated memory of all the subsystems
+     *
+     * @return the estimated bytes of all the tallied objects
+     */
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (Subsystem subsystem : SUBSYSTEMS) {
+            bytes += getEstimatedBytes(subsystem);
+        }
+        return bytes;
+    }
+
+    /**
+     * Checks whether the tallied objects are over the cap
+     *
+     * @return true if the estimated bytes of the tallied objects pass the cap
+     */
+    public boolean isExceeded() {
+        return getEstimatedBytes() > capBytes;
+    }
+
+    /**
+     * Checks whether more memory can be used without passing the cap
+     *
+     * @param extraBytes The estimated bytes which would be added.
+     * @return true if the tallied objects and the extra bytes are within the cap
+     */
+    public boolean fits(long extraBytes) {
+        return getEstimatedBytes() + extraBytes <= capBytes;
+    }
+
+    /**
+     * Describes the tallied objects and their memory, per subsystem.
+     *
+     * @return a line of the objects and estimated bytes of every subsystem, and of the cap
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Subsystem subsystem : SUBSYSTEMS) {
+            report.append(String.format("%s %d objects (%d KB), ", subsystem.name().toLowerCase(),
+                    getLiveObjects(subsystem), getEstimatedBytes(subsystem) >> 10));
+        }
+        return report.append(String.format("total %d KB of %d KB", getEstimatedBytes() >> 10, capBytes >> 10))
+                .toString();
+    }
+}
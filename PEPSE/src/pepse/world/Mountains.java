@@ -0,0 +1,239 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Distant hills behind the trees, which scroll slower than the world. The hills are sampled sparsely from
+ * the terrain's height function, and every strip of them is rasterized once into an image, so the whole
+ * layer is drawn by a single renderable with no per-block objects. A strip image covers only the band
+ * between the highest and the lowest point of its hills, and the solid ground below the band is filled
+ * when drawing. Strips are streamed in and out by their own window, in the scrolled coordinates of the
+ * layer, and are rasterized in the background a strip ahead of coming into view.
+ */
+public class Mountains implements Renderable {
+    /* Constants */
+    /**
+     * How fast the hills scroll relatively to the world.
+     */
+    public static final float SCROLL_FACTOR = 0.3f;
+
+    private static final Color MOUNTAINS_COLOR = new Color(95, 125, 150);
+    private static final String MOUNTAINS_TAG = "mountains";
+    private static final float SAMPLE_SPACING = 8 * Block.SIZE;
+    private static final int SAMPLES_PER_STRIP = 4;
+    private static final float STRIP_WIDTH = SAMPLE_SPACING * SAMPLES_PER_STRIP;
+    // the hills rise above the near terrain, so they are seen behind it
+    private static final float HEIGHT_FACTOR = 0.75f;
+    // strips outside the view on each side which are rasterized before they are needed
+    private static final int PREFETCH_STRIPS = 1;
+
+    /* Fields */
+    private final Vector2 windowDimensions;
+    private final Function<Float, Float> height;
+    private final GameObject camera;
+    private final Executor executor;
+    private final Map<Integer, CompletableFuture<Strip>> strips = new HashMap<>();
+    // the strips in view, from the first one, so drawing them does not go through the map
+    private Strip[] visibleStrips = new Strip[0];
+    // the strips in view which were not rasterized yet when they came into view
+    private int numOfPendingStrips;
+    private float scrolledLeft;
+    private int firstStrip;
+    private int lastStrip = -1;
+
+    /**
+     * Constructor of hills which are rasterized on the common fork-join pool
+     *
+     * @param windowDimensions The dimensions of the windows.
+     * @param height           Function which calculates the height of the terrain in a given x.
+     * @param camera           The camera of the game, which the hills scroll with.
+     */
+    public Mountains(Vector2 windowDimensions, Function<Float, Float> height, GameObject camera) {
+        this(windowDimensions, height, camera, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param windowDimensions The dimensions of the windows.
+     * @param height           Function which calculates the height of the terrain in a given x, from any
+     *                         thread.
+     * @param camera           The camera of the game, which the hills scroll with.
+     * @param executor         The executor which rasterizes the strips.
+     */
+    public Mountains(Vector2 windowDimensions, Function<Float, Float> height, GameObject camera,
+                     Executor executor) {
+        this.windowDimensions = windowDimensions;
+        this.height = height;
+        this.camera = camera;
+        this.executor = executor;
+    }
+
+    /**
+     * This function creates the hills as a single game object which covers the window. The strips in view
+     * are rasterized before it returns.
+     *
+     * @param gameObjects      The collection of all participating game objects.
+     * @param layer            The number of the layer to which the hills should be added.
+     * @param windowDimensions The dimensions of the windows.
+     * @param height           Function which calculates the height of the terrain in a given x.
+     * @param camera           The camera of the game, which the hills scroll with.
+     * @return The renderable of the hills.
+     */
+    public static Mountains create(GameObjectCollection gameObjects, int layer, Vector2 windowDimensions,
+                                   Function<Float, Float> height, GameObject camera) {
+        Mountains mountains = new Mountains(windowDimensions, height, camera);
+        GameObject mountainsObject = new GameObject(Vector2.ZERO, windowDimensions, mountains);
+        mountainsObject.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        mountainsObject.addComponent(mountains::streamStrips);
+        gameObjects.addGameObject(mountainsObject, layer);
+        mountainsObject.setTag(MOUNTAINS_TAG);
+        mountains.streamStrips(0);
+        mountains.awaitVisibleStrips();
+        return mountains;
+    }
+
+    /**
+     * Scrolls the hills with the camera, asking for the strips which are about to come into view and
+     * dropping strips which left it. While the same strips are in view, it only scrolls them.
+     *
+     * @param deltaTime time since the last frame
+     */
+    public void streamStrips(float deltaTime) {
+        float cameraCenterX = camera.getTopLeftCorner().x() + camera.getDimensions().x() / 2;
+        scrolledLeft = (cameraCenterX - windowDimensions.x() / 2) * SCROLL_FACTOR;
+        int newFirstStrip = (int) Math.floor(scrolledLeft / STRIP_WIDTH);
+        int newLastStrip = (int) Math.floor((scrolledLeft + windowDimensions.x()) / STRIP_WIDTH);
+        if (newFirstStrip == firstStrip && newLastStrip == lastStrip) {
+            if (numOfPendingStrips > 0) {
+                collectVisibleStrips();
+            }
+            return;
+        }
+        firstStrip = newFirstStrip;
+        lastStrip = newLastStrip;
+
+        Iterator<Map.Entry<Integer, CompletableFuture<Strip>>> stripIterator = strips.entrySet().iterator();
+        while (stripIterator.hasNext()) {
+            Map.Entry<Integer, CompletableFuture<Strip>> entry = stripIterator.next();
+            if (entry.getKey() < firstStrip - PREFETCH_STRIPS || entry.getKey() > lastStrip + PREFETCH_STRIPS) {
+                // a strip which is still being rasterized is simply not kept
+                entry.getValue().cancel(false);
+                stripIterator.remove();
+            }
+        }
+        for (int strip = firstStrip - PREFETCH_STRIPS; strip <= lastStrip + PREFETCH_STRIPS; strip++) {
+            if (!strips.containsKey(strip)) {
+                int stripToRasterize = strip;
+                strips.put(strip, CompletableFuture.supplyAsync(() -> rasterize(stripToRasterize), executor));
+            }
+        }
+        visibleStrips = new Strip[lastStrip - firstStrip + 1];
+        collectVisibleStrips();
+    }
+
+    /**
+     * Draws the strips which are in view, and the solid ground below their bands.
+     */
+    @Override
+    public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions, double degreesCounterClockwise,
+                       boolean isFlippedHorizontally, boolean isFlippedVertically, double opaqueness) {
+        int bottom = (int) (topLeftCorner.y() + dimensions.y());
+        g.setColor(MOUNTAINS_COLOR);
+        for (int i = 0; i < visibleStrips.length; i++) {
+            Strip strip = visibleStrips[i];
+            if (strip == null) {
+                continue;
+            }
+            int x = (int) (topLeftCorner.x() + (firstStrip + i) * STRIP_WIDTH - scrolledLeft);
+            int bandTop = (int) topLeftCorner.y() + strip.top;
+            g.drawImage(strip.image, x, bandTop, null);
+            int bandBottom = bandTop + strip.image.getHeight();
+            if (bandBottom < bottom) {
+                g.fillRect(x, bandBottom, strip.image.getWidth(), bottom - bandBottom);
+            }
+        }
+    }
+
+    /*
+     * waits until every strip in view is rasterized
+     */
+    private void awaitVisibleStrips() {
+        for (int strip = firstStrip; strip <= lastStrip; strip++) {
+            strips.get(strip).join();
+        }
+        collectVisibleStrips();
+    }
+
+    /*
+     * puts the strips in view which were rasterized by now in the array which is drawn
+     */
+    private void collectVisibleStrips() {
+        numOfPendingStrips = 0;
+        for (int strip = firstStrip; strip <= lastStrip; strip++) {
+            Strip rasterized = strips.get(strip).getNow(null);
+            visibleStrips[strip - firstStrip] = rasterized;
+            if (rasterized == null) {
+                numOfPendingStrips++;
+            }
+        }
+    }
+
+    /*
+     * rasterizes the band of a strip of the hills, sampled sparsely from the height function
+     */
+    private Strip rasterize(int strip) {
+        int[] sampleYs = new int[SAMPLES_PER_STRIP + 1];
+        int top = Integer.MAX_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int sample = 0; sample <= SAMPLES_PER_STRIP; sample++) {
+            float x = strip * STRIP_WIDTH + sample * SAMPLE_SPACING;
+            sampleYs[sample] = (int) (height.apply(x) * HEIGHT_FACTOR);
+            top = Math.min(top, sampleYs[sample]);
+            bottom = Math.max(bottom, sampleYs[sample]);
+        }
+        // a pixel more at the bottom, so the band always meets the solid ground below it
+        BufferedImage image = new BufferedImage((int) STRIP_WIDTH, bottom - top + 1, BufferedImage.TYPE_INT_ARGB);
+
+        Polygon hills = new Polygon();
+        hills.addPoint(0, image.getHeight());
+        for (int sample = 0; sample <= SAMPLES_PER_STRIP; sample++) {
+            hills.addPoint((int) (sample * SAMPLE_SPACING), sampleYs[sample] - top);
+        }
+        hills.addPoint(image.getWidth(), image.getHeight());
+
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(MOUNTAINS_COLOR);
+        g.fillPolygon(hills);
+        g.dispose();
+        return new Strip(image, top);
+    }
+
+    /*
+     * A rasterized band of hills, and the y of its top in the window
+     */
+    private static class Strip {
+        private final BufferedImage image;
+        private final int top;
+
+        Strip(BufferedImage image, int top) {
+            this.image = image;
+            this.top = top;
+        }
+    }
+}
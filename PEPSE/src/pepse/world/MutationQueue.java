@@ -0,0 +1,179 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Collects the adds, removes and layer moves of the world's objects during a frame, and applies them to
+ * the game in a single batch. Only the net change of every object is applied: an object which is moved
+ * and then moved back, or added and then removed, is not touched at all, and an object which is moved
+ * several times is moved once. The counts of the last batch are kept, for reporting.
+ * Must be used from the game thread only.
+ */
+public class MutationQueue {
+    /* Constants */
+    // the "layer" of an object which is not in the game
+    private static final int NO_LAYER = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 256;
+
+    /* Fields */
+    private final GameObjectCollection gameObjects;
+    // the pending objects, each with its layer before the batch and its layer after it
+    private final Map<GameObject, Integer> pendingIndices = new IdentityHashMap<>();
+    private GameObject[] pendingObjects = new GameObject[INITIAL_CAPACITY];
+    private int[] fromLayers = new int[INITIAL_CAPACITY];
+    private int[] toLayers = new int[INITIAL_CAPACITY];
+    private int numOfPending;
+    private int numOfRequested;
+
+    /* Counts of the last batch */
+    private int lastRequested;
+    private int lastAdded;
+    private int lastRemoved;
+    private int lastMoved;
+
+    /**
+     * Constructor
+     *
+     * @param gameObjects The collection which the batches are applied to.
+     */
+    public MutationQueue(GameObjectCollection gameObjects) {
+        this.gameObjects = gameObjects;
+    }
+
+    /**
+     * getter for the collection which the batches are applied to
+     *
+     * @return the collection of the game objects
+     */
+    public GameObjectCollection getGameObjects() {
+        return gameObjects;
+    }
+
+    /**
+     * Adds an object to the game at the end of the frame.
+     *
+     * @param gameObject The object to add.
+     * @param layer      The layer to add it to.
+     */
+    public void add(GameObject gameObject, int layer) {
+        request(gameObject, NO_LAYER, layer);
+    }
+
+    /**
+     * Removes an object from the game at the end of the frame.
+     *
+     * @param gameObject The object to remove.
+     * @param layer      The layer it is in.
+     */
+    public void remove(GameObject gameObject, int layer) {
+        request(gameObject, layer, NO_LAYER);
+    }
+
+    /**
+     * Moves an object between layers at the end of the frame.
+     *
+     * @param gameObject The object to move.
+     * @param fromLayer  The layer it is in.
+     * @param toLayer    The layer to move it to.
+     */
+    public void move(GameObject gameObject, int fromLayer, int toLayer) {
+        request(gameObject, fromLayer, toLayer);
+    }
+
+    /**
+     * Applies the net change of every pending object to the game, and keeps the counts of the batch.
+     * Does nothing (and creates nothing) when no change is pending.
+     */
+    public void flush() {
+        lastRequested = numOfRequested;
+        lastAdded = 0;
+        lastRemoved = 0;
+        lastMoved = 0;
+        if (numOfPending == 0) {
+            numOfRequested = 0;
+            return;
+        }
+
+        for (int i = 0; i < numOfPending; i++) {
+            GameObject gameObject = pendingObjects[i];
+            int fromLayer = fromLayers[i];
+            int toLayer = toLayers[i];
+            pendingObjects[i] = null;
+            if (fromLayer == toLayer) {
+                continue;
+            }
+            if (fromLayer != NO_LAYER) {
+                gameObjects.removeGameObject(gameObject, fromLayer);
+            }
+            if (toLayer != NO_LAYER) {
+                gameObjects.addGameObject(gameObject, toLayer);
+            }
+            if (fromLayer == NO_LAYER) {
+                lastAdded++;
+            } else if (toLayer == NO_LAYER) {
+                lastRemoved++;
+            } else {
+                lastMoved++;
+            }
+        }
+        pendingIndices.clear();
+        numOfPending = 0;
+        numOfRequested = 0;
+    }
+
+    /**
+     * getter for the number of requests of the last batch
+     *
+     * @return the number of adds, removes and moves which were requested before the last batch
+     */
+    public int getLastRequested() {
+        return lastRequested;
+    }
+
+    /**
+     * getter for the number of changes which the last batch applied
+     *
+     * @return the number of objects which were added, removed or moved by the last batch
+     */
+    public int getLastApplied() {
+        return lastAdded + lastRemoved + lastMoved;
+    }
+
+    /**
+     * Describes the last batch.
+     *
+     * @return the requests of the last batch, and the adds, removes and moves it applied
+     */
+    public String report() {
+        return String.format("%d requested, %d added, %d removed, %d moved, %d merged away",
+                lastRequested, lastAdded, lastRemoved, lastMoved, lastRequested - getLastApplied());
+    }
+
+    /*
+     * composes a request with the pending change of its object
+     */
+    private void request(GameObject gameObject, int fromLayer, int toLayer) {
+        numOfRequested++;
+        Integer index = pendingIndices.get(gameObject);
+        if (index != null) {
+            // the object is where the earlier requests left it, so only where it ends changes
+            toLayers[index] = toLayer;
+            return;
+        }
+        if (numOfPending == pendingObjects.length) {
+            pendingObjects = Arrays.copyOf(pendingObjects, 2 * numOfPending);
+            fromLayers = Arrays.copyOf(fromLayers, 2 * numOfPending);
+            toLayers = Arrays.copyOf(toLayers, 2 * numOfPending);
+        }
+        pendingObjects[numOfPending] = gameObject;
+        fromLayers[numOfPending] = fromLayer;
+        toLayers[numOfPending] = toLayer;
+        pendingIndices.put(gameObject, numOfPending);
+        numOfPending++;
+    }
+}
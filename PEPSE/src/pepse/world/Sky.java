@@ -12,7 +12,10 @@ import java.awt.*;
  * Represents the sky.
  */
 public class Sky {
-    private static final Color BASIC_SKY_COLOR = Color.decode("#80C6E5");
+    /**
+     * The color of the sky.
+     */
+    public static final Color BASIC_SKY_COLOR = Color.decode("#80C6E5");
     private static final String SKY_TAG = "sky";
 
 
@@ -0,0 +1,285 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Clouds and birds in the sky, kept as a pool of particles in parallel primitive arrays instead of as game
+ * objects. Live particles are packed at the start of the arrays, a dead particle is recycled by moving the
+ * last live one into its place, and the whole pool is drawn by a single renderable. Particles are spawned
+ * by a seeded random per world frame, so a frame always gets the same sky, and the pool holds exactly as
+ * many particles as the most frames which are live at once can spawn.
+ */
+public class SkyParticles implements Renderable {
+    /* Constants */
+    private static final String PARTICLES_TAG = "sky particles";
+    private static final int CLOUDS_PER_FRAME = 3;
+    private static final int BIRDS_PER_FRAME = 4;
+    // the most particles which a frame spawns, if it gets a flock
+    private static final int MAX_PARTICLES_PER_FRAME = CLOUDS_PER_FRAME + BIRDS_PER_FRAME;
+    private static final int CLOUD_SPRITES = 3;
+    private static final int FIRST_BIRD_SPRITE = CLOUD_SPRITES;
+    private static final int BIRD_SPRITES = 2;
+    private static final float CLOUD_SPEED = 15;
+    private static final float BIRD_SPEED = 90;
+    private static final float BIRD_LIFETIME = 40;
+    private static final float BIRD_FLAP_RATE = 4;
+    private static final float SKY_HEIGHT_FACTOR = 0.35f;
+    private static final int CLOUD_WIDTH = 160;
+    private static final int CLOUD_HEIGHT = 60;
+    private static final int PUFFS_PER_CLOUD = 4;
+    private static final int BIRD_WIDTH = 20;
+    private static final int BIRD_HEIGHT = 10;
+    private static final Color CLOUD_COLOR = new Color(255, 255, 255, 210);
+    private static final Color BIRD_COLOR = new Color(40, 40, 40);
+    private static final int FRAME_SEED_FACTOR = 7919;
+
+    /* Particles */
+    private final int capacity;
+    private final float[] x;
+    private final float[] y;
+    private final float[] velocityX;
+    private final float[] velocityY;
+    private final float[] age;
+    private final float[] lifetime;
+    private final int[] sprite;
+    private final int[] homeFrame;
+    private int numOfParticles;
+
+    /* Fields */
+    private final Vector2 windowDimensions;
+    private final GameObject camera;
+    private final int frameSize;
+    private final int seed;
+    private final BufferedImage[] sprites = new BufferedImage[CLOUD_SPRITES + BIRD_SPRITES];
+    private float cameraLeft;
+    private float cameraTop;
+
+    /**
+     * Constructor
+     *
+     * @param windowDimensions The dimensions of the windows.
+     * @param camera           The camera of the game.
+     * @param frameSize        The width of a world frame.
+     * @param maxFrames        The most frames which are live at once, which the pool is sized for.
+     * @param seed             The seed of the world.
+     */
+    public SkyParticles(Vector2 windowDimensions, GameObject camera, int frameSize, int maxFrames, int seed) {
+        this.windowDimensions = windowDimensions;
+        this.camera = camera;
+        this.frameSize = frameSize;
+        this.seed = seed;
+        this.capacity = maxFrames * MAX_PARTICLES_PER_FRAME;
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.velocityX = new float[capacity];
+        this.velocityY = new float[capacity];
+        this.age = new float[capacity];
+        this.lifetime = new float[capacity];
+        this.sprite = new int[capacity];
+        this.homeFrame = new int[capacity];
+        createSprites();
+    }
+
+    /**
+     * This function creates the particles as a single game object which covers the window.
+     *
+     * @param gameObjects      The collection of all participating game objects.
+     * @param layer            The number of the layer to which the particles should be added.
+     * @param windowDimensions The dimensions of the windows.
+     * @param camera           The camera of the game.
+     * @param frameSize        The width of a world frame.
+     * @param maxFrames        The most frames which are live at once, which the pool is sized for.
+     * @param seed             The seed of the world.
+     * @return The particle system.
+     */
+    public static SkyParticles create(GameObjectCollection gameObjects, int layer, Vector2 windowDimensions,
+                                      GameObject camera, int frameSize, int maxFrames, int seed) {
+        SkyParticles particles = new SkyParticles(windowDimensions, camera, frameSize, maxFrames, seed);
+        GameObject particlesObject = new GameObject(Vector2.ZERO, windowDimensions, particles);
+        particlesObject.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        particlesObject.addComponent(particles::simulate);
+        gameObjects.addGameObject(particlesObject, layer);
+        particlesObject.setTag(PARTICLES_TAG);
+        return particles;
+    }
+
+    /**
+     * Spawns the clouds and birds of every frame in the given range.
+     *
+     * @param minX The lower bound of the range (a multiple of the frame size).
+     * @param maxX The upper bound of the range (a multiple of the frame size).
+     */
+    public void spawnInRange(int minX, int maxX) {
+        for (int frameMinX = minX; frameMinX < maxX; frameMinX += frameSize) {
+            int frame = Math.floorDiv(frameMinX, frameSize);
+            Random random = new Random((long) seed * FRAME_SEED_FACTOR + frame);
+            float skyHeight = windowDimensions.y() * SKY_HEIGHT_FACTOR;
+
+            for (int i = 0; i < CLOUDS_PER_FRAME; i++) {
+                spawn(frame, frameMinX + random.nextFloat() * frameSize, random.nextFloat() * skyHeight,
+                        CLOUD_SPEED * (random.nextFloat() - 0.5f), 0,
+                        Float.POSITIVE_INFINITY, random.nextInt(CLOUD_SPRITES));
+            }
+            // birds come in flocks, over some of the frames
+            int numOfBirds = random.nextBoolean() ? BIRDS_PER_FRAME : 0;
+            for (int i = 0; i < numOfBirds; i++) {
+                float direction = random.nextBoolean() ? 1 : -1;
+                spawn(frame, frameMinX + random.nextFloat() * frameSize, random.nextFloat() * skyHeight,
+                        direction * BIRD_SPEED * (0.5f + random.nextFloat()), 0,
+                        BIRD_LIFETIME * random.nextFloat(), FIRST_BIRD_SPRITE);
+            }
+        }
+    }
+
+    /**
+     * Recycles the particles which were spawned by frames in the given range.
+     *
+     * @param minX The lower bound of the range (a multiple of the frame size).
+     * @param maxX The upper bound of the range (a multiple of the frame size).
+     */
+    public void despawnInRange(int minX, int maxX) {
+        int minFrame = Math.floorDiv(minX, frameSize);
+        int maxFrame = Math.floorDiv(maxX, frameSize);
+        for (int i = numOfParticles - 1; i >= 0; i--) {
+            if (homeFrame[i] >= minFrame && homeFrame[i] < maxFrame) {
+                recycle(i);
+            }
+        }
+    }
+
+    /**
+     * Recycles all the particles.
+     */
+    public void clear() {
+        numOfParticles = 0;
+    }
+
+    /**
+     * getter for the capacity of the pool
+     *
+     * @return the most particles which can be live at once
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * getter for the number of live particles
+     *
+     * @return the number of live particles
+     */
+    public int size() {
+        return numOfParticles;
+    }
+
+    /**
+     * Moves the particles, ages them and recycles the ones which reached the end of their lifetime.
+     *
+     * @param deltaTime time since the last frame
+     */
+    public void simulate(float deltaTime) {
+        for (int i = numOfParticles - 1; i >= 0; i--) {
+            age[i] += deltaTime;
+            if (age[i] >= lifetime[i]) {
+                recycle(i);
+                continue;
+            }
+            x[i] += velocityX[i] * deltaTime;
+            y[i] += velocityY[i] * deltaTime;
+        }
+        cameraLeft = camera.getTopLeftCorner().x() + (camera.getDimensions().x() - windowDimensions.x()) / 2;
+        cameraTop = camera.getTopLeftCorner().y() + (camera.getDimensions().y() - windowDimensions.y()) / 2;
+    }
+
+    /**
+     * Draws the live particles which are in view.
+     */
+    @Override
+    public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions, double degreesCounterClockwise,
+                       boolean isFlippedHorizontally, boolean isFlippedVertically, double opaqueness) {
+        float left = topLeftCorner.x() - cameraLeft;
+        float top = topLeftCorner.y() - cameraTop;
+        for (int i = 0; i < numOfParticles; i++) {
+            BufferedImage image = sprites[sprite[i] >= FIRST_BIRD_SPRITE ?
+                    FIRST_BIRD_SPRITE + ((int) (age[i] * BIRD_FLAP_RATE) & 1) : sprite[i]];
+            int screenX = (int) (left + x[i]);
+            if (screenX + image.getWidth() < 0 || screenX > dimensions.x()) {
+                continue;
+            }
+            g.drawImage(image, screenX, (int) (top + y[i]), null);
+        }
+    }
+
+    /*
+     * takes a particle out of the pool, if there is room
+     */
+    private void spawn(int frame, float spawnX, float spawnY, float spawnVelocityX, float spawnVelocityY,
+                       float spawnLifetime, int spawnSprite) {
+        if (numOfParticles == capacity) {
+            return;
+        }
+        int i = numOfParticles++;
+        x[i] = spawnX;
+        y[i] = spawnY;
+        velocityX[i] = spawnVelocityX;
+        velocityY[i] = spawnVelocityY;
+        age[i] = 0;
+        lifetime[i] = spawnLifetime;
+        sprite[i] = spawnSprite;
+        homeFrame[i] = frame;
+    }
+
+    /*
+     * returns a particle to the pool, by moving the last live particle into its place
+     */
+    private void recycle(int i) {
+        int last = --numOfParticles;
+        x[i] = x[last];
+        y[i] = y[last];
+        velocityX[i] = velocityX[last];
+        velocityY[i] = velocityY[last];
+        age[i] = age[last];
+        lifetime[i] = lifetime[last];
+        sprite[i] = sprite[last];
+        homeFrame[i] = homeFrame[last];
+    }
+
+    /*
+     * draws the clouds and the frames of the birds once
+     */
+    private void createSprites() {
+        Random random = new Random(seed);
+        for (int i = 0; i < CLOUD_SPRITES; i++) {
+            sprites[i] = new BufferedImage(CLOUD_WIDTH, CLOUD_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = sprites[i].createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(CLOUD_COLOR);
+            for (int puff = 0; puff < PUFFS_PER_CLOUD; puff++) {
+                int puffWidth = CLOUD_WIDTH / 2 + random.nextInt(CLOUD_WIDTH / 4);
+                int puffHeight = CLOUD_HEIGHT / 2 + random.nextInt(CLOUD_HEIGHT / 2);
+                g.fillOval(random.nextInt(CLOUD_WIDTH - puffWidth), CLOUD_HEIGHT - puffHeight,
+                        puffWidth, puffHeight);
+            }
+            g.dispose();
+        }
+        for (int i = 0; i < BIRD_SPRITES; i++) {
+            BufferedImage bird = new BufferedImage(BIRD_WIDTH, BIRD_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = bird.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(BIRD_COLOR);
+            int wingY = i == 0 ? 0 : BIRD_HEIGHT - 1;
+            g.drawLine(0, wingY, BIRD_WIDTH / 2, BIRD_HEIGHT / 2);
+            g.drawLine(BIRD_WIDTH / 2, BIRD_HEIGHT / 2, BIRD_WIDTH - 1, wingY);
+            g.dispose();
+            sprites[FIRST_BIRD_SPRITE + i] = bird;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package pepse.world;
+
+import danogl.GameObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the live objects of the world by their place, which answers which objects of a kind are in
+ * a range of x-values, and which is the nearest one to a point, without scanning the game's objects.
+ * Static objects are kept in a grid of a cell per column, by the left of the object, which never moves.
+ * Moving objects are kept in a loose grid of wider cells, by their center, and are moved between cells by
+ * refresh(); queries look one cell further on each side, so an object which moved since then is still
+ * found. A query costs the number of cells it covers and the objects in them, whatever the size of the
+ * world. Must be used from the game thread only.
+ */
+public class SpatialIndex {
+    /**
+     * The kinds of indexed objects.
+     */
+    public enum Kind {
+        // the top block of every column of the ground
+        SURFACE(false),
+        // a single object per tree, the lowest of its trunk
+        TREE(false),
+        LEAF(false),
+        FALLING_LEAF(true);
+
+        /* Fields */
+        private final boolean isMoving;
+
+        Kind(boolean isMoving) {
+            this.isMoving = isMoving;
+        }
+    }
+
+    /* Constants */
+    private static final Kind[] KINDS = Kind.values();
+    private static final int LOOSE_CELL_SIZE = 4 * (int) Block.SIZE;
+    private static final int INITIAL_CELLS = 256;
+    private static final int INITIAL_MOVING = 64;
+
+    /* Fields */
+    private final Grid[] grids = new Grid[KINDS.length];
+    // the moving objects, each with its kind and the cell it is kept in
+    private final Map<GameObject, Integer> movingIndices = new IdentityHashMap<>();
+    private GameObject[] movingObjects = new GameObject[INITIAL_MOVING];
+    private Kind[] movingKinds = new Kind[INITIAL_MOVING];
+    private int[] movingCells = new int[INITIAL_MOVING];
+    private int numOfMoving;
+
+    /**
+     * Constructor of an empty index
+     */
+    public SpatialIndex() {
+        for (Kind kind : KINDS) {
+            grids[kind.ordinal()] = new Grid(kind.isMoving ? LOOSE_CELL_SIZE : (int) Block.SIZE);
+        }
+    }
+
+    /**
+     * Indexes an object.
+     *
+     * @param gameObject The object.
+     * @param kind       The kind of the object.
+     */
+    public void add(GameObject gameObject, Kind kind) {
+        Grid grid = grids[kind.ordinal()];
+        if (!kind.isMoving) {
+            grid.add(gameObject, grid.cellOf(gameObject.getTopLeftCorner().x()));
+            return;
+        }
+        int cell = grid.cellOf(centerX(gameObject));
+        grid.add(gameObject, cell);
+        if (numOfMoving == movingObjects.length) {
+            movingObjects = Arrays.copyOf(movingObjects, 2 * numOfMoving);
+            movingKinds = Arrays.copyOf(movingKinds, 2 * numOfMoving);
+            movingCells = Arrays.copyOf(movingCells, 2 * numOfMoving);
+        }
+        movingObjects[numOfMoving] = gameObject;
+        movingKinds[numOfMoving] = kind;
+        movingCells[numOfMoving] = cell;
+        movingIndices.put(gameObject, numOfMoving);
+        numOfMoving++;
+    }
+
+    /**
+     * Removes an object from the index. Does nothing if it is not indexed as that kind.
+     *
+     * @param gameObject The object.
+     * @param kind       The kind it was indexed as.
+     */
+    public void remove(GameObject gameObject, Kind kind) {
+        Grid grid = grids[kind.ordinal()];
+        if (!kind.isMoving) {
+            grid.remove(gameObject, grid.cellOf(gameObject.getTopLeftCorner().x()));
+            return;
+        }
+        Integer index = movingIndices.remove(gameObject);
+        if (index == null) {
+            return;
+        }
+        grid.remove(gameObject, movingCells[index]);
+        // the last moving object takes the place of the removed one
+        numOfMoving--;
+        if (index != numOfMoving) {
+            movingObjects[index] = movingObjects[numOfMoving];
+            movingKinds[index] = movingKinds[numOfMoving];
+            movingCells[index] = movingCells[numOfMoving];
+            movingIndices.put(movingObjects[index], index);
+        }
+        movingObjects[numOfMoving] = null;
+        movingKinds[numOfMoving] = null;
+    }
+
+    /**
+     * Indexes an object as another kind, as when a leaf starts or stops falling.
+     *
+     * @param gameObject The object.
+     * @param from       The kind it was indexed as.
+     * @param to         The kind to index it as.
+     */
+    public void move(GameObject gameObject, Kind from, Kind to) {
+        remove(gameObject, from);
+        add(gameObject, to);
+    }
+
+    /**
+     * Moves every moving object to the cell of its current center. Creates nothing while the cells have
+     * room, so it can be called every frame.
+     */
+    public void refresh() {
+        for (int i = 0; i < numOfMoving; i++) {
+            Grid grid = grids[movingKinds[i].ordinal()];
+            int cell = grid.cellOf(centerX(movingObjects[i]));
+            if (cell != movingCells[i]) {
+                grid.remove(movingObjects[i], movingCells[i]);
+                grid.add(movingObjects[i], cell);
+                movingCells[i] = cell;
+            }
+        }
+    }
+
+    /**
+     * Collects the objects of a kind whose center is in a range of x-values.
+     *
+     * @param kind   The kind of the objects.
+     * @param minX   The lower bound of the range.
+     * @param maxX   The upper bound of the range.
+     * @param result The list to add the objects to. It is not cleared first.
+     * @return The number of objects which were added.
+     */
+    public int queryRange(Kind kind, float minX, float maxX, List<GameObject> result) {
+        Grid grid = grids[kind.ordinal()];
+        int numOfFound = 0;
+        int lastCell = grid.cellOf(maxX) + (kind.isMoving ? 1 : 0);
+        // a static object is kept by its left, which is at most a block before its center
+        int firstCell = kind.isMoving ? grid.cellOf(minX) - 1 : grid.cellOf(minX - Block.SIZE);
+        for (int cell = firstCell; cell <= lastCell; cell++) {
+            ArrayList<GameObject> objects = grid.objectsIn(cell);
+            if (objects == null) {
+                continue;
+            }
+            for (int i = 0; i < objects.size(); i++) {
+                float x = centerX(objects.get(i));
+                if (x >= minX && x <= maxX) {
+                    result.add(objects.get(i));
+                    numOfFound++;
+                }
+            }
+        }
+        return numOfFound;
+    }
+
+    /**
+     * Finds the object of a kind whose center is nearest to a point. The cells are searched outwards from
+     * the point, and the search stops once no nearer object can be found.
+     *
+     * @param kind        The kind of the object.
+     * @param x           The x of the point.
+     * @param y           The y of the point.
+     * @param maxDistance The largest distance to search.
+     * @return The nearest object, or null if there is none within the distance.
+     */
+    public GameObject nearest(Kind kind, float x, float y, float maxDistance) {
+        Grid grid = grids[kind.ordinal()];
+        if (grid.size == 0) {
+            return null;
+        }
+        GameObject nearest = null;
+        float nearestDistance = maxDistance * maxDistance;
+        int centerCell = grid.cellOf(x);
+        // a cell holds objects whose center may be up to a cell (or a block) outside it
+        float slack = kind.isMoving ? grid.cellSize : Block.SIZE;
+        int maxRing = (int) Math.ceil((maxDistance + slack) / grid.cellSize) + 1;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            float ringDistance = Math.max(0, (ring - 1) * grid.cellSize - slack);
+            if (nearest != null && ringDistance * ringDistance > nearestDistance) {
+                break;
+            }
+            for (int side = -1; side <= 1; side += 2) {
+                ArrayList<GameObject> objects = grid.objectsIn(centerCell + side * ring);
+                if (objects != null) {
+                    for (int i = 0; i < objects.size(); i++) {
+                        GameObject candidate = objects.get(i);
+                        float dx = centerX(candidate) - x;
+                        float dy = candidate.getTopLeftCorner().y() + candidate.getDimensions().y() / 2 - y;
+                        float distance = dx * dx + dy * dy;
+                        if (distance <= nearestDistance) {
+                            nearest = candidate;
+                            nearestDistance = distance;
+                        }
+                    }
+                }
+                if (ring == 0) {
+                    break;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * getter for the number of indexed objects of a kind
+     *
+     * @param kind The kind of the objects.
+     * @return the number of objects of the kind in the index
+     */
+    public int size(Kind kind) {
+        return grids[kind.ordinal()].size;
+    }
+
+    /**
+     * Removes every object of a kind from the index.
+     *
+     * @param kind The kind of the objects.
+     */
+    public void clear(Kind kind) {
+        grids[kind.ordinal()].clear();
+        if (!kind.isMoving) {
+            return;
+        }
+        int numOfKept = 0;
+        for (int i = 0; i < numOfMoving; i++) {
+            if (movingKinds[i] == kind) {
+                movingIndices.remove(movingObjects[i]);
+                continue;
+            }
+            movingObjects[numOfKept] = movingObjects[i];
+            movingKinds[numOfKept] = movingKinds[i];
+            movingCells[numOfKept] = movingCells[i];
+            movingIndices.put(movingObjects[numOfKept], numOfKept);
+            numOfKept++;
+        }
+        Arrays.fill(movingObjects, numOfKept, numOfMoving, null);
+        Arrays.fill(movingKinds, numOfKept, numOfMoving, null);
+        numOfMoving = numOfKept;
+    }
+
+    /**
+     * Removes every object from the index.
+     */
+    public void clear() {
+        for (Grid grid : grids) {
+            grid.clear();
+        }
+        movingIndices.clear();
+        Arrays.fill(movingObjects, 0, numOfMoving, null);
+        Arrays.fill(movingKinds, 0, numOfMoving, null);
+        numOfMoving = 0;
+    }
+
+    /*
+     * the x of the center of an object, without creating a vector
+     */
+    private static float centerX(GameObject gameObject) {
+        return gameObject.getTopLeftCorner().x() + gameObject.getDimensions().x() / 2;
+    }
+
+    /*
+     * An unbounded row of cells, kept in a ring which is large enough for the cells which are not empty.
+     * The world in the game is a window of columns, so the ring only grows with the width of the window.
+     */
+    private static class Grid {
+        private final int cellSize;
+        private Cell[] ring = new Cell[INITIAL_CELLS];
+        private int size;
+
+        Grid(int cellSize) {
+            this.cellSize = cellSize;
+        }
+
+        int cellOf(float x) {
+            return (int) Math.floor(x / cellSize);
+        }
+
+        ArrayList<GameObject> objectsIn(int index) {
+            Cell cell = ring[index & (ring.length - 1)];
+            return cell != null && cell.index == index ? cell.objects : null;
+        }
+
+        void add(GameObject gameObject, int index) {
+            Cell cell = ring[index & (ring.length - 1)];
+            while (cell != null && cell.index != index && !cell.objects.isEmpty()) {
+                grow();
+                cell = ring[index & (ring.length - 1)];
+            }
+            if (cell == null) {
+                cell = new Cell();
+                ring[index & (ring.length - 1)] = cell;
+            }
+            // an empty cell of another index is reused
+            cell.index = index;
+            cell.objects.add(gameObject);
+            size++;
+        }
+
+        void remove(GameObject gameObject, int index) {
+            Cell cell = ring[index & (ring.length - 1)];
+            if (cell != null && cell.index == index && cell.objects.remove(gameObject)) {
+                size--;
+            }
+        }
+
+        void clear() {
+            for (Cell cell : ring) {
+                if (cell != null) {
+                    cell.objects.clear();
+                }
+            }
+            size = 0;
+        }
+
+        /*
+         * doubles the ring until every cell which is not empty has its own slot
+         */
+        private void grow() {
+            Cell[] oldRing = ring;
+            int length = oldRing.length;
+            boolean hasCollision = true;
+            while (hasCollision) {
+                length *= 2;
+                ring = new Cell[length];
+                hasCollision = false;
+                for (Cell cell : oldRing) {
+                    if (cell == null || cell.objects.isEmpty()) {
+                        continue;
+                    }
+                    int slot = cell.index & (length - 1);
+                    if (ring[slot] != null) {
+                        hasCollision = true;
+                        break;
+                    }
+                    ring[slot] = cell;
+                }
+            }
+        }
+    }
+
+    /*
+     * The objects of a single cell
+     */
+    private static class Cell {
+        private int index;
+        private final ArrayList<GameObject> objects = new ArrayList<>();
+    }
+}
@@ -0,0 +1,155 @@
+package pepse.world;
+
+/**
+ * The window of frames which are built around the avatar: the frames of the screen, and a margin of frames
+ * outside the screen on each side. The avatar is kept in the middle frame of the window, and the window
+ * moves a frame at a time once the avatar passes into the outermost frames of the screen. Only the
+ * boundaries are kept here; building and removing the frames is left to the world which uses the window.
+ */
+public class StreamingWindow {
+    /* Constants */
+    public static final int FRAMES_IN_SCREEN = 3;
+
+    /* Fields */
+    private final int frameSize;
+    private int margin;
+    private int leftBoundary;
+    private int rightBoundary;
+
+    /**
+     * Constructor of the initial window, of a screen which starts at x 0.
+     *
+     * @param frameSize The width of a single frame.
+     * @param margin    The number of frames outside the screen on each side.
+     */
+    public StreamingWindow(int frameSize, int margin) {
+        this.frameSize = frameSize;
+        this.margin = margin;
+        this.leftBoundary = -margin * frameSize;
+        this.rightBoundary = frameSize * (FRAMES_IN_SCREEN + margin);
+    }
+
+    /**
+     * The width of a frame, such that the screen is made of whole frames of whole blocks.
+     *
+     * @param screenWidth The width of the screen.
+     * @return the width of a single frame
+     */
+    public static int frameSizeOf(float screenWidth) {
+        return (int) (((int) (((1f / FRAMES_IN_SCREEN) * screenWidth) / Block.SIZE)) * Block.SIZE);
+    }
+
+    /**
+     * getter for the x of the avatar in the initial window, in its middle frame
+     *
+     * @return the initial x of the center of the avatar
+     */
+    public float getInitialAvatarX() {
+        return frameSize * FRAMES_IN_SCREEN / 2f;
+    }
+
+    /**
+     * getter for the width of a frame
+     *
+     * @return the width of a single frame
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * getter for the margin
+     *
+     * @return the number of frames outside the screen on each side
+     */
+    public int getMargin() {
+        return margin;
+    }
+
+    /**
+     * getter for the left boundary
+     *
+     * @return the minX of the leftmost frame of the window
+     */
+    public int getLeftBoundary() {
+        return leftBoundary;
+    }
+
+    /**
+     * getter for the right boundary
+     *
+     * @return the maxX of the rightmost frame of the window
+     */
+    public int getRightBoundary() {
+        return rightBoundary;
+    }
+
+    /**
+     * Sets the boundaries of the window as they were saved. The margin is not changed.
+     *
+     * @param leftBoundary  The minX of the leftmost frame.
+     * @param rightBoundary The maxX of the rightmost frame.
+     */
+    public void setBoundaries(int leftBoundary, int rightBoundary) {
+        this.leftBoundary = leftBoundary;
+        this.rightBoundary = rightBoundary;
+    }
+
+    /**
+     * setter for the margin. The boundaries are not changed, until the window is centered again.
+     *
+     * @param margin The number of frames outside the screen on each side.
+     */
+    public void setMargin(int margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * Places the window so that a given x is in its middle frame.
+     *
+     * @param avatarX The x of the center of the avatar.
+     */
+    public void centerOn(float avatarX) {
+        int avatarFrame = (int) Math.floor(avatarX / frameSize) * frameSize;
+        leftBoundary = avatarFrame - (margin + 1) * frameSize;
+        rightBoundary = avatarFrame + (margin + 2) * frameSize;
+    }
+
+    /**
+     * Checks whether the avatar passed into the rightmost frame of the screen.
+     *
+     * @param avatarX The x of the center of the avatar.
+     * @return true if the window should move a frame to the right
+     */
+    public boolean shouldMoveRight(float avatarX) {
+        return avatarX > rightBoundary - (margin + 1) * frameSize;
+    }
+
+    /**
+     * Checks whether the avatar passed into the leftmost frame of the screen.
+     *
+     * @param avatarX The x of the center of the avatar.
+     * @return true if the window should move a frame to the left
+     */
+    public boolean shouldMoveLeft(float avatarX) {
+        return avatarX < leftBoundary + (margin + 1) * frameSize;
+    }
+
+    /**
+     * Moves the window a frame to the right. The frame which left the window starts at the old left
+     * boundary, and the frame which entered it ends at the new right boundary.
+     */
+    public void moveRight() {
+        leftBoundary += frameSize;
+        rightBoundary += frameSize;
+    }
+
+    /**
+     * Moves the window a frame to the left. The frame which left the window ends at the old right
+     * boundary, and the frame which entered it starts at the new left boundary.
+     */
+    public void moveLeft() {
+        leftBoundary -= frameSize;
+        rightBoundary -= frameSize;
+    }
+}
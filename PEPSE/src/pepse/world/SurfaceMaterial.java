@@ -0,0 +1,51 @@
+package pepse.world;
+
+import java.awt.*;
+
+/**
+ * The materials which the upper (colliding) blocks of the terrain are made of.
+ */
+public enum SurfaceMaterial {
+    // the first material is also the material of columns which were never classified
+    SOIL(new Color(212, 123, 74)),
+    SAND(new Color(222, 196, 130)),
+    STONE(new Color(128, 122, 116));
+
+    /* Constants */
+    private static final SurfaceMaterial[] MATERIALS = values();
+
+    /* Fields */
+    private final Color color;
+
+    SurfaceMaterial(Color color) {
+        this.color = color;
+    }
+
+    /**
+     * Returns the material of a stored id.
+     *
+     * @param id The id of the material, as returned by getId.
+     * @return The material.
+     */
+    public static SurfaceMaterial fromId(int id) {
+        return MATERIALS[id];
+    }
+
+    /**
+     * getter for the id of the material, which is stored in the description of a column
+     *
+     * @return the id of the material
+     */
+    public int getId() {
+        return ordinal();
+    }
+
+    /**
+     * getter for the base color of the material
+     *
+     * @return the color which the blocks of the material approximate
+     */
+    public Color getColor() {
+        return color;
+    }
+}
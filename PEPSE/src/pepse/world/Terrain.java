@@ -1,75 +1,110 @@
 package pepse.world;
 
 import danogl.GameObject;
-import danogl.collisions.GameObjectCollection;
-import danogl.gui.rendering.RectangleRenderable;
 import danogl.util.Vector2;
-import pepse.util.ColorSupplier;
+import pepse.util.GradientNoise;
+import pepse.util.NoiseGenerator;
+import pepse.util.Palette;
+import pepse.world.chunks.ChunkColumns;
 
 import java.awt.*;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Random;
 
 /**
- * Responsible for the creation and management of terrain.
+ * Responsible for the creation and management of terrain. The lower blocks of every column are split
+ * into vertical segments, and only the segments in the visible range (which follows the camera) exist as
+ * objects, so the number of blocks follows what is on screen rather than the depth of the ground.
+ * The upper blocks can be dug and placed, and the edits are applied whenever a column is built again.
  */
 public class Terrain {
 
     private static final String LOWER_GROUND_TAG = "abstract ground";
     private static final String UPPER_GROUND_TAG = "concrete ground";
     private static final float CONCRETE_LAYER_DEPTH = 3;
-    private final GameObjectCollection gameObjects;
+    private final MutationQueue mutations;
     private final int groundLayer;
     private int backgroundLayer;
     private final double groundHeightAtX0;
     private static final int BASIC_GROUND_SIZE_FACTOR = 3;
     private static final int SEED_GROUND_FACTOR = 15;
-    private static final float CARRIER_RUGGEDNESS_COEFFICIENT = 2.3f;
-    private static final float MODULATING_RUGGEDNESS_COEFFICIENT = 10f;
-    private static final float SPATIAL_COEFFICIENT = 2f;
+    // the ground is at most that far above or below its height at x = 0
+    private static final float RUGGEDNESS = 6 * Block.SIZE;
+    private static final double NOISE_WAVELENGTH = 48;
+    private static final int NOISE_OCTAVES = 5;
+    private static final float NOISE_PERSISTENCE = 0.5f;
+    // a slope of more than that many pixels between neighbouring columns is bare stone
+    private static final float STEEP_SLOPE = Block.SIZE / 4;
 
     private static final Color BASE_GROUND_COLOR = new Color(212, 123, 74);
     private final Map<Integer, HashSet<GameObject>> terrainInX = new Hashtable<>();
 
+    /* Vertical culling */
+    // number of lower blocks of a column which are created or dropped together
+    private static final int SEGMENT_BLOCKS = 8;
+    private static final float SEGMENT_HEIGHT = SEGMENT_BLOCKS * Block.SIZE;
+    private final Map<Integer, LowerRun> lowerRunInX = new Hashtable<>();
+    // segments are numbered from the bottom of the window, and all of them are visible until told otherwise
+    private int minVisibleSegment = 0;
+    private int maxVisibleSegment = Integer.MAX_VALUE;
+
     private final Vector2 windowDimensions;
-    private final RectangleRenderable groundRectangle =
-            new RectangleRenderable(ColorSupplier.approximateColor(BASE_GROUND_COLOR));
+    private final Palette groundPalette;
+    private final Palette[] surfacePalettes = new Palette[SurfaceMaterial.values().length];
     //    private final RectangleRenderable virtualGroundRectangle =
 //            new RectangleRenderable(ColorSupplier.approximateColor(new Color(150, 130, 100))); // for testing
-    private final float firstSineCoefficient;
-    private final float secondSineCoefficient;
-    private final float secondSineFactor;
-    private final float firstSineFactor;
+    private final NoiseGenerator noise;
+    private SpatialIndex spatialIndex;
+    private WorldEdits edits;
 
 
     /**
-     * Constructor
+     * Constructor for terrain of multi-octave gradient noise
      *
-     * @param gameObjects      The collection of all participating game objects.
+     * @param mutations        The queue which adds the created ground objects to the game.
      * @param groundLayer      The number of the layer to which the created ground objects should be added.
      * @param windowDimensions The dimensions of the windows.
      * @param seed             A seed for a random number generator.
      */
-    public Terrain(GameObjectCollection gameObjects,
+    public Terrain(MutationQueue mutations,
                    int groundLayer,
                    Vector2 windowDimensions,
                    int seed) {
+        this(mutations, groundLayer, windowDimensions, seed,
+                new GradientNoise(seed, NOISE_WAVELENGTH, NOISE_OCTAVES, NOISE_PERSISTENCE));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param mutations        The queue which adds the created ground objects to the game.
+     * @param groundLayer      The number of the layer to which the created ground objects should be added.
+     * @param windowDimensions The dimensions of the windows.
+     * @param seed             A seed for a random number generator.
+     * @param noise            The noise which shapes the ground, sampled once per column.
+     */
+    public Terrain(MutationQueue mutations,
+                   int groundLayer,
+                   Vector2 windowDimensions,
+                   int seed,
+                   NoiseGenerator noise) {
 
-        this.gameObjects = gameObjects;
+        this.mutations = mutations;
         this.groundLayer = groundLayer;
         this.windowDimensions = windowDimensions;
+        this.noise = noise;
+        this.groundPalette = new Palette(BASE_GROUND_COLOR, seed);
+        for (SurfaceMaterial material : SurfaceMaterial.values()) {
+            surfacePalettes[material.getId()] = new Palette(material.getColor(), seed);
+        }
         double groundSeed = new Random(seed).nextFloat();
 
         int basicGroundReference = (int) (windowDimensions.y() / BASIC_GROUND_SIZE_FACTOR);
         this.groundHeightAtX0 = (windowDimensions.y() / SEED_GROUND_FACTOR * groundSeed) +
                 basicGroundReference;
-        Random coefficientsCreator = new Random((int) groundHeightAtX0);
-        this.firstSineFactor = coefficientsCreator.nextFloat() / (SPATIAL_COEFFICIENT * Block.SIZE);
-        this.secondSineFactor = coefficientsCreator.nextFloat() / (SPATIAL_COEFFICIENT * Block.SIZE);
-        this.firstSineCoefficient = CARRIER_RUGGEDNESS_COEFFICIENT * coefficientsCreator.nextFloat();
-        this.secondSineCoefficient = MODULATING_RUGGEDNESS_COEFFICIENT * coefficientsCreator.nextFloat();
     }
 
     /**
@@ -79,9 +114,26 @@ public class Terrain {
      * @return The ground height at the given location.
      */
     public float groundHeightAt(float x) {
-        return (float) (groundHeightAtX0 + Block.SIZE * (Math.sin(x) +
-                firstSineCoefficient * Math.sin(firstSineFactor * x) +
-                secondSineCoefficient * Math.sin(secondSineFactor * x)));
+        return heightOfNoise(noise.noiseAt(x / Block.SIZE));
+    }
+
+    /**
+     * setter for the index which the surface of every column in the game is kept in
+     *
+     * @param spatialIndex the index of the live objects of the world, or null for none
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * setter for the blocks which were dug and placed. Must be called before any column is built.
+     *
+     * @param edits the edits of the world, which are applied to every column that is built, or null to
+     *              build the columns as they were generated and not allow digging and placing
+     */
+    public void setEdits(WorldEdits edits) {
+        this.edits = edits;
     }
 
     /**
@@ -105,29 +157,270 @@ public class Terrain {
         // in a way that minX and maxX is a multiple of Block.SIZE
         minX = minX % Block.SIZE == 0 ? minX : (int) (minX - Block.SIZE - (minX % Block.SIZE));
 
-        for (int x = minX; x < maxX; x += Block.SIZE) {
+        int firstColumn = (int) Math.floor(minX / Block.SIZE);
+        ChunkColumns columns = new ChunkColumns(firstColumn, (int) Math.ceil((maxX - minX) / Block.SIZE));
+        fillColumns(columns);
+        attach(generateInRange(columns), columns);
+    }
 
-            HashSet<GameObject> set = new HashSet<>();
+    /**
+     * This method describes the terrain of the given columns: the ground height and the number of lower
+     * and upper blocks in each column.
+     *
+     * @param columns The columns to fill.
+     */
+    public void fillColumns(ChunkColumns columns) {
+        float[] noiseOfColumns = new float[columns.size()];
+        noise.fill(noiseOfColumns, columns.getFirstColumn());
+        for (int i = 0; i < columns.size(); i++) {
+            columns.setGroundHeight(i, heightOfNoise(noiseOfColumns[i]));
+        }
+        fillBlockRuns(columns);
+    }
+
+    /**
+     * This method fills the number of lower and upper blocks of the given columns, from their ground
+     * heights.
+     *
+     * @param columns The columns to fill, with their ground heights already filled.
+     */
+    public void fillBlockRuns(ChunkColumns columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            final float groundHeightAtX = columns.getGroundHeight(i);
 
-            final float groundHeightAtX = groundHeightAt(x);
+            int lowerRun = 0;
+            int upperRun = 0;
             for (float y = 0;
                  y < windowDimensions.y() - groundHeightAtX + (CONCRETE_LAYER_DEPTH - 1) * Block.SIZE;
                  y += Block.SIZE) {
                 float height = windowDimensions.y() - Block.SIZE - y;
-                GameObject ground = new Block(new Vector2(x, height), groundRectangle);
-
-                //for efficiency, so that the lower layers cannot collide with other objects
-                //which makes it so that avatar does not check collisions each time
                 if (height > groundHeightAtX) {
-                    gameObjects.addGameObject(ground, backgroundLayer);
-                    ground.setTag(LOWER_GROUND_TAG);
-                } else { //The upper concrete ground where avatar does collide with
-                    gameObjects.addGameObject(ground, groundLayer);
-                    ground.setTag(UPPER_GROUND_TAG);
+                    lowerRun++;
+                } else {
+                    upperRun++;
+                }
+            }
+            columns.setBlockRuns(i, lowerRun, upperRun);
+        }
+    }
+
+    /**
+     * This method decides the material of the upper blocks of the given columns, from their biome and
+     * the slope of the ground. The ground heights and biomes of the columns must already be filled.
+     *
+     * @param columns The columns to fill.
+     */
+    public void fillSurface(ChunkColumns columns) {
+        // the noise of every column and of the one after the last, sampled in one batch
+        float[] noiseOfColumns = new float[columns.size() + 1];
+        noise.fill(noiseOfColumns, columns.getFirstColumn());
+        for (int i = 0; i < columns.size(); i++) {
+            float nextGroundHeight = Math.round(heightOfNoise(noiseOfColumns[i + 1]));
+            if (Math.abs(nextGroundHeight - columns.getGroundHeight(i)) > STEEP_SLOPE) {
+                columns.setSurfaceMaterial(i, SurfaceMaterial.STONE.getId());
+            } else {
+                columns.setSurfaceMaterial(i, Biome.fromId(columns.getBiome(i)).getSurface().getId());
+            }
+        }
+    }
+
+    /**
+     * This method builds the upper terrain blocks of the given columns without adding them to the game,
+     * with the blocks which were dug left out, and the blocks which were placed added. It only reads the
+     * edits, so it can safely run on a background thread. The lower blocks depend on the visible range,
+     * so they are created when the columns are attached.
+     *
+     * @param columns The description of the columns, as filled by fillColumns.
+     * @return A map between the x of every column and its upper blocks.
+     */
+    public Map<Integer, HashSet<GameObject>> generateInRange(ChunkColumns columns) {
+        Map<Integer, HashSet<GameObject>> terrain = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            int x = columns.columnX(i);
+            int lowerRun = columns.getLowerRun(i);
+            int numOfBlocks = lowerRun + columns.getUpperRun(i);
+            Palette surfacePalette = surfacePalettes[columns.getSurfaceMaterial(i)];
+
+            // a column which was never edited costs nothing more than a check of a bit
+            int column = columns.getFirstColumn() + i;
+            boolean isEdited = edits != null && edits.hasEdits(column);
+
+            //The upper concrete ground where avatar does collide with
+            HashSet<GameObject> set = new HashSet<>();
+            for (int block = lowerRun; block < numOfBlocks; block++) {
+                // a block which was dug, or replaced by a placed one, is not built as generated
+                if (isEdited && edits.get(column, block) != WorldEdits.NONE) {
+                    continue;
+                }
+                set.add(upperBlock(x, block, surfacePalette));
+            }
+            if (isEdited) {
+                addPlacedBlocks(set, x, column);
+            }
+            terrain.put(x, set);
+        }
+        return terrain;
+    }
+
+    /**
+     * Adds columns that were built by generateInRange to the game, with the lower blocks of their visible
+     * segments. Must be called from the game thread.
+     *
+     * @param terrain A map between x values and the upper blocks of their column.
+     * @param columns The description of the columns.
+     */
+    public void attach(Map<Integer, HashSet<GameObject>> terrain, ChunkColumns columns) {
+        for (Map.Entry<Integer, HashSet<GameObject>> column : terrain.entrySet()) {
+            for (GameObject ground : column.getValue()) {
+                mutations.add(ground, groundLayer);
+            }
+            if (spatialIndex != null) {
+                spatialIndex.add(surfaceOf(column.getValue()), SpatialIndex.Kind.SURFACE);
+            }
+            terrainInX.put(column.getKey(), column.getValue());
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            LowerRun lowerRun = new LowerRun(columns.getLowerRun(i), columns.getUpperRun(i),
+                    columns.getSurfaceMaterial(i));
+            updateLowerRun(columns.columnX(i), lowerRun, false);
+            lowerRunInX.put(columns.columnX(i), lowerRun);
+        }
+    }
+
+    /**
+     * Sets the range of y-values which is visible, and creates or drops the lower blocks of every column
+     * in the game by the segments which enter or leave that range. Does nothing (and creates nothing)
+     * while the visible segments stay the same, so it can be called every frame.
+     *
+     * @param minY The top of the visible range.
+     * @param maxY The bottom of the visible range.
+     */
+    public void setVisibleRange(float minY, float maxY) {
+        int minSegment = Math.max(0, (int) Math.floor((windowDimensions.y() - maxY) / SEGMENT_HEIGHT));
+        int maxSegment = Math.max(-1, (int) Math.floor((windowDimensions.y() - minY) / SEGMENT_HEIGHT));
+        if (minSegment == minVisibleSegment && maxSegment == maxVisibleSegment) {
+            return;
+        }
+        minVisibleSegment = minSegment;
+        maxVisibleSegment = maxSegment;
+        for (Map.Entry<Integer, LowerRun> lowerRun : lowerRunInX.entrySet()) {
+            updateLowerRun(lowerRun.getKey(), lowerRun.getValue(), lowerRun.getValue().isMerged);
+        }
+    }
+
+    /**
+     * This method replaces the visible lower blocks of every given column, which are in the game, by a
+     * single object which stands for all of them, or splits such an object back into separate blocks. The
+     * upper blocks, which the avatar collides with, are kept as they are.
+     *
+     * @param columns The description of the columns.
+     * @param merged  true to merge the lower blocks of every column, false to split them.
+     */
+    public void setLowerRunsMerged(ChunkColumns columns, boolean merged) {
+        for (int i = 0; i < columns.size(); i++) {
+            LowerRun lowerRun = lowerRunInX.get(columns.columnX(i));
+            if (lowerRun != null) {
+                updateLowerRun(columns.columnX(i), lowerRun, merged);
+            }
+        }
+    }
+
+    /**
+     * Counts the lower objects which the given columns have in the game in the visible range.
+     *
+     * @param columns The description of the columns.
+     * @param merged  whether the lower blocks of every column are merged.
+     * @return The number of lower objects.
+     */
+    public int countLowerObjects(ChunkColumns columns, boolean merged) {
+        int numOfObjects = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            int numOfBlocks = visibleTo(columns.getLowerRun(i)) - visibleFrom(columns.getLowerRun(i));
+            numOfObjects += merged ? Math.min(numOfBlocks, 1) : numOfBlocks;
+        }
+        return numOfObjects;
+    }
+
+    /**
+     * Digs out the upper block at a given point, and records it in the edits, so the column is built
+     * without it from now on. The lowest upper block of a column is never dug, as below it there is only
+     * the background.
+     *
+     * @param x The x of the point.
+     * @param y The y of the point.
+     * @return The material of the dug block, or null if nothing was dug.
+     */
+    public SurfaceMaterial dig(float x, float y) {
+        int columnX = (int) (Math.floor(x / Block.SIZE) * Block.SIZE);
+        int row = rowOf(y);
+        HashSet<GameObject> column = terrainInX.get(columnX);
+        LowerRun lowerRun = lowerRunInX.get(columnX);
+        if (edits == null || column == null || lowerRun == null || row <= lowerRun.blocks.length) {
+            return null;
+        }
+        GameObject block = blockAt(column, row);
+        if (block == null) {
+            return null;
+        }
+
+        int columnNumber = (int) (columnX / Block.SIZE);
+        int edit = edits.get(columnNumber, row);
+        SurfaceMaterial material = edit == WorldEdits.NONE ? SurfaceMaterial.fromId(lowerRun.surfaceMaterial)
+                : WorldEdits.materialOf(edit);
+        // a placed block which was not generated leaves no trace
+        edits.set(columnNumber, row, lowerRun.isGenerated(row) ? WorldEdits.DUG : WorldEdits.NONE);
+        replaceUpperBlock(column, block, null);
+        return material;
+    }
+
+    /**
+     * Places an upper block at a given point, if there is none, and records it in the edits, so the
+     * column is built with it from now on. Blocks are placed only above the background.
+     *
+     * @param x        The x of the point.
+     * @param y        The y of the point.
+     * @param material The material of the block.
+     * @return true if the block was placed
+     */
+    public boolean place(float x, float y, SurfaceMaterial material) {
+        int columnX = (int) (Math.floor(x / Block.SIZE) * Block.SIZE);
+        int row = rowOf(y);
+        HashSet<GameObject> column = terrainInX.get(columnX);
+        LowerRun lowerRun = lowerRunInX.get(columnX);
+        if (edits == null || column == null || lowerRun == null || row < lowerRun.blocks.length
+                || row >= WorldEdits.MAX_ROWS || blockAt(column, row) != null) {
+            return false;
+        }
+
+        // a dug block which is placed back as it was generated leaves no trace
+        boolean isRestored = lowerRun.isGenerated(row) && material.getId() == lowerRun.surfaceMaterial;
+        edits.set((int) (columnX / Block.SIZE), row, isRestored ? WorldEdits.NONE : WorldEdits.placed(material));
+        replaceUpperBlock(column, null, upperBlock(columnX, row, surfacePalettes[material.getId()]));
+        return true;
+    }
+
+    /**
+     * Reports every terrain object which is expected in the game to an audit.
+     *
+     * @param census The census of the audit.
+     */
+    public void census(WorldAuditor.Census census) {
+        for (Map.Entry<Integer, HashSet<GameObject>> column : terrainInX.entrySet()) {
+            for (GameObject ground : column.getValue()) {
+                census.expect(ground, ground.getTag().equals(LOWER_GROUND_TAG) ? backgroundLayer : groundLayer,
+                        MemoryBudget.Subsystem.TERRAIN, column.getKey());
+            }
+        }
+        for (Map.Entry<Integer, LowerRun> column : lowerRunInX.entrySet()) {
+            LowerRun lowerRun = column.getValue();
+            if (lowerRun.stack != null) {
+                census.expect(lowerRun.stack, backgroundLayer, MemoryBudget.Subsystem.TERRAIN, column.getKey());
+            }
+            for (GameObject block : lowerRun.blocks) {
+                if (block != null) {
+                    census.expect(block, backgroundLayer, MemoryBudget.Subsystem.TERRAIN, column.getKey());
                 }
-                set.add(ground);
             }
-            terrainInX.put(x, set);
         }
     }
 
@@ -145,17 +438,252 @@ public class Terrain {
 
         for (int x = minX; x < maxX; x += Block.SIZE) {
             HashSet<GameObject> toDelete = terrainInX.remove(x);
+            LowerRun lowerRun = lowerRunInX.remove(x);
+            if (lowerRun != null) {
+                removeLowerRun(lowerRun);
+            }
+            if (toDelete == null) {
+                // the column was never attached, or was already removed
+                continue;
+            }
+            if (spatialIndex != null) {
+                spatialIndex.remove(surfaceOf(toDelete), SpatialIndex.Kind.SURFACE);
+            }
 
             for (GameObject objectToRemove : toDelete) {
                 if (objectToRemove.getTag().equals(LOWER_GROUND_TAG)) {
-                    gameObjects.removeGameObject(objectToRemove, backgroundLayer);
+                    mutations.remove(objectToRemove, backgroundLayer);
                 } else { // (objectToRemove.getTag().equals(UPPER_GROUND))
-                    gameObjects.removeGameObject(objectToRemove, groundLayer);
+                    mutations.remove(objectToRemove, groundLayer);
+                }
+
+            }
+        }
+    }
+
+    /*
+     * creates and drops the lower blocks of a column, so exactly its visible blocks are in the game,
+     * either separately or merged into a single object
+     */
+    private void updateLowerRun(int x, LowerRun lowerRun, boolean merged) {
+        int from = visibleFrom(lowerRun.blocks.length);
+        int to = visibleTo(lowerRun.blocks.length);
+        if (from == lowerRun.from && to == lowerRun.to && merged == lowerRun.isMerged) {
+            return;
+        }
+
+        if (merged || lowerRun.isMerged) {
+            // a merged stack is replaced as a whole
+            removeLowerRun(lowerRun);
+            if (merged && to > from) {
+                float height = windowDimensions.y() - to * Block.SIZE;
+                lowerRun.stack = new Block(new Vector2(x, height), to - from,
+                        groundPalette.variantAt(x, (int) height));
+                lowerRun.stack.setTag(LOWER_GROUND_TAG);
+                mutations.add(lowerRun.stack, backgroundLayer);
+            }
+        } else {
+            removeLowerBlocks(lowerRun, lowerRun.from, Math.min(lowerRun.to, from));
+            removeLowerBlocks(lowerRun, Math.max(lowerRun.from, to), lowerRun.to);
+        }
+        if (!merged) {
+            for (int block = from; block < to; block++) {
+                if (lowerRun.blocks[block] == null) {
+                    lowerRun.blocks[block] = lowerBlock(x, block);
+                    mutations.add(lowerRun.blocks[block], backgroundLayer);
+                }
+            }
+        }
+        lowerRun.from = from;
+        lowerRun.to = to;
+        lowerRun.isMerged = merged;
+    }
+
+    /*
+     * removes all the lower objects of a column from the game
+     */
+    private void removeLowerRun(LowerRun lowerRun) {
+        if (lowerRun.stack != null) {
+            mutations.remove(lowerRun.stack, backgroundLayer);
+            lowerRun.stack = null;
+        }
+        removeLowerBlocks(lowerRun, 0, lowerRun.blocks.length);
+        lowerRun.from = 0;
+        lowerRun.to = 0;
+    }
+
+    /*
+     * removes the separate lower blocks of a column in a range of indices from the game
+     */
+    private void removeLowerBlocks(LowerRun lowerRun, int from, int to) {
+        for (int block = from; block < to; block++) {
+            if (lowerRun.blocks[block] != null) {
+                mutations.remove(lowerRun.blocks[block], backgroundLayer);
+                lowerRun.blocks[block] = null;
+            }
+        }
+    }
+
+    /*
+     * the index of the first visible lower block of a column with the given number of lower blocks
+     */
+    private int visibleFrom(int lowerRun) {
+        return (int) Math.min(lowerRun, (long) minVisibleSegment * SEGMENT_BLOCKS);
+    }
+
+    /*
+     * the index after the last visible lower block of a column with the given number of lower blocks
+     */
+    private int visibleTo(int lowerRun) {
+        return Math.max(visibleFrom(lowerRun),
+                (int) Math.min(lowerRun, ((long) maxVisibleSegment + 1) * SEGMENT_BLOCKS));
+    }
+
+    /*
+     * adds the blocks which were placed in a column to its upper blocks
+     */
+    private void addPlacedBlocks(HashSet<GameObject> set, int x, int column) {
+        int numOfPlaced = edits.getPlaced(column, null, null);
+        if (numOfPlaced == 0) {
+            return;
+        }
+        int[] rows = new int[numOfPlaced];
+        SurfaceMaterial[] materials = new SurfaceMaterial[numOfPlaced];
+        // the edits may change between the calls, so only as many as both of them counted are built
+        numOfPlaced = Math.min(numOfPlaced, edits.getPlaced(column, rows, materials));
+        for (int i = 0; i < numOfPlaced; i++) {
+            set.add(upperBlock(x, rows[i], surfacePalettes[materials[i].getId()]));
+        }
+    }
+
+    /*
+     * swaps an upper block of a column in the game for another, either of which may be null, and keeps
+     * the surface of the column in the index
+     */
+    private void replaceUpperBlock(HashSet<GameObject> column, GameObject oldBlock, GameObject newBlock) {
+        if (spatialIndex != null && !column.isEmpty()) {
+            spatialIndex.remove(surfaceOf(column), SpatialIndex.Kind.SURFACE);
+        }
+        if (oldBlock != null) {
+            column.remove(oldBlock);
+            mutations.remove(oldBlock, groundLayer);
+        }
+        if (newBlock != null) {
+            column.add(newBlock);
+            mutations.add(newBlock, groundLayer);
+        }
+        if (spatialIndex != null && !column.isEmpty()) {
+            spatialIndex.add(surfaceOf(column), SpatialIndex.Kind.SURFACE);
+        }
+    }
+
+    /*
+     * the upper block of a column in a given row, or null if there is none
+     */
+    private GameObject blockAt(HashSet<GameObject> column, int row) {
+        float height = windowDimensions.y() - Block.SIZE - row * Block.SIZE;
+        for (GameObject ground : column) {
+            if (ground.getTopLeftCorner().y() == height) {
+                return ground;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * the row of the blocks which a given y is in, from the bottom of the window
+     */
+    private int rowOf(float y) {
+        return (int) Math.ceil((windowDimensions.y() - y) / Block.SIZE) - 1;
+    }
+
+    /*
+     * a single upper block of a column, by its index from the bottom of the window
+     */
+    private GameObject upperBlock(int x, int block, Palette palette) {
+        float height = windowDimensions.y() - Block.SIZE - block * Block.SIZE;
+        GameObject ground = new Block(new Vector2(x, height), palette.variantAt(x, (int) height));
+        ground.setTag(UPPER_GROUND_TAG);
+        return ground;
+    }
+
+    /*
+     * a single lower block of a column, by its index from the bottom of the window
+     */
+    private GameObject lowerBlock(int x, int block) {
+        float height = windowDimensions.y() - Block.SIZE - block * Block.SIZE;
+        GameObject ground = new Block(new Vector2(x, height), groundPalette.variantAt(x, (int) height));
+        //for efficiency, so that the lower layers cannot collide with other objects
+        //which makes it so that avatar does not check collisions each time
+        ground.setTag(LOWER_GROUND_TAG);
+        return ground;
+    }
+
+    /*
+     * the ground height for a sample of the noise, within RUGGEDNESS of the height at x = 0
+     */
+    private float heightOfNoise(float noiseSample) {
+        return (float) (groundHeightAtX0 + RUGGEDNESS * noiseSample);
+    }
+
+    /**
+     * This method removes all the terrain currently in the game, regardless of its location.
+     */
+    public void removeAll() {
+        for (HashSet<GameObject> toDelete : terrainInX.values()) {
+            for (GameObject objectToRemove : toDelete) {
+                if (objectToRemove.getTag().equals(LOWER_GROUND_TAG)) {
+                    mutations.remove(objectToRemove, backgroundLayer);
+                } else {
+                    mutations.remove(objectToRemove, groundLayer);
                 }
+            }
+        }
+        terrainInX.clear();
+        if (spatialIndex != null) {
+            spatialIndex.clear(SpatialIndex.Kind.SURFACE);
+        }
+        for (LowerRun lowerRun : lowerRunInX.values()) {
+            removeLowerRun(lowerRun);
+        }
+        lowerRunInX.clear();
+    }
 
+    /*
+     * the top block of the upper blocks of a column
+     */
+    private static GameObject surfaceOf(HashSet<GameObject> column) {
+        GameObject surface = null;
+        for (GameObject ground : column) {
+            if (surface == null || ground.getTopLeftCorner().y() < surface.getTopLeftCorner().y()) {
+                surface = ground;
             }
         }
+        return surface;
     }
 
+    /*
+     * The lower blocks of a column in the game, of which only the blocks of the visible segments exist,
+     * by their index from the bottom of the window, and the generated upper blocks, which edits are
+     * measured against
+     */
+    private static class LowerRun {
+        private final GameObject[] blocks;
+        private final int upperRun;
+        private final int surfaceMaterial;
+        private GameObject stack;
+        private boolean isMerged;
+        private int from;
+        private int to;
+
+        LowerRun(int length, int upperRun, int surfaceMaterial) {
+            this.blocks = new GameObject[length];
+            this.upperRun = upperRun;
+            this.surfaceMaterial = surfaceMaterial;
+        }
 
+        boolean isGenerated(int row) {
+            return row >= blocks.length && row < blocks.length + upperRun;
+        }
+    }
 }
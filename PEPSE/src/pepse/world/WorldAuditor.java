@@ -0,0 +1,303 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import pepse.world.trees.Tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that the objects of the world in the game are exactly the ones which the terrain and the trees
+ * believe they added, so a stream which does not remove what it created (or removes what it did not
+ * create) is found right away rather than after a long session. An audit first only counts: the objects
+ * in every world layer against the objects which the terrain and the trees expect there, which creates
+ * nothing per object. Only when the counts differ, the objects are matched one by one, and the report
+ * lists the leaked objects (in the game, but not expected where they are) and the orphaned ones
+ * (expected, but not in the game), with the column they came from. Must be used from the game thread,
+ * once the mutations of the frame were applied.
+ */
+public class WorldAuditor {
+    /* Constants */
+    private static final MemoryBudget.Subsystem[] SUBSYSTEMS = MemoryBudget.Subsystem.values();
+    // objects of every kind which a report lists, the rest are only counted
+    private static final int MAX_LISTED = 20;
+
+    /* Fields */
+    private final GameObjectCollection gameObjects;
+    private final Terrain terrain;
+    private final Tree trees;
+    private final int[] layers;
+    private final Census census;
+    private final int[] actualCounts;
+
+    /**
+     * Constructor
+     *
+     * @param gameObjects The collection of the game objects.
+     * @param terrain     The terrain of the world.
+     * @param trees       The trees of the world.
+     * @param layers      The layers which only objects of the world are in.
+     */
+    public WorldAuditor(GameObjectCollection gameObjects, Terrain terrain, Tree trees, int... layers) {
+        this.gameObjects = gameObjects;
+        this.terrain = terrain;
+        this.trees = trees;
+        this.layers = layers.clone();
+        this.actualCounts = new int[layers.length];
+        // sized by the layers, so only once they are set
+        this.census = new Census();
+    }
+
+    /**
+     * Audits the objects of the world against a window of frames.
+     *
+     * @param minX The left boundary of the window.
+     * @param maxX The right boundary of the window.
+     * @return The report of the audit.
+     */
+    public Report audit(int minX, int maxX) {
+        census.reset(minX, maxX, null);
+        terrain.census(census);
+        trees.census(census);
+        boolean isCounted = true;
+        for (int i = 0; i < layers.length; i++) {
+            actualCounts[i] = 0;
+            for (GameObject ignored : gameObjects.objectsInLayer(layers[i])) {
+                actualCounts[i]++;
+            }
+            isCounted &= actualCounts[i] == census.layerCounts[i];
+        }
+        Report report = new Report(census, layers, actualCounts);
+        if (isCounted) {
+            return report;
+        }
+
+        // the counts differ, so every expected object is matched with the objects in its layer
+        Map<GameObject, Expectation> expected = new IdentityHashMap<>();
+        census.reset(minX, maxX, expected);
+        terrain.census(census);
+        trees.census(census);
+        for (int layer : layers) {
+            for (GameObject gameObject : gameObjects.objectsInLayer(layer)) {
+                Expectation expectation = expected.get(gameObject);
+                if (expectation != null && expectation.layer == layer) {
+                    expected.remove(gameObject);
+                } else {
+                    report.addLeaked(gameObject, layer, expectation);
+                }
+            }
+        }
+        for (Map.Entry<GameObject, Expectation> orphan : expected.entrySet()) {
+            report.addOrphaned(orphan.getValue());
+        }
+        return report;
+    }
+
+    /**
+     * The objects which the world expects in the game, which the terrain and the trees report to.
+     */
+    public class Census {
+        /* Fields */
+        private final int[] layerCounts = new int[layers.length];
+        private final int[] subsystemCounts = new int[SUBSYSTEMS.length];
+        private int minX;
+        private int maxX;
+        private int numOfStale;
+        private Map<GameObject, Expectation> expected;
+
+        /**
+         * Reports an object which is expected in the game.
+         *
+         * @param gameObject The object.
+         * @param layer      The layer it is expected in.
+         * @param subsystem  The subsystem it belongs to.
+         * @param columnX    The x of the column it came from.
+         */
+        public void expect(GameObject gameObject, int layer, MemoryBudget.Subsystem subsystem, int columnX) {
+            subsystemCounts[subsystem.ordinal()]++;
+            if (columnX < minX || columnX >= maxX) {
+                numOfStale++;
+            }
+            for (int i = 0; i < layers.length; i++) {
+                if (layers[i] == layer) {
+                    layerCounts[i]++;
+                }
+            }
+            if (expected != null) {
+                expected.put(gameObject, new Expectation(layer, subsystem, columnX));
+            }
+        }
+
+        /*
+         * starts a new census of a window, which records every object if given a map
+         */
+        private void reset(int minX, int maxX, Map<GameObject, Expectation> expected) {
+            this.minX = minX;
+            this.maxX = maxX;
+            this.expected = expected;
+            this.numOfStale = 0;
+            Arrays.fill(layerCounts, 0);
+            Arrays.fill(subsystemCounts, 0);
+        }
+    }
+
+    /**
+     * The result of an audit.
+     */
+    public static class Report {
+        /* Fields */
+        private final int minX;
+        private final int maxX;
+        private final int[] layers;
+        private final int[] expectedCounts;
+        private final int[] actualCounts;
+        private final int[] subsystemCounts;
+        private final int numOfStale;
+        private final List<String> leaked = new ArrayList<>();
+        private final List<String> orphaned = new ArrayList<>();
+        private int numOfLeaked;
+        private int numOfOrphaned;
+
+        private Report(Census census, int[] layers, int[] actualCounts) {
+            this.minX = census.minX;
+            this.maxX = census.maxX;
+            this.layers = layers;
+            this.expectedCounts = census.layerCounts.clone();
+            this.actualCounts = actualCounts.clone();
+            this.subsystemCounts = census.subsystemCounts.clone();
+            this.numOfStale = census.numOfStale;
+        }
+
+        /**
+         * Checks whether the audit found nothing wrong
+         *
+         * @return true if every world layer holds exactly the expected objects, all of them from columns
+         * in the window
+         */
+        public boolean isClean() {
+            return numOfStale == 0 && Arrays.equals(expectedCounts, actualCounts)
+                    && numOfLeaked == 0 && numOfOrphaned == 0;
+        }
+
+        /**
+         * getter for the number of leaked objects
+         *
+         * @return the number of objects in the world layers which are not expected there
+         */
+        public int getNumOfLeaked() {
+            return numOfLeaked;
+        }
+
+        /**
+         * getter for the number of orphaned objects
+         *
+         * @return the number of expected objects which are not in the game
+         */
+        public int getNumOfOrphaned() {
+            return numOfOrphaned;
+        }
+
+        /**
+         * getter for the number of stale objects
+         *
+         * @return the number of expected objects of columns outside the window
+         */
+        public int getNumOfStale() {
+            return numOfStale;
+        }
+
+        /**
+         * getter for the expected objects of a subsystem
+         *
+         * @param subsystem The subsystem.
+         * @return the number of objects of the subsystem which the world expects in the game
+         */
+        public int getExpected(MemoryBudget.Subsystem subsystem) {
+            return subsystemCounts[subsystem.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format("World audit of [%d, %d): %s",
+                    minX, maxX, isClean() ? "clean" : "NOT CLEAN"));
+            for (MemoryBudget.Subsystem subsystem : SUBSYSTEMS) {
+                report.append(String.format(", %s %d", subsystem.name().toLowerCase(),
+                        subsystemCounts[subsystem.ordinal()]));
+            }
+            for (int i = 0; i < layers.length; i++) {
+                if (expectedCounts[i] != actualCounts[i]) {
+                    report.append(String.format("%n  layer %d: %d objects, %d expected",
+                            layers[i], actualCounts[i], expectedCounts[i]));
+                }
+            }
+            if (numOfStale > 0) {
+                report.append(String.format("%n  %d expected objects are of columns outside the window",
+                        numOfStale));
+            }
+            appendListed(report, "leaked", leaked, numOfLeaked);
+            appendListed(report, "orphaned", orphaned, numOfOrphaned);
+            return report.toString();
+        }
+
+        /*
+         * lists an object in the game which is not expected in its layer
+         */
+        private void addLeaked(GameObject gameObject, int layer, Expectation expectation) {
+            numOfLeaked++;
+            if (leaked.size() < MAX_LISTED) {
+                int columnX = (int) (Math.floor(gameObject.getTopLeftCorner().x() / Block.SIZE) * Block.SIZE);
+                leaked.add(expectation == null
+                        ? String.format("%s in layer %d, column %d", gameObject.getTag(), layer, columnX)
+                        : String.format("%s of column %d in layer %d, expected in layer %d",
+                        expectation.subsystem.name().toLowerCase(), expectation.columnX, layer,
+                        expectation.layer));
+            }
+        }
+
+        /*
+         * lists an expected object which is not in the game
+         */
+        private void addOrphaned(Expectation expectation) {
+            numOfOrphaned++;
+            if (orphaned.size() < MAX_LISTED) {
+                orphaned.add(String.format("%s of column %d, expected in layer %d",
+                        expectation.subsystem.name().toLowerCase(), expectation.columnX, expectation.layer));
+            }
+        }
+
+        /*
+         * appends the listed objects of a kind, and how many more there are
+         */
+        private static void appendListed(StringBuilder report, String kind, List<String> listed, int count) {
+            if (count == 0) {
+                return;
+            }
+            report.append(String.format("%n  %d %s:", count, kind));
+            for (String object : listed) {
+                report.append(String.format("%n    %s", object));
+            }
+            if (count > listed.size()) {
+                report.append(String.format("%n    and %d more", count - listed.size()));
+            }
+        }
+    }
+
+    /*
+     * Where an object is expected, and where it came from
+     */
+    private static class Expectation {
+        private final int layer;
+        private final MemoryBudget.Subsystem subsystem;
+        private final int columnX;
+
+        Expectation(int layer, MemoryBudget.Subsystem subsystem, int columnX) {
+            this.layer = layer;
+            this.subsystem = subsystem;
+            this.columnX = columnX;
+        }
+    }
+}
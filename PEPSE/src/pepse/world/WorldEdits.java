@@ -0,0 +1,516 @@
+package pepse.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The blocks which were dug out of, or placed into, a world which is otherwise generated from its seed, as
+ * a sparse overlay which is applied whenever the columns are built again. Edits are kept by chunks of
+ * CHUNK_COLUMNS columns, each in an open-addressing map of primitive keys (the column in the chunk and the
+ * row) and a byte per edit, so an edit costs a few bytes whatever the number of edits, and a chunk without
+ * edits does not exist at all. The chunks themselves are kept the same way, in a map of their indices.
+ * Rows are numbered from the bottom of the window, the same as the blocks of the terrain. The edits are
+ * read by the threads which build the frames, so every method is synchronized, except for hasEdits, which
+ * is asked of every column that is built: it reads a snapshot of the edited columns of every chunk, which
+ * is replaced as a whole, only when a column gets its first edit or loses its last one.
+ */
+public class WorldEdits {
+    /* Constants */
+    /**
+     * The number of columns in a chunk of edits.
+     */
+    public static final int CHUNK_COLUMNS = 64;
+
+    /**
+     * The edit of a block which was never changed.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * The edit of a generated block which was dug out.
+     */
+    public static final int DUG = 1;
+
+    /**
+     * Rows are kept in the low 16 bits of a key, so they are below that.
+     */
+    public static final int MAX_ROWS = 1 << 16;
+
+    private static final int PLACED_BASE = 2;
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_COLUMNS);
+    private static final int ROW_BITS = 16;
+    private static final int INITIAL_CAPACITY = 8;
+    // an edit is kept as its chunk (only in the header of the chunk), key and value
+    private static final int CHUNK_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int EDIT_SIZE = Integer.BYTES + 1;
+
+    /* Fields */
+    private final ChunkMap chunks = new ChunkMap(INITIAL_CAPACITY);
+    private volatile EditedColumns editedColumns = EditedColumns.EMPTY;
+    private int numOfEdits;
+
+    /**
+     * The edit of a block which was placed where no block was generated, or replaced a dug one.
+     *
+     * @param material The material of the placed block.
+     * @return the edit of the placed block
+     */
+    public static int placed(SurfaceMaterial material) {
+        return PLACED_BASE + material.getId();
+    }
+
+    /**
+     * Returns the material of a placed block.
+     *
+     * @param edit The edit of the block.
+     * @return the material of the placed block, or null if the edit does not place a block
+     */
+    public static SurfaceMaterial materialOf(int edit) {
+        return edit < PLACED_BASE ? null : SurfaceMaterial.fromId(edit - PLACED_BASE);
+    }
+
+    /**
+     * Checks whether a column has any edits, without looking at its rows.
+     *
+     * @param column The number of the column (its x divided by Block.SIZE).
+     * @return true if a block of the column was dug or placed
+     */
+    public boolean hasEdits(int column) {
+        return (editedColumns.get(column >> CHUNK_SHIFT) & 1L << (column & (CHUNK_COLUMNS - 1))) != 0;
+    }
+
+    /**
+     * getter for the edit of a block
+     *
+     * @param column The number of the column.
+     * @param row    The row of the block, from the bottom of the window.
+     * @return the edit of the block, NONE if it was never changed
+     */
+    public synchronized int get(int column, int row) {
+        EditChunk chunk = chunks.get(column >> CHUNK_SHIFT);
+        return chunk == null ? NONE : chunk.get(keyOf(column, row));
+    }
+
+    /**
+     * setter for the edit of a block
+     *
+     * @param column The number of the column.
+     * @param row    The row of the block, from the bottom of the window, below MAX_ROWS.
+     * @param edit   The edit of the block, NONE to forget it.
+     */
+    public synchronized void set(int column, int row, int edit) {
+        if (row < 0 || row >= MAX_ROWS) {
+            throw new IllegalArgumentException("Row is out of range: " + row);
+        }
+        int chunkIndex = column >> CHUNK_SHIFT;
+        EditChunk chunk = chunks.get(chunkIndex);
+        long editedInChunk = chunk == null ? 0 : chunk.editedColumns;
+        if (edit == NONE) {
+            if (chunk == null || !chunk.remove(keyOf(column, row))) {
+                return;
+            }
+            numOfEdits--;
+            if (chunk.size == 0) {
+                chunks.remove(chunkIndex);
+            }
+        } else {
+            if (chunk == null) {
+                chunk = new EditChunk(INITIAL_CAPACITY);
+                chunks.put(chunkIndex, chunk);
+            }
+            if (chunk.put(keyOf(column, row), (byte) edit)) {
+                numOfEdits++;
+            }
+        }
+        if (chunk.editedColumns != editedInChunk) {
+            publishEditedColumns();
+        }
+    }
+
+    /**
+     * Collects the rows of the blocks which were placed in a column.
+     *
+     * @param column    The number of the column.
+     * @param rows      The array to put the rows in, or null to count them only.
+     * @param materials The array to put the materials in, at the same indices as the rows, or null.
+     * @return The number of placed blocks in the column. Only as many as fit are put in the arrays.
+     */
+    public synchronized int getPlaced(int column, int[] rows, SurfaceMaterial[] materials) {
+        EditChunk chunk = chunks.get(column >> CHUNK_SHIFT);
+        if (chunk == null) {
+            return 0;
+        }
+        int columnInChunk = column & (CHUNK_COLUMNS - 1);
+        int numOfPlaced = 0;
+        for (int slot = 0; slot < chunk.keys.length; slot++) {
+            int key = chunk.keys[slot];
+            if (chunk.values[slot] < PLACED_BASE || key >>> ROW_BITS != columnInChunk) {
+                continue;
+            }
+            if (rows != null && numOfPlaced < rows.length) {
+                rows[numOfPlaced] = key & (MAX_ROWS - 1);
+            }
+            if (materials != null && numOfPlaced < materials.length) {
+                materials[numOfPlaced] = materialOf(chunk.values[slot]);
+            }
+            numOfPlaced++;
+        }
+        return numOfPlaced;
+    }
+
+    /**
+     * getter for the number of edits
+     *
+     * @return the number of blocks which were dug or placed
+     */
+    public synchronized int size() {
+        return numOfEdits;
+    }
+
+    /**
+     * getter for the size of the edits when written
+     *
+     * @return the number of bytes which write takes
+     */
+    public synchronized int serializedSize() {
+        return Integer.BYTES + chunks.size * CHUNK_HEADER_SIZE + numOfEdits * EDIT_SIZE;
+    }
+
+    /**
+     * Writes the edits compactly: the number of chunks, and for each chunk its index, the number of its
+     * edits, and the key (the column in the chunk and the row) and the value of each edit.
+     *
+     * @param buffer The buffer to write to, with at least serializedSize() bytes remaining.
+     */
+    public synchronized void write(ByteBuffer buffer) {
+        buffer.putInt(chunks.size);
+        for (int chunkSlot = 0; chunkSlot < chunks.chunks.length; chunkSlot++) {
+            EditChunk chunk = chunks.chunks[chunkSlot];
+            if (chunk == null) {
+                continue;
+            }
+            buffer.putInt(chunks.indices[chunkSlot]).putInt(chunk.size);
+            for (int slot = 0; slot < chunk.keys.length; slot++) {
+                if (chunk.values[slot] != NONE) {
+                    buffer.putInt(chunk.keys[slot]).put(chunk.values[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads edits which were written by write.
+     *
+     * @param buffer The buffer to read from.
+     * @return The edits.
+     * @throws IOException If the buffer ends before the edits do, or holds edits which cannot be.
+     */
+    public static WorldEdits read(ByteBuffer buffer) throws IOException {
+        WorldEdits edits = new WorldEdits();
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new IOException("Truncated world edits");
+        }
+        int numOfChunks = buffer.getInt();
+        for (int i = 0; i < numOfChunks; i++) {
+            if (buffer.remaining() < CHUNK_HEADER_SIZE) {
+                throw new IOException("Truncated world edits");
+            }
+            int chunkIndex = buffer.getInt();
+            int numOfChunkEdits = buffer.getInt();
+            if (numOfChunkEdits <= 0 || buffer.remaining() < (long) numOfChunkEdits * EDIT_SIZE) {
+                throw new IOException("Truncated world edits");
+            }
+            if (edits.chunks.get(chunkIndex) != null) {
+                throw new IOException("Corrupted world edits");
+            }
+            // sized once for all of its edits
+            EditChunk chunk = new EditChunk(capacityFor(numOfChunkEdits));
+            for (int edit = 0; edit < numOfChunkEdits; edit++) {
+                int key = buffer.getInt();
+                byte value = buffer.get();
+                if (key >>> ROW_BITS >= CHUNK_COLUMNS || value == NONE) {
+                    throw new IOException("Corrupted world edits");
+                }
+                if (chunk.put(key, value)) {
+                    edits.numOfEdits++;
+                }
+            }
+            edits.chunks.put(chunkIndex, chunk);
+        }
+        edits.publishEditedColumns();
+        return edits;
+    }
+
+    /*
+     * replaces the snapshot of the edited columns of every chunk, which hasEdits reads
+     */
+    private void publishEditedColumns() {
+        int capacity = capacityFor(chunks.size);
+        int[] indices = new int[capacity];
+        long[] masks = new long[capacity];
+        for (int chunkSlot = 0; chunkSlot < chunks.chunks.length; chunkSlot++) {
+            EditChunk chunk = chunks.chunks[chunkSlot];
+            if (chunk == null) {
+                continue;
+            }
+            int slot = slotOf(chunks.indices[chunkSlot], capacity);
+            while (masks[slot] != 0) {
+                slot = nextSlot(slot, capacity);
+            }
+            indices[slot] = chunks.indices[chunkSlot];
+            masks[slot] = chunk.editedColumns;
+        }
+        editedColumns = new EditedColumns(indices, masks);
+    }
+
+    /*
+     * the key of a block inside its chunk
+     */
+    private static int keyOf(int column, int row) {
+        return (column & (CHUNK_COLUMNS - 1)) << ROW_BITS | row;
+    }
+
+    /*
+     * the smallest capacity which keeps a given number of edits at most half full
+     */
+    private static int capacityFor(int numOfEdits) {
+        return Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, numOfEdits) * 2 - 1) << 1);
+    }
+
+    /*
+     * the slot which a key is looked up from, in a map of a given capacity
+     */
+    private static int slotOf(int key, int capacity) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & (capacity - 1);
+    }
+
+    /*
+     * the slot after a given one, in a map of a given capacity
+     */
+    private static int nextSlot(int slot, int capacity) {
+        return (slot + 1) & (capacity - 1);
+    }
+
+    /*
+     * whether the entry in a candidate slot, which was looked up from its home slot, may be moved back into
+     * a freed slot of the same run
+     */
+    private static boolean canMoveBack(int free, int candidate, int home) {
+        return free <= candidate ? home <= free || home > candidate : home <= free && home > candidate;
+    }
+
+    /*
+     * The edits of a single chunk, in an open-addressing map with linear probing. A slot is free when its
+     * value is NONE, and a removed edit shifts the edits which probed past it back, so no slot is ever a
+     * tombstone. The map is kept at most half full.
+     */
+    private static class EditChunk {
+        private int[] keys;
+        private byte[] values;
+        private int size;
+        // a bit per column which has edits
+        private long editedColumns;
+        private final short[] editsPerColumn = new short[CHUNK_COLUMNS];
+
+        EditChunk(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new byte[capacity];
+        }
+
+        byte get(int key) {
+            for (int slot = slotOf(key, keys.length); values[slot] != NONE; slot = next(slot)) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return NONE;
+        }
+
+        /*
+         * returns true if the key is new
+         */
+        boolean put(int key, byte value) {
+            int slot = slotOf(key, keys.length);
+            for (; values[slot] != NONE; slot = next(slot)) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return false;
+                }
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            int columnInChunk = key >>> ROW_BITS;
+            editsPerColumn[columnInChunk]++;
+            editedColumns |= 1L << columnInChunk;
+            if (2 * size > keys.length) {
+                grow();
+            }
+            return true;
+        }
+
+        /*
+         * returns true if the key was there
+         */
+        boolean remove(int key) {
+            int slot = slotOf(key, keys.length);
+            while (values[slot] != NONE && keys[slot] != key) {
+                slot = next(slot);
+            }
+            if (values[slot] == NONE) {
+                return false;
+            }
+            size--;
+            int columnInChunk = key >>> ROW_BITS;
+            if (--editsPerColumn[columnInChunk] == 0) {
+                editedColumns &= ~(1L << columnInChunk);
+            }
+
+            // every following edit of the run which could have been in the freed slot is moved into it
+            int free = slot;
+            for (int candidate = next(free); values[candidate] != NONE; candidate = next(candidate)) {
+                if (canMoveBack(free, candidate, slotOf(keys[candidate], keys.length))) {
+                    keys[free] = keys[candidate];
+                    values[free] = values[candidate];
+                    free = candidate;
+                }
+            }
+            values[free] = NONE;
+            return true;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            byte[] oldValues = values;
+            keys = new int[2 * oldKeys.length];
+            values = new byte[2 * oldKeys.length];
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] == NONE) {
+                    continue;
+                }
+                int newSlot = slotOf(oldKeys[slot], keys.length);
+                while (values[newSlot] != NONE) {
+                    newSlot = next(newSlot);
+                }
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+
+        private int next(int slot) {
+            return nextSlot(slot, keys.length);
+        }
+    }
+
+    /*
+     * The chunks by their index, in an open-addressing map with linear probing, the same as the edits of a
+     * chunk. A slot is free when it has no chunk.
+     */
+    private static class ChunkMap {
+        private int[] indices;
+        private EditChunk[] chunks;
+        private int size;
+
+        ChunkMap(int capacity) {
+            this.indices = new int[capacity];
+            this.chunks = new EditChunk[capacity];
+        }
+
+        EditChunk get(int index) {
+            for (int slot = slotOf(index, indices.length); chunks[slot] != null; slot = next(slot)) {
+                if (indices[slot] == index) {
+                    return chunks[slot];
+                }
+            }
+            return null;
+        }
+
+        /*
+         * puts the chunk of an index which has none
+         */
+        void put(int index, EditChunk chunk) {
+            int slot = slotOf(index, indices.length);
+            while (chunks[slot] != null) {
+                slot = next(slot);
+            }
+            indices[slot] = index;
+            chunks[slot] = chunk;
+            size++;
+            if (2 * size > indices.length) {
+                grow();
+            }
+        }
+
+        void remove(int index) {
+            int slot = slotOf(index, indices.length);
+            while (chunks[slot] != null && indices[slot] != index) {
+                slot = next(slot);
+            }
+            if (chunks[slot] == null) {
+                return;
+            }
+            size--;
+            int free = slot;
+            for (int candidate = next(free); chunks[candidate] != null; candidate = next(candidate)) {
+                if (canMoveBack(free, candidate, slotOf(indices[candidate], indices.length))) {
+                    indices[free] = indices[candidate];
+                    chunks[free] = chunks[candidate];
+                    free = candidate;
+                }
+            }
+            chunks[free] = null;
+        }
+
+        private void grow() {
+            int[] oldIndices = indices;
+            EditChunk[] oldChunks = chunks;
+            indices = new int[2 * oldIndices.length];
+            chunks = new EditChunk[2 * oldIndices.length];
+            for (int slot = 0; slot < oldIndices.length; slot++) {
+                if (oldChunks[slot] == null) {
+                    continue;
+                }
+                int newSlot = slotOf(oldIndices[slot], indices.length);
+                while (chunks[newSlot] != null) {
+                    newSlot = next(newSlot);
+                }
+                indices[newSlot] = oldIndices[slot];
+                chunks[newSlot] = oldChunks[slot];
+            }
+        }
+
+        private int next(int slot) {
+            return nextSlot(slot, indices.length);
+        }
+    }
+
+    /*
+     * The edited columns of every chunk which has edits, as a bit per column, by the index of the chunk. It
+     * never changes once it is built, so it is read without locking. A slot is free when it has no edited
+     * columns, which a chunk with edits always has.
+     */
+    private static class EditedColumns {
+        private static final EditedColumns EMPTY = new EditedColumns(new int[1], new long[1]);
+
+        private final int[] indices;
+        private final long[] masks;
+
+        EditedColumns(int[] indices, long[] masks) {
+            this.indices = indices;
+            this.masks = masks;
+        }
+
+        /*
+         * the edited columns of a chunk, 0 if it has none
+         */
+        long get(int index) {
+            for (int slot = slotOf(index, masks.length); masks[slot] != 0; slot = nextSlot(slot, masks.length)) {
+                if (indices[slot] == index) {
+                    return masks[slot];
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package pepse.world;
+
+import danogl.GameObject;
+import pepse.world.chunks.ChunkColumns;
+import pepse.world.chunks.LeafStates;
+import pepse.world.trees.Tree;
+
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * A single frame of the world (terrain and trees of a range of x-values) which was built
+ * but not yet added to the game.
+ */
+public class WorldFrame {
+    /**
+     * How much of a frame in the game is kept as separate objects, from the most to the least.
+     */
+    public enum Detail {
+        // every block and leaf is a separate object
+        FULL,
+        // the lower blocks of every column and the blocks of every trunk are single objects
+        MERGED,
+        // merged, and the leaves are removed from the game
+        BARE
+    }
+
+    /* Fields */
+    private final int minX;
+    private final int maxX;
+    private final Map<Integer, HashSet<GameObject>> terrainColumns;
+    private final Map<Integer, HashSet<Object>> treeColumns;
+    private final ChunkColumns columns;
+    private Detail detail = Detail.FULL;
+
+    /**
+     * Constructor
+     *
+     * @param minX           The lower bound of the frame.
+     * @param maxX           The upper bound of the frame.
+     * @param terrainColumns The blocks of the frame, by their x.
+     * @param treeColumns    The trees of the frame, by their x.
+     * @param columns        The description of the columns of the frame.
+     */
+    public WorldFrame(int minX, int maxX,
+                      Map<Integer, HashSet<GameObject>> terrainColumns,
+                      Map<Integer, HashSet<Object>> treeColumns,
+                      ChunkColumns columns) {
+        this.columns = columns;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.terrainColumns = terrainColumns;
+        this.treeColumns = treeColumns;
+    }
+
+    /**
+     * Builds the terrain and trees of the given columns. Safe to call from a background thread.
+     *
+     * @param terrain The terrain of the world.
+     * @param trees   The trees of the world.
+     * @param columns The description of the columns of the frame.
+     * @return A new frame which is ready to be attached.
+     */
+    public static WorldFrame generate(Terrain terrain, Tree trees, ChunkColumns columns) {
+        return generate(terrain, trees, columns, null);
+    }
+
+    /**
+     * Builds the terrain and trees of the given columns, continuing the state their leaves had when they
+     * were streamed out. Safe to call from a background thread.
+     *
+     * @param terrain    The terrain of the world.
+     * @param trees      The trees of the world.
+     * @param columns    The description of the columns of the frame.
+     * @param leafStates The state of the leaves of the frame, or null for new leaves.
+     * @return A new frame which is ready to be attached.
+     */
+    public static WorldFrame generate(Terrain terrain, Tree trees, ChunkColumns columns,
+                                      LeafStates leafStates) {
+        return new WorldFrame(columns.columnX(0), columns.columnX(columns.size()),
+                terrain.generateInRange(columns),
+                trees.generateInRange(columns, leafStates),
+                columns);
+    }
+
+    /**
+     * Adds the frame to the game. Must be called from the game thread.
+     *
+     * @param terrain The terrain of the world.
+     * @param trees   The trees of the world.
+     */
+    public void attach(Terrain terrain, Tree trees) {
+        terrain.attach(terrainColumns, columns);
+        trees.attach(treeColumns);
+    }
+
+    /**
+     * getter for the lower bound of the frame
+     *
+     * @return the lower bound of the frame
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * getter for the description of the columns of the frame
+     *
+     * @return the description of the columns
+     */
+    public ChunkColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * getter for the detail of the frame
+     *
+     * @return how much of the frame is kept as separate objects
+     */
+    public Detail getDetail() {
+        return detail;
+    }
+
+    /**
+     * setter for the detail of the frame, once the objects of the frame were changed to match it
+     *
+     * @param detail how much of the frame is kept as separate objects
+     */
+    public void setDetail(Detail detail) {
+        this.detail = detail;
+    }
+
+    /**
+     * getter for the upper bound of the frame
+     *
+     * @return the upper bound of the frame
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+}
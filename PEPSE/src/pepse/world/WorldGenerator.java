@@ -0,0 +1,517 @@
+package pepse.world;
+
+import pepse.world.chunks.ChunkColumns;
+import pepse.world.chunks.ChunkStore;
+import pepse.world.chunks.FrameArena;
+import pepse.world.chunks.LeafStates;
+import pepse.world.pipeline.GenerationPipeline;
+import pepse.world.pipeline.GenerationStage;
+import pepse.world.trees.Tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds frames of the world in parallel on a fork-join pool, and adds them to the game in order. Frames
+ * are described by a pipeline of stages: the height field, the biomes, the surface materials, the
+ * vegetation and the decoration of the trees.
+ * When a chunk store is set, frames which were already generated are read from it instead of being
+ * described again. When a frame arena is set, frames which are streamed out are kept in it, and are
+ * rebuilt from it with the state of their leaves when they are streamed back in. When a memory budget is
+ * set, the frames which are farthest from the camera are degraded while it is exceeded: first their
+ * ground and trunks are merged into fewer objects, and then their leaves are removed.
+ */
+public class WorldGenerator {
+    /* Constants */
+    /**
+     * Version of the world generation. Should be increased whenever the generated world changes, so stored
+     * chunks of older versions are not used.
+     */
+    public static final int GENERATOR_VERSION = 4;
+
+    private static final int HEIGHT_STAGE_VERSION = 2;
+    private static final int BIOME_STAGE_VERSION = 1;
+    private static final int SURFACE_STAGE_VERSION = 1;
+    private static final int VEGETATION_STAGE_VERSION = 2;
+    private static final int DECORATION_STAGE_VERSION = 2;
+
+    // the levels which frames are degraded to, and then restored to, in order
+    private static final WorldFrame.Detail[] DEGRADED_DETAILS = {WorldFrame.Detail.MERGED,
+            WorldFrame.Detail.BARE};
+    private static final WorldFrame.Detail[] RESTORED_DETAILS = {WorldFrame.Detail.MERGED,
+            WorldFrame.Detail.FULL};
+    private static final MemoryBudget.Subsystem[] SUBSYSTEMS = MemoryBudget.Subsystem.values();
+
+    /* Fields */
+    private final Terrain terrain;
+    private final Tree trees;
+    private final int frameSize;
+    private final GenerationPipeline pipeline;
+    private final ForkJoinPool pool;
+    private ChunkStore chunkStore;
+    private FrameArena frameArena;
+    private MemoryBudget memoryBudget;
+    // frames in the game, by their minX (used from the game thread only)
+    private final Map<Integer, WorldFrame> liveFrames = new HashMap<>();
+
+    /**
+     * Constructor of a generator which builds its frames on the common fork-join pool, so it owns no
+     * threads which would have to be shut down.
+     *
+     * @param terrain   The terrain of the world.
+     * @param trees     The trees of the world.
+     * @param frameSize The width of a single frame (a multiple of Block.SIZE).
+     * @param seed      The seed of the world.
+     */
+    public WorldGenerator(Terrain terrain, Tree trees, int frameSize, int seed) {
+        this(terrain, trees, frameSize, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a generator which shares its threads with other generators, so many worlds can be
+     * generated in the same process without a pool of threads each.
+     *
+     * @param terrain   The terrain of the world.
+     * @param trees     The trees of the world.
+     * @param frameSize The width of a single frame (a multiple of Block.SIZE).
+     * @param seed      The seed of the world.
+     * @param pool      The pool which builds the frames.
+     */
+    public WorldGenerator(Terrain terrain, Tree trees, int frameSize, int seed, ForkJoinPool pool) {
+        this.pool = pool;
+        this.terrain = terrain;
+        this.trees = trees;
+        this.frameSize = frameSize;
+        this.pipeline = new GenerationPipeline(seed, Arrays.asList(
+                new GenerationStage("height", HEIGHT_STAGE_VERSION, terrain::fillColumns),
+                new GenerationStage("biome", BIOME_STAGE_VERSION, columns -> fillBiomes(columns, seed)),
+                new GenerationStage("surface", SURFACE_STAGE_VERSION, terrain::fillSurface),
+                new GenerationStage("vegetation", VEGETATION_STAGE_VERSION, trees::plantColumns),
+                new GenerationStage("decoration", DECORATION_STAGE_VERSION, trees::fillTreeTops)
+        ), GenerationPipeline.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * setter for the persistent store of generated chunks
+     *
+     * @param chunkStore the store to read and write columns from, or null to always generate them
+     */
+    public void setChunkStore(ChunkStore chunkStore) {
+        this.chunkStore = chunkStore;
+    }
+
+    /**
+     * setter for the arena of frames which were streamed out
+     *
+     * @param frameArena the arena to keep removed frames in, or null to drop them
+     */
+    public void setFrameArena(FrameArena frameArena) {
+        this.frameArena = frameArena;
+    }
+
+    /**
+     * setter for the budget of the live objects
+     *
+     * @param memoryBudget the budget to keep the frames in, or null to keep every frame in full detail
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * getter for the pipeline which describes the frames
+     *
+     * @return the generation pipeline, with the timing of its stages
+     */
+    public GenerationPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Describes the columns of a given range: read from the chunk store if they were already generated,
+     * and generated (and written to the store, if there is one) otherwise.
+     *
+     * @param minX The lower bound of the range (a multiple of Block.SIZE).
+     * @param maxX The upper bound of the range (a multiple of Block.SIZE).
+     * @return The description of the columns.
+     */
+    public ChunkColumns describeInRange(int minX, int maxX) {
+        int firstColumn = (int) Math.floor(minX / Block.SIZE);
+        int numOfColumns = (int) ((maxX - minX) / Block.SIZE);
+
+        ChunkColumns columns = chunkStore == null ? null : chunkStore.columns(firstColumn, numOfColumns);
+        if (columns != null && columns.isComplete()) {
+            return columns;
+        }
+        if (columns == null) {
+            columns = new ChunkColumns(firstColumn, numOfColumns);
+        }
+        pipeline.fill(columns);
+        columns.markComplete();
+        return columns;
+    }
+
+    /**
+     * Builds every frame in the given range in parallel, without adding them to the game.
+     *
+     * @param minX The lower bound of the range (a multiple of the frame size).
+     * @param maxX The upper bound of the range (a multiple of the frame size).
+     * @return The built frames, ordered from left to right.
+     */
+    public List<WorldFrame> generateInRange(int minX, int maxX) {
+        return generateInRange(minX, maxX, Collections.emptyMap());
+    }
+
+    /**
+     * Builds every frame in the given range in parallel, without adding them to the game, continuing the
+     * state their leaves had when they were saved.
+     *
+     * @param minX       The lower bound of the range (a multiple of the frame size).
+     * @param maxX       The upper bound of the range (a multiple of the frame size).
+     * @param leafStates The state of the leaves of some of the frames, by their minX.
+     * @return The built frames, ordered from left to right.
+     */
+    public List<WorldFrame> generateInRange(int minX, int maxX, Map<Integer, LeafStates> leafStates) {
+        return pool.invoke(new FramesTask(minX, (maxX - minX) / frameSize, leafStates));
+    }
+
+    /**
+     * Builds every frame in the given range in parallel, and then adds them to the game from left to
+     * right. Must be called from the game thread.
+     *
+     * @param minX The lower bound of the range (a multiple of the frame size).
+     * @param maxX The upper bound of the range (a multiple of the frame size).
+     */
+    public void createInRange(int minX, int maxX) {
+        createInRange(minX, maxX, Collections.emptyMap());
+    }
+
+    /**
+     * Builds every frame in the given range in parallel, continuing the state their leaves had when they
+     * were saved, and then adds them to the game from left to right. Must be called from the game thread.
+     *
+     * @param minX       The lower bound of the range (a multiple of the frame size).
+     * @param maxX       The upper bound of the range (a multiple of the frame size).
+     * @param leafStates The state of the leaves of some of the frames, by their minX.
+     */
+    public void createInRange(int minX, int maxX, Map<Integer, LeafStates> leafStates) {
+        for (WorldFrame frame : generateInRange(minX, maxX, leafStates)) {
+            frame.attach(terrain, trees);
+            liveFrames.put(frame.getMinX(), frame);
+        }
+    }
+
+    /**
+     * Removes every frame in the given range from the game, keeping it in the frame arena if there is one.
+     * Must be called from the game thread.
+     *
+     * @param minX The lower bound of the range (a multiple of the frame size).
+     * @param maxX The upper bound of the range (a multiple of the frame size).
+     */
+    public void removeInRange(int minX, int maxX) {
+        for (int frameMinX = minX; frameMinX < maxX; frameMinX += frameSize) {
+            WorldFrame frame = liveFrames.remove(frameMinX);
+            if (frame != null && frameArena != null) {
+                frameArena.store(frameMinX, frame.getColumns(), trees.getLeafStates(frame.getColumns()));
+            }
+        }
+        terrain.removeInRange(minX, maxX);
+        trees.removeInRange(minX, maxX);
+    }
+
+    /**
+     * Collects the state of the leaves of every frame in the game. Must be called from the game thread.
+     *
+     * @return The state of the leaves of every frame, by the minX of the frame, from left to right.
+     */
+    public Map<Integer, LeafStates> getLiveLeafStates() {
+        Map<Integer, LeafStates> leafStates = new TreeMap<>();
+        for (WorldFrame frame : liveFrames.values()) {
+            leafStates.put(frame.getMinX(), trees.getLeafStates(frame.getColumns()));
+        }
+        return leafStates;
+    }
+
+    /**
+     * Tallies the live objects of the frames in the game, and keeps them within the memory budget. While
+     * the budget is exceeded, the frames which are farthest from the camera are degraded first, a level at
+     * a time over all the frames, and the frames which the camera shows never lose their leaves. Otherwise,
+     * degraded frames are restored nearest first, as long as restoring them fits in the budget. Must be
+     * called from the game thread.
+     *
+     * @param cameraX          The x of the center of the camera.
+     * @param visibleHalfWidth The distance from the center of the camera to the edges of the screen.
+     * @return true if the frames are within the budget (or there is none), false if even the least detail
+     * which every frame may have passes it.
+     */
+    public boolean enforceBudget(float cameraX, float visibleHalfWidth) {
+        if (memoryBudget == null) {
+            return true;
+        }
+        memoryBudget.clear();
+        List<WorldFrame> frames = new ArrayList<>(liveFrames.values());
+        for (WorldFrame frame : frames) {
+            tally(frame, frame.getDetail(), 1);
+        }
+        // nearest first
+        frames.sort(Comparator.comparingDouble(
+                frame -> Math.abs((frame.getMinX() + frame.getMaxX()) / 2f - cameraX)));
+
+        if (memoryBudget.isExceeded()) {
+            // a frame which lost its leaves outside the screen gets them back once it is shown
+            for (WorldFrame frame : frames) {
+                if (frame.getDetail() == WorldFrame.Detail.BARE && isVisible(frame, cameraX, visibleHalfWidth)) {
+                    setDetail(frame, WorldFrame.Detail.MERGED);
+                }
+            }
+            for (WorldFrame.Detail detail : DEGRADED_DETAILS) {
+                for (int i = frames.size() - 1; i >= 0 && memoryBudget.isExceeded(); i--) {
+                    WorldFrame frame = frames.get(i);
+                    if (frame.getDetail().compareTo(detail) < 0 && (detail != WorldFrame.Detail.BARE
+                            || !isVisible(frame, cameraX, visibleHalfWidth))) {
+                        setDetail(frame, detail);
+                    }
+                }
+            }
+            return !memoryBudget.isExceeded();
+        }
+
+        for (WorldFrame.Detail detail : RESTORED_DETAILS) {
+            for (WorldFrame frame : frames) {
+                if (frame.getDetail().compareTo(detail) <= 0) {
+                    continue;
+                }
+                // the farther frames stay degraded, so the restored frames are always the nearest ones
+                long extraBytes = estimateBytes(frame, detail) - estimateBytes(frame, frame.getDetail());
+                if (!memoryBudget.fits(extraBytes)) {
+                    return true;
+                }
+                setDetail(frame, detail);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * whether a camera centered at a given x shows any of a frame
+     */
+    private static boolean isVisible(WorldFrame frame, float cameraX, float visibleHalfWidth) {
+        return frame.getMaxX() > cameraX - visibleHalfWidth && frame.getMinX() < cameraX + visibleHalfWidth;
+    }
+
+    /**
+     * getter for the budget of the live objects
+     *
+     * @return the memory budget, with the objects it tallied last, or null if there is none
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Removes all the frames from the game at once, without keeping them. Must be called from the game
+     * thread.
+     */
+    public void removeAll() {
+        liveFrames.clear();
+        terrain.removeAll();
+        trees.removeAll();
+    }
+
+    /**
+     * Describes every frame in the given range in parallel, without building any game objects. With a
+     * chunk store set, this bakes the range into the store.
+     *
+     * @param minX The lower bound of the range (a multiple of the frame size).
+     * @param maxX The upper bound of the range (a multiple of the frame size).
+     */
+    public void describeAllInRange(int minX, int maxX) {
+        pool.invoke(new DescribeTask(minX, (maxX - minX) / frameSize));
+    }
+
+    /*
+     * changes the objects of a frame in the game to match a given detail, and tallies the change
+     */
+    private void setDetail(WorldFrame frame, WorldFrame.Detail detail) {
+        ChunkColumns columns = frame.getColumns();
+        tally(frame, frame.getDetail(), -1);
+        boolean wasMerged = frame.getDetail() != WorldFrame.Detail.FULL;
+        boolean isMerged = detail != WorldFrame.Detail.FULL;
+        if (wasMerged != isMerged) {
+            terrain.setLowerRunsMerged(columns, isMerged);
+            trees.setTrunksMerged(columns, isMerged);
+        }
+        boolean hadLeaves = frame.getDetail() != WorldFrame.Detail.BARE;
+        boolean hasLeaves = detail != WorldFrame.Detail.BARE;
+        if (hadLeaves != hasLeaves) {
+            trees.setLeavesAttached(columns, hasLeaves);
+        }
+        frame.setDetail(detail);
+        tally(frame, detail, 1);
+    }
+
+    /*
+     * adds (or with a negative sign, removes) the objects of a frame in a given detail to the budget
+     */
+    private void tally(WorldFrame frame, WorldFrame.Detail detail, int sign) {
+        for (MemoryBudget.Subsystem subsystem : SUBSYSTEMS) {
+            memoryBudget.add(subsystem, sign * countObjects(frame, detail, subsystem));
+        }
+    }
+
+    /*
+     * the estimated bytes of the objects of a frame in a given detail
+     */
+    private long estimateBytes(WorldFrame frame, WorldFrame.Detail detail) {
+        long bytes = 0;
+        for (MemoryBudget.Subsystem subsystem : SUBSYSTEMS) {
+            bytes += countObjects(frame, detail, subsystem) * subsystem.getBytesPerObject();
+        }
+        return bytes;
+    }
+
+    /*
+     * the number of objects of a subsystem which a frame in the game has in a given detail
+     */
+    private long countObjects(WorldFrame frame, WorldFrame.Detail detail, MemoryBudget.Subsystem subsystem) {
+        ChunkColumns columns = frame.getColumns();
+        boolean isMerged = detail != WorldFrame.Detail.FULL;
+        long numOfObjects = 0;
+        switch (subsystem) {
+            case TERRAIN:
+                for (int i = 0; i < columns.size(); i++) {
+                    numOfObjects += columns.getUpperRun(i);
+                }
+                return numOfObjects + terrain.countLowerObjects(columns, isMerged);
+            case TRUNKS:
+                for (int i = 0; i < columns.size(); i++) {
+                    if (columns.hasTree(i)) {
+                        numOfObjects += isMerged ? 1 : columns.getTrunkHeight(i);
+                    }
+                }
+                return numOfObjects;
+            case LEAVES:
+                if (detail == WorldFrame.Detail.BARE) {
+                    return 0;
+                }
+                // by the leaves which were built, as fewer than the anchors are built at a low leaf density
+                return trees.countLeaves(columns) - trees.countFallingLeaves(columns);
+            case FALLING_LEAVES:
+                return detail == WorldFrame.Detail.BARE ? 0 : trees.countFallingLeaves(columns);
+            default:
+                return 0;
+        }
+    }
+
+    /*
+     * classifies the biome of every column
+     */
+    private static void fillBiomes(ChunkColumns columns, int seed) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.setBiome(i, Biome.of(seed, columns.getFirstColumn() + i).getId());
+        }
+    }
+
+    /*
+     * Builds a single frame, from the given leaf states if there are ones which fit it, or from the frame
+     * arena if it was streamed out before
+     */
+    private WorldFrame generateFrame(int minX, LeafStates savedLeafStates) {
+        if (savedLeafStates != null) {
+            ChunkColumns columns = describeInRange(minX, minX + frameSize);
+            int numOfLeaves = 0;
+            for (int i = 0; i < columns.size(); i++) {
+                numOfLeaves += columns.getLeafCount(i);
+            }
+            if (numOfLeaves == savedLeafStates.size()) {
+                return WorldFrame.generate(terrain, trees, columns, savedLeafStates);
+            }
+            return WorldFrame.generate(terrain, trees, columns);
+        }
+        if (frameArena != null) {
+            ChunkColumns columns = new ChunkColumns((int) Math.floor(minX / Block.SIZE),
+                    (int) (frameSize / Block.SIZE));
+            LeafStates leafStates = frameArena.restore(minX, columns);
+            if (leafStates != null) {
+                terrain.fillBlockRuns(columns);
+                columns.markComplete();
+                return WorldFrame.generate(terrain, trees, columns, leafStates);
+            }
+        }
+        return WorldFrame.generate(terrain, trees, describeInRange(minX, minX + frameSize));
+    }
+
+    /*
+     * Splits a run of frames in halves until a single frame is left, which is described directly
+     */
+    @SuppressWarnings("serial")
+    private class DescribeTask extends RecursiveAction {
+        private final int minX;
+        private final int numOfFrames;
+
+        DescribeTask(int minX, int numOfFrames) {
+            this.minX = minX;
+            this.numOfFrames = numOfFrames;
+        }
+
+        @Override
+        protected void compute() {
+            if (numOfFrames <= 1) {
+                if (numOfFrames == 1) {
+                    describeInRange(minX, minX + frameSize);
+                }
+                return;
+            }
+
+            int leftFrames = numOfFrames / 2;
+            invokeAll(new DescribeTask(minX, leftFrames),
+                    new DescribeTask(minX + leftFrames * frameSize, numOfFrames - leftFrames));
+        }
+    }
+
+    /*
+     * Splits a run of frames in halves until a single frame is left, which is built directly
+     */
+    @SuppressWarnings("serial")
+    private class FramesTask extends RecursiveTask<List<WorldFrame>> {
+        private final int minX;
+        private final int numOfFrames;
+        private final Map<Integer, LeafStates> leafStates;
+
+        FramesTask(int minX, int numOfFrames, Map<Integer, LeafStates> leafStates) {
+            this.minX = minX;
+            this.numOfFrames = numOfFrames;
+            this.leafStates = leafStates;
+        }
+
+        @Override
+        protected List<WorldFrame> compute() {
+            List<WorldFrame> frames = new ArrayList<>(numOfFrames);
+            if (numOfFrames <= 1) {
+                if (numOfFrames == 1) {
+                    frames.add(generateFrame(minX, leafStates.get(minX)));
+                }
+                return frames;
+            }
+
+            int leftFrames = numOfFrames / 2;
+            FramesTask left = new FramesTask(minX, leftFrames, leafStates);
+            FramesTask right = new FramesTask(minX + leftFrames * frameSize, numOfFrames - leftFrames,
+                    leafStates);
+            left.fork();
+            List<WorldFrame> rightFrames = right.compute();
+            frames.addAll(left.join());
+            frames.addAll(rightFrames);
+            return frames;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package pepse.world.chunks;
+
+import pepse.world.Block;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact description of a run of world columns, from which the terrain and trees of those columns
+ * can be built. Every column is a fixed size record inside a byte buffer, so the same layout is used
+ * both for freshly generated columns (on the heap) and for columns read straight from a memory-mapped
+ * chunk store.
+ * <p>
+ * Record layout (in bytes): flags, trunk height, ground height (short), lower blocks run (short),
+ * upper blocks run, leaf count, biome, surface material, and the archetype and variation of the tree
+ * (see TreeArchetypes), which its leaves are built from.
+ */
+public class ChunkColumns {
+    /* Constants */
+    /**
+     * Maximal number of leaves which can be anchored to a single tree.
+     */
+    public static final int MAX_LEAVES = 48;
+
+    /**
+     * Size in bytes of the record of a single column.
+     */
+    public static final int RECORD_SIZE = 12;
+
+    private static final int FLAGS_OFFSET = 0;
+    private static final int TRUNK_HEIGHT_OFFSET = 1;
+    private static final int GROUND_HEIGHT_OFFSET = 2;
+    private static final int LOWER_RUN_OFFSET = 4;
+    private static final int UPPER_RUN_OFFSET = 6;
+    private static final int LEAF_COUNT_OFFSET = 7;
+    private static final int BIOME_OFFSET = 8;
+    private static final int MATERIAL_OFFSET = 9;
+    private static final int ARCHETYPE_OFFSET = 10;
+    private static final int VARIATION_OFFSET = 11;
+    private static final byte PRESENT_FLAG = 1;
+    private static final byte TREE_FLAG = 2;
+
+    /* Fields */
+    private final ByteBuffer buffer;
+    private final int firstColumn;
+    private final int numOfColumns;
+
+    /**
+     * Creates an empty description of columns on the heap.
+     *
+     * @param firstColumn  The number of the first column (its x divided by Block.SIZE).
+     * @param numOfColumns The number of columns.
+     */
+    public ChunkColumns(int firstColumn, int numOfColumns) {
+        this(ByteBuffer.allocate(numOfColumns * RECORD_SIZE), firstColumn, numOfColumns);
+    }
+
+    /**
+     * Creates a description of columns over an existing buffer, without copying it.
+     *
+     * @param buffer       A buffer of exactly numOfColumns records, starting at index 0.
+     * @param firstColumn  The number of the first column (its x divided by Block.SIZE).
+     * @param numOfColumns The number of columns.
+     */
+    public ChunkColumns(ByteBuffer buffer, int firstColumn, int numOfColumns) {
+        this.buffer = buffer;
+        this.firstColumn = firstColumn;
+        this.numOfColumns = numOfColumns;
+    }
+
+    /**
+     * getter for the number of the first column
+     *
+     * @return the number of the first column
+     */
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+
+    /**
+     * getter for the number of columns
+     *
+     * @return the number of columns
+     */
+    public int size() {
+        return numOfColumns;
+    }
+
+    /**
+     * Returns the x-value of a column
+     *
+     * @param i index of the column (0 is the first column)
+     * @return the x-value of the column's left edge
+     */
+    public int columnX(int i) {
+        return (int) ((firstColumn + i) * Block.SIZE);
+    }
+
+    /**
+     * Checks whether every column was already filled
+     *
+     * @return true if all the columns are present
+     */
+    public boolean isComplete() {
+        for (int i = 0; i < numOfColumns; i++) {
+            if ((buffer.get(record(i) + FLAGS_OFFSET) & PRESENT_FLAG) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks every column as filled. Should be called after the terrain and the trees filled the columns.
+     */
+    public void markComplete() {
+        for (int i = 0; i < numOfColumns; i++) {
+            int flagsIndex = record(i) + FLAGS_OFFSET;
+            buffer.put(flagsIndex, (byte) (buffer.get(flagsIndex) | PRESENT_FLAG));
+        }
+    }
+
+    /**
+     * getter for the ground height of a column
+     *
+     * @param i index of the column
+     * @return the y-value of the ground, in whole pixels
+     */
+    public float getGroundHeight(int i) {
+        return buffer.getShort(record(i) + GROUND_HEIGHT_OFFSET);
+    }
+
+    /**
+     * setter for the ground height of a column, rounded to whole pixels
+     *
+     * @param i            index of the column
+     * @param groundHeight the y-value of the ground
+     */
+    public void setGroundHeight(int i, float groundHeight) {
+        buffer.putShort(record(i) + GROUND_HEIGHT_OFFSET, (short) Math.round(groundHeight));
+    }
+
+    /**
+     * getter for the number of lower (non colliding) blocks of a column
+     *
+     * @param i index of the column
+     * @return the number of lower blocks
+     */
+    public int getLowerRun(int i) {
+        return buffer.getShort(record(i) + LOWER_RUN_OFFSET);
+    }
+
+    /**
+     * getter for the number of upper (colliding) blocks of a column
+     *
+     * @param i index of the column
+     * @return the number of upper blocks
+     */
+    public int getUpperRun(int i) {
+        return buffer.get(record(i) + UPPER_RUN_OFFSET);
+    }
+
+    /**
+     * setter for the block runs of a column
+     *
+     * @param i         index of the column
+     * @param lowerRun  the number of lower blocks, from the bottom of the window
+     * @param upperRun  the number of upper blocks, on top of the lower ones
+     */
+    public void setBlockRuns(int i, int lowerRun, int upperRun) {
+        buffer.putShort(record(i) + LOWER_RUN_OFFSET, (short) lowerRun);
+        buffer.put(record(i) + UPPER_RUN_OFFSET, (byte) upperRun);
+    }
+
+    /**
+     * getter for the biome of a column
+     *
+     * @param i index of the column
+     * @return the id of the biome of the column (see Biome.getId)
+     */
+    public int getBiome(int i) {
+        return buffer.get(record(i) + BIOME_OFFSET);
+    }
+
+    /**
+     * setter for the biome of a column
+     *
+     * @param i     index of the column
+     * @param biome the id of the biome of the column
+     */
+    public void setBiome(int i, int biome) {
+        buffer.put(record(i) + BIOME_OFFSET, (byte) biome);
+    }
+
+    /**
+     * getter for the material of the upper blocks of a column
+     *
+     * @param i index of the column
+     * @return the id of the surface material of the column (see SurfaceMaterial.getId)
+     */
+    public int getSurfaceMaterial(int i) {
+        return buffer.get(record(i) + MATERIAL_OFFSET);
+    }
+
+    /**
+     * setter for the material of the upper blocks of a column
+     *
+     * @param i        index of the column
+     * @param material the id of the surface material of the column
+     */
+    public void setSurfaceMaterial(int i, int material) {
+        buffer.put(record(i) + MATERIAL_OFFSET, (byte) material);
+    }
+
+    /**
+     * Checks whether a tree is planted in a column
+     *
+     * @param i index of the column
+     * @return true if a tree is planted in the column
+     */
+    public boolean hasTree(int i) {
+        return (buffer.get(record(i) + FLAGS_OFFSET) & TREE_FLAG) != 0;
+    }
+
+    /**
+     * getter for the trunk height of the tree in a column
+     *
+     * @param i index of the column
+     * @return the trunk height in blocks, or 0 if there is no tree
+     */
+    public int getTrunkHeight(int i) {
+        return buffer.get(record(i) + TRUNK_HEIGHT_OFFSET);
+    }
+
+    /**
+     * Plants a tree in a column
+     *
+     * @param i           index of the column
+     * @param trunkHeight the trunk height in blocks
+     */
+    public void setTree(int i, int trunkHeight) {
+        int flagsIndex = record(i) + FLAGS_OFFSET;
+        buffer.put(flagsIndex, (byte) (buffer.get(flagsIndex) | TREE_FLAG));
+        buffer.put(record(i) + TRUNK_HEIGHT_OFFSET, (byte) trunkHeight);
+    }
+
+    /**
+     * getter for the number of leaves of the tree in a column
+     *
+     * @param i index of the column
+     * @return the number of leaves
+     */
+    public int getLeafCount(int i) {
+        return buffer.get(record(i) + LEAF_COUNT_OFFSET);
+    }
+
+    /**
+     * setter for the number of leaves of the tree in a column
+     *
+     * @param i         index of the column
+     * @param leafCount the number of leaves, at most MAX_LEAVES
+     */
+    public void setLeafCount(int i, int leafCount) {
+        buffer.put(record(i) + LEAF_COUNT_OFFSET, (byte) Math.min(leafCount, MAX_LEAVES));
+    }
+
+    /**
+     * getter for the archetype of the tree in a column
+     *
+     * @param i index of the column
+     * @return the id of the archetype of the tree
+     */
+    public int getArchetype(int i) {
+        return buffer.get(record(i) + ARCHETYPE_OFFSET) & 0xFF;
+    }
+
+    /**
+     * setter for the archetype of the tree in a column
+     *
+     * @param i         index of the column
+     * @param archetype the id of the archetype of the tree (fits in an unsigned byte)
+     */
+    public void setArchetype(int i, int archetype) {
+        buffer.put(record(i) + ARCHETYPE_OFFSET, (byte) archetype);
+    }
+
+    /**
+     * getter for the variation of the tree in a column
+     *
+     * @param i index of the column
+     * @return the variation of the tree from its archetype
+     */
+    public int getVariation(int i) {
+        return buffer.get(record(i) + VARIATION_OFFSET) & 0xFF;
+    }
+
+    /**
+     * setter for the variation of the tree in a column
+     *
+     * @param i         index of the column
+     * @param variation the variation of the tree from its archetype (fits in an unsigned byte)
+     */
+    public void setVariation(int i, int variation) {
+        buffer.put(record(i) + VARIATION_OFFSET, (byte) variation);
+    }
+
+    /**
+     * Copies the records of all the columns.
+     *
+     * @return a copy of the records, to be given to restore
+     */
+    public byte[] snapshot() {
+        byte[] records = new byte[numOfColumns * RECORD_SIZE];
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        view.get(records);
+        return records;
+    }
+
+    /**
+     * Overwrites the records of all the columns with a copy which was taken by snapshot.
+     *
+     * @param records a copy of the records of the same number of columns
+     */
+    public void restore(byte[] records) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        view.put(records);
+    }
+
+    /*
+     * index of the record of a column inside the buffer
+     */
+    private int record(int i) {
+        return i * RECORD_SIZE;
+    }
+}
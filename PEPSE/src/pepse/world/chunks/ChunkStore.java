@@ -0,0 +1,179 @@
+package pepse.world.chunks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A persistent store of column descriptions, kept in a memory-mapped file which is indexed by the
+ * column number. Columns which were already generated are read straight from the mapping, and newly
+ * generated columns are written straight into it, so nothing is copied on the way.
+ * <p>
+ * The file name contains the seed, the generator version and the window height, so changing any of them
+ * starts a fresh store. Writes are persisted by the operating system, even if the store was not closed.
+ */
+public class ChunkStore implements Closeable {
+    /* Constants */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Default number of columns on each side of column 0 that can be stored.
+     */
+    public static final int DEFAULT_COLUMNS_PER_SIDE = 1 << 17;
+
+    /**
+     * Maximal number of columns on each side of column 0 that can be stored (a mapping is limited to 2GB).
+     */
+    public static final int MAX_COLUMNS_PER_SIDE = (Integer.MAX_VALUE - HEADER_SIZE) / 2
+            / ChunkColumns.RECORD_SIZE;
+
+    private static final int MAGIC = 0x50455053; // "PEPS"
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_NAME_FORMAT = "chunks-%d-v%d-%d.bin";
+
+    /* Fields */
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+    private final int originColumn;
+    private final int numOfColumns;
+
+    /*
+     * private constructor, use open
+     */
+    private ChunkStore(FileChannel channel, MappedByteBuffer mapping, int originColumn, int numOfColumns) {
+        this.channel = channel;
+        this.mapping = mapping;
+        this.originColumn = originColumn;
+        this.numOfColumns = numOfColumns;
+    }
+
+    /**
+     * Opens (or creates) the store of a world. An existing store is used with its own range of columns,
+     * and a new one is created with the default range.
+     *
+     * @param directory        The directory of the store files.
+     * @param seed             The seed of the world.
+     * @param generatorVersion The version of the world generator.
+     * @param windowHeight     The height of the window the world was generated for.
+     * @return An open chunk store.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static ChunkStore open(Path directory, int seed, int generatorVersion, int windowHeight)
+            throws IOException {
+        return open(directory, seed, generatorVersion, windowHeight, 0);
+    }
+
+    /**
+     * Opens (or creates) the store of a world, which can hold at least a given range of columns. An
+     * existing store with a smaller range is started over.
+     *
+     * @param directory        The directory of the store files.
+     * @param seed             The seed of the world.
+     * @param generatorVersion The version of the world generator.
+     * @param windowHeight     The height of the window the world was generated for.
+     * @param columnsPerSide   The number of columns on each side of column 0 that should be stored, or 0
+     *                         for the default.
+     * @return An open chunk store.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static ChunkStore open(Path directory, int seed, int generatorVersion, int windowHeight,
+                                  int columnsPerSide) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format(FILE_NAME_FORMAT, seed, generatorVersion, windowHeight));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        int storedColumnsPerSide = storedColumnsPerSide(channel, seed, generatorVersion, windowHeight);
+        if (storedColumnsPerSide > 0 && storedColumnsPerSide >= columnsPerSide) {
+            return new ChunkStore(channel, map(channel, storedColumnsPerSide), -storedColumnsPerSide,
+                    2 * storedColumnsPerSide);
+        }
+
+        // a file of another layout is started over (the file is sparse, so this is cheap)
+        if (columnsPerSide <= 0) {
+            columnsPerSide = DEFAULT_COLUMNS_PER_SIDE;
+        }
+        channel.truncate(0);
+        MappedByteBuffer mapping = map(channel, columnsPerSide);
+        mapping.putInt(4, FORMAT_VERSION);
+        mapping.putInt(8, seed);
+        mapping.putInt(12, generatorVersion);
+        mapping.putInt(16, windowHeight);
+        mapping.putInt(20, -columnsPerSide);
+        mapping.putInt(24, 2 * columnsPerSide);
+        mapping.putInt(0, MAGIC);
+        return new ChunkStore(channel, mapping, -columnsPerSide, 2 * columnsPerSide);
+    }
+
+    /*
+     * reads the header of an existing store, and returns its columns per side, or 0 if it does not match
+     */
+    private static int storedColumnsPerSide(FileChannel channel, int seed, int generatorVersion,
+                                            int windowHeight) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        int columnsPerSide = -header.getInt(20);
+        boolean isValid = header.getInt(0) == MAGIC
+                && header.getInt(4) == FORMAT_VERSION
+                && header.getInt(8) == seed
+                && header.getInt(12) == generatorVersion
+                && header.getInt(16) == windowHeight
+                && columnsPerSide > 0
+                && header.getInt(24) == 2 * columnsPerSide
+                && channel.size() == storeSize(columnsPerSide);
+        return isValid ? columnsPerSide : 0;
+    }
+
+    /*
+     * maps the whole store, extending the file to its size if needed
+     */
+    private static MappedByteBuffer map(FileChannel channel, int columnsPerSide) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, storeSize(columnsPerSide));
+    }
+
+    /*
+     * the size in bytes of a store
+     */
+    private static long storeSize(int columnsPerSide) {
+        return HEADER_SIZE + 2L * columnsPerSide * ChunkColumns.RECORD_SIZE;
+    }
+
+    /**
+     * Returns a view of the records of a run of columns inside the store. Filling the view writes into
+     * the store.
+     *
+     * @param firstColumn  The number of the first column.
+     * @param numOfColumns The number of columns.
+     * @return A view of the columns, or null if they are out of the range of the store.
+     */
+    public ChunkColumns columns(int firstColumn, int numOfColumns) {
+        int index = firstColumn - originColumn;
+        if (index < 0 || index + numOfColumns > this.numOfColumns) {
+            return null;
+        }
+        // the position of the mapping itself is never moved, so duplicating it is safe between threads
+        ByteBuffer view = mapping.duplicate();
+        view.position(HEADER_SIZE + index * ChunkColumns.RECORD_SIZE);
+        view.limit(view.position() + numOfColumns * ChunkColumns.RECORD_SIZE);
+        return new ChunkColumns(view.slice(), firstColumn, numOfColumns);
+    }
+
+    /**
+     * Flushes the store to disk and closes its file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        mapping.force();
+        channel.close();
+    }
+}
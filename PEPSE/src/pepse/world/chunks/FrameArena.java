@@ -0,0 +1,157 @@
+package pepse.world.chunks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps frames which were streamed out of the game in a compact encoding, inside a single off-heap buffer
+ * of a fixed budget. The buffer is divided into equal slots, one per frame, and when it is full the least
+ * recently stored frame is dropped. A frame read back is removed from the arena.
+ * <p>
+ * Slot layout (in bytes): number of columns (short), number of leaves (short), then for each column the
+ * ground height (short), trunk height, biome, surface material, tree archetype, variation and leaf count
+ * (bytes), and then for each leaf a falling flag (byte) and its phase in hundredths of a second (unsigned
+ * short). The leaves are in the order of their trees, so a tree is kept as its archetype alone.
+ */
+public class FrameArena {
+    /* Constants */
+    private static final int HEADER_SIZE = 4;
+    private static final int COLUMN_SIZE = 8;
+    private static final int LEAF_SIZE = 3;
+    // a frame usually has much fewer leaves (trees grow in one of twenty columns)
+    private static final int LEAVES_PER_COLUMN_CAPACITY = 8;
+    private static final float PHASE_RESOLUTION = 100;
+    private static final int MAX_PHASE = 0xFFFF;
+
+    /* Fields */
+    private final ByteBuffer arena;
+    private final int slotSize;
+    private final int columnsPerFrame;
+    private final int leafCapacity;
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    // frame minX to slot, from the least recently stored
+    private final LinkedHashMap<Integer, Integer> slotOfFrame = new LinkedHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param budgetBytes     The size of the off-heap buffer.
+     * @param columnsPerFrame The number of columns in every frame.
+     */
+    public FrameArena(int budgetBytes, int columnsPerFrame) {
+        this.columnsPerFrame = columnsPerFrame;
+        this.leafCapacity = columnsPerFrame * LEAVES_PER_COLUMN_CAPACITY;
+        this.slotSize = HEADER_SIZE + columnsPerFrame * COLUMN_SIZE + leafCapacity * LEAF_SIZE;
+        int numOfSlots = budgetBytes / slotSize;
+        this.arena = ByteBuffer.allocateDirect(numOfSlots * slotSize);
+        for (int slot = 0; slot < numOfSlots; slot++) {
+            freeSlots.push(slot);
+        }
+    }
+
+    /**
+     * Encodes a frame into the arena, dropping the oldest frame if there is no room.
+     *
+     * @param minX    The lower bound of the frame.
+     * @param columns The description of the columns of the frame.
+     * @param leaves  The state of the leaves of the frame.
+     * @return true if the frame was stored, false if it does not fit in a slot.
+     */
+    public synchronized boolean store(int minX, ChunkColumns columns, LeafStates leaves) {
+        if (columns.size() != columnsPerFrame || leaves.size() > leafCapacity
+                || slotSize > arena.capacity()) {
+            return false;
+        }
+        Integer slot = slotOfFrame.remove(minX);
+        if (slot == null) {
+            slot = freeSlots.isEmpty() ? evictOldest() : freeSlots.pop();
+        }
+
+        int index = slot * slotSize;
+        arena.putShort(index, (short) columns.size());
+        arena.putShort(index + 2, (short) leaves.size());
+        index += HEADER_SIZE;
+        for (int i = 0; i < columns.size(); i++) {
+            arena.putShort(index, (short) columns.getGroundHeight(i));
+            arena.put(index + 2, (byte) columns.getTrunkHeight(i));
+            arena.put(index + 3, (byte) columns.getBiome(i));
+            arena.put(index + 4, (byte) columns.getSurfaceMaterial(i));
+            arena.put(index + 5, (byte) columns.getArchetype(i));
+            arena.put(index + 6, (byte) columns.getVariation(i));
+            arena.put(index + 7, (byte) columns.getLeafCount(i));
+            index += COLUMN_SIZE;
+        }
+
+        for (int leaf = 0; leaf < leaves.size(); leaf++) {
+            arena.put(index, (byte) (leaves.isFalling(leaf) ? 1 : 0));
+            int phase = Math.min(MAX_PHASE, Math.round(leaves.getPhase(leaf) * PHASE_RESOLUTION));
+            arena.putShort(index + 1, (short) phase);
+            index += LEAF_SIZE;
+        }
+        slotOfFrame.put(minX, slot);
+        return true;
+    }
+
+    /**
+     * Decodes a frame out of the arena, and frees its slot. The block runs of the columns are not kept,
+     * and should be filled again from the ground heights.
+     *
+     * @param minX    The lower bound of the frame.
+     * @param columns Empty columns of the frame, to be filled.
+     * @return The state of the leaves of the frame, or null if the frame is not in the arena.
+     */
+    public synchronized LeafStates restore(int minX, ChunkColumns columns) {
+        Integer slot = slotOfFrame.remove(minX);
+        if (slot == null) {
+            return null;
+        }
+        freeSlots.push(slot);
+
+        int index = slot * slotSize;
+        int numOfLeaves = arena.getShort(index + 2);
+        index += HEADER_SIZE;
+        for (int i = 0; i < columns.size(); i++) {
+            columns.setGroundHeight(i, arena.getShort(index));
+            int trunkHeight = arena.get(index + 2);
+            if (trunkHeight > 0) {
+                columns.setTree(i, trunkHeight);
+            }
+            columns.setBiome(i, arena.get(index + 3));
+            columns.setSurfaceMaterial(i, arena.get(index + 4));
+            columns.setArchetype(i, arena.get(index + 5) & 0xFF);
+            columns.setVariation(i, arena.get(index + 6) & 0xFF);
+            columns.setLeafCount(i, arena.get(index + 7));
+            index += COLUMN_SIZE;
+        }
+
+        LeafStates leaves = new LeafStates(numOfLeaves);
+        for (int leaf = 0; leaf < numOfLeaves; leaf++) {
+            float phase = (arena.getShort(index + 1) & MAX_PHASE) / PHASE_RESOLUTION;
+            leaves.set(leaf, phase, arena.get(index) != 0);
+            index += LEAF_SIZE;
+        }
+        return leaves;
+    }
+
+    /**
+     * getter for the number of frames in the arena
+     *
+     * @return the number of stored frames
+     */
+    public synchronized int size() {
+        return slotOfFrame.size();
+    }
+
+    /*
+     * drops the least recently stored frame and returns its slot
+     */
+    private int evictOldest() {
+        Iterator<Map.Entry<Integer, Integer>> oldest = slotOfFrame.entrySet().iterator();
+        int slot = oldest.next().getValue();
+        oldest.remove();
+        return slot;
+    }
+}
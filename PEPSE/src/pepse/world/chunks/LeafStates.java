@@ -0,0 +1,62 @@
+package pepse.world.chunks;
+
+/**
+ * The state of the leaves of a frame, in the order of their trees and anchors: how long ago the movements
+ * of each leaf were scheduled, and whether it is falling.
+ */
+public class LeafStates {
+    /* Fields */
+    private final float[] phases;
+    private final boolean[] falling;
+
+    /**
+     * Constructor
+     *
+     * @param numOfLeaves the number of leaves in the frame
+     */
+    public LeafStates(int numOfLeaves) {
+        this.phases = new float[numOfLeaves];
+        this.falling = new boolean[numOfLeaves];
+    }
+
+    /**
+     * getter for the number of leaves
+     *
+     * @return the number of leaves
+     */
+    public int size() {
+        return phases.length;
+    }
+
+    /**
+     * getter for the phase of a leaf
+     *
+     * @param leaf index of the leaf in the frame
+     * @return the seconds since the movements of the leaf were scheduled
+     */
+    public float getPhase(int leaf) {
+        return phases[leaf];
+    }
+
+    /**
+     * Checks whether a leaf is falling
+     *
+     * @param leaf index of the leaf in the frame
+     * @return true if the leaf is falling
+     */
+    public boolean isFalling(int leaf) {
+        return falling[leaf];
+    }
+
+    /**
+     * setter for the state of a leaf
+     *
+     * @param leaf      index of the leaf in the frame
+     * @param phase     the seconds since the movements of the leaf were scheduled
+     * @param isFalling whether the leaf is falling
+     */
+    public void set(int leaf, float phase, boolean isFalling) {
+        phases[leaf] = phase;
+        falling[leaf] = isFalling;
+    }
+}
@@ -0,0 +1,161 @@
+package pepse.world.daynight;
+
+import danogl.GameObject;
+import danogl.components.Component;
+import danogl.util.Vector2;
+
+/**
+ * The single source of time for the day-night cycle. Once a frame, it moves the sun and its halo and sets
+ * the opaqueness of the night, all from tables which are computed once over the whole cycle. Without game
+ * objects, it only keeps the time, for other systems (such as a sky backdrop) to read.
+ */
+public class DayNightClock implements Component {
+    /* Constants */
+    /**
+     * Number of samples of the tables over a full cycle.
+     */
+    public static final int SAMPLES_PER_CYCLE = 3600;
+
+    private static final float INITIAL_ANGLE = 0f;
+    private static final float FINAL_ANGLE = 360f;
+    private static final float MIDNIGHT_OPACITY = 0.5f;
+    private static final float INITIAL_OPACITY = 0f;
+
+    /* Fields */
+    private final float cycleLength;
+    private final GameObject sun;
+    private final GameObject sunHalo;
+    private final GameObject night;
+    private final Vector2[] sunCenters = new Vector2[SAMPLES_PER_CYCLE];
+    private final float[] nightOpacities = new float[SAMPLES_PER_CYCLE];
+    // where the top-left corners of the sun and the halo go, so moving them creates no vectors
+    private final Vector2[] sunTopLeftCorners;
+    private final Vector2[] haloTopLeftCorners;
+    private float time;
+    private int sample = -1;
+
+    /**
+     * Constructor for a clock which does not move any game object
+     *
+     * @param windowDimensions The dimensions of the windows.
+     * @param cycleLength      The amount of seconds it takes to complete a full cycle.
+     */
+    public DayNightClock(Vector2 windowDimensions, float cycleLength) {
+        this(windowDimensions, cycleLength, null, null, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param windowDimensions The dimensions of the windows.
+     * @param cycleLength      The amount of seconds it takes to complete a full cycle.
+     * @param sun              The sun, which moves in an ellipse, or null if it is drawn by a backdrop.
+     * @param sunHalo          The halo of the sun, which follows it, or null with the sun.
+     * @param night            The night, which darkens and brightens the window, or null.
+     */
+    public DayNightClock(Vector2 windowDimensions, float cycleLength,
+                         GameObject sun, GameObject sunHalo, GameObject night) {
+        this.cycleLength = cycleLength;
+        this.sun = sun;
+        this.sunHalo = sunHalo;
+        this.night = night;
+        this.sunTopLeftCorners = sun == null ? null : new Vector2[SAMPLES_PER_CYCLE];
+        this.haloTopLeftCorners = sun == null ? null : new Vector2[SAMPLES_PER_CYCLE];
+
+        for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+            float cyclePart = (float) i / SAMPLES_PER_CYCLE;
+            sunCenters[i] = Sun.calcSunPosition(windowDimensions,
+                    INITIAL_ANGLE + cyclePart * (FINAL_ANGLE - INITIAL_ANGLE));
+
+            // the night darkens over half a day, and brightens back over the other half
+            float halfDayPart = cyclePart < 0.5f ? 2 * cyclePart : 2 * (1 - cyclePart);
+            nightOpacities[i] = cubicInterpolation(INITIAL_OPACITY, MIDNIGHT_OPACITY, halfDayPart);
+
+            if (sun != null) {
+                sunTopLeftCorners[i] = sunCenters[i].subtract(sun.getDimensions().mult(0.5f));
+                haloTopLeftCorners[i] = sunCenters[i].subtract(sunHalo.getDimensions().mult(0.5f));
+            }
+        }
+        update(0);
+    }
+
+    /**
+     * Advances the time, and moves the celestial objects to their place at that time.
+     *
+     * @param deltaTime time since the last frame
+     */
+    @Override
+    public void update(float deltaTime) {
+        time += deltaTime;
+        if (time >= cycleLength) {
+            time %= cycleLength;
+        }
+
+        int newSample = Math.min((int) (getTimeOfDay() * SAMPLES_PER_CYCLE), SAMPLES_PER_CYCLE - 1);
+        if (newSample == sample) {
+            return;
+        }
+        sample = newSample;
+        if (sun != null) {
+            sun.setTopLeftCorner(sunTopLeftCorners[sample]);
+            sunHalo.setTopLeftCorner(haloTopLeftCorners[sample]);
+        }
+        if (night != null) {
+            night.renderer().setOpaqueness(nightOpacities[sample]);
+        }
+    }
+
+    /**
+     * getter for the time of day
+     *
+     * @return the part of the cycle which passed, in [0, 1)
+     */
+    public float getTimeOfDay() {
+        return time / cycleLength;
+    }
+
+    /**
+     * getter for the world time
+     *
+     * @return the seconds which passed since the beginning of the current cycle
+     */
+    public float getTime() {
+        return time;
+    }
+
+    /**
+     * setter for the world time, which moves the celestial objects to their place at that time
+     *
+     * @param time the seconds since the beginning of a cycle
+     */
+    public void setTime(float time) {
+        this.time = time;
+        update(0);
+    }
+
+    /**
+     * getter for the center of the sun
+     *
+     * @return the current center of the sun, in camera coordinates
+     */
+    public Vector2 getSunCenter() {
+        return sunCenters[sample];
+    }
+
+    /**
+     * getter for the opaqueness of the night
+     *
+     * @return the current opaqueness of the night
+     */
+    public float getNightOpacity() {
+        return nightOpacities[sample];
+    }
+
+    /*
+     * the same interpolation as Transition.CUBIC_INTERPOLATOR_FLOAT
+     */
+    private static float cubicInterpolation(float initial, float last, float t) {
+        float delta = last - initial;
+        return -2 * delta * t * t * t + 3 * delta * t * t + initial;
+    }
+}
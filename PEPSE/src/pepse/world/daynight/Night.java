@@ -3,10 +3,9 @@ package pepse.world.daynight;
 import danogl.GameObject;
 import danogl.collisions.GameObjectCollection;
 import danogl.components.CoordinateSpace;
-import danogl.components.Transition;
-import danogl.gui.rendering.RectangleRenderable;
+import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
-import pepse.util.ColorSupplier;
+import pepse.util.Palette;
 
 import java.awt.*;
 
@@ -15,28 +14,27 @@ import java.awt.*;
  */
 public class Night {
     /* Constants */
-    private static final Float MIDNIGHT_OPACITY = 0.5f;
     private static final Float INITIAL_OPACITY = 0f;
     private static final String NIGHT_TAG = "night";
 
     /**
-     * This function creates a black rectangular game object that covers the entire game window and changes
-     * its opaqueness in a cyclic manner, in order to resemble day-to-night transitions.
+     * This function creates a black rectangular game object that covers the entire game window. Its
+     * opaqueness is changed in a cyclic manner by a DayNightClock, in order to resemble day-to-night
+     * transitions.
      *
      * @param gameObjects      The collection of all participating game objects.
      * @param layer            The number of the layer to which the created game object should be added.
      * @param windowDimensions The dimensions of the windows.
-     * @param cycleLength      The amount of seconds it should take the created game object to complete a full
-     *                         cycle.
+     * @param seed             The seed of the world, which picks the shade of the night.
      * @return A new game object representing day-to-night transitions.
      */
     public static GameObject create(
             GameObjectCollection gameObjects,
             int layer,
             Vector2 windowDimensions,
-            float cycleLength) {
+            int seed) {
 
-        RectangleRenderable blackRectangle = new RectangleRenderable(ColorSupplier.approximateColor(Color.BLACK));
+        Renderable blackRectangle = new Palette(Color.BLACK, seed).variantAt(0, 0);
 
         GameObject night = new GameObject(Vector2.ZERO, windowDimensions, blackRectangle);
         night.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
@@ -44,15 +42,7 @@ public class Night {
 
         night.setTag(NIGHT_TAG);
 
-        new Transition<>(
-                night, //the game object being changed
-                night.renderer()::setOpaqueness,  //the method to call
-                INITIAL_OPACITY,    //initial transition value
-                MIDNIGHT_OPACITY,   //final transition value
-                Transition.CUBIC_INTERPOLATOR_FLOAT,  //use a cubic interpolator
-                cycleLength / 2,   //transition fully over half a day
-                Transition.TransitionType.TRANSITION_BACK_AND_FORTH,
-                null);
+        night.renderer().setOpaqueness(INITIAL_OPACITY);
         return night;
     }
 
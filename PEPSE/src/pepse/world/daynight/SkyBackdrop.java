@@ -0,0 +1,175 @@
+package pepse.world.daynight;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.components.CoordinateSpace;
+import danogl.gui.rendering.Renderable;
+import danogl.util.Vector2;
+import pepse.world.Sky;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * The sky, the sun and its halo composited into a single image, which is drawn behind everything as one
+ * renderable. The image is redrawn at a limited rate, and only when the sun moved visibly since the last
+ * redraw. The night is not part of it: it stays an overlay in front of the world, which darkens the world
+ * as well as the sky.
+ */
+public class SkyBackdrop implements Renderable {
+    /* Constants */
+    private static final String BACKDROP_TAG = "sky backdrop";
+    private static final float MIN_SUN_MOVEMENT = 1;
+
+    /* Fields */
+    private final DayNightClock clock;
+    private final Color haloColor;
+    private final float redrawInterval;
+    private final float sunSize = Sun.SUN_RADIUS;
+    private final float haloSize = Sun.SUN_RADIUS * SunHalo.HALO_FACTOR;
+    // the sun in its halo over the sky, drawn once, and copied into the pixels of every redraw
+    private final int sunImageSize = (int) haloSize;
+    private final int[] sunPixels;
+    private BufferedImage backImage;
+    // swapped with the back image after each redraw, so a render never sees a half drawn image
+    private volatile BufferedImage frontImage;
+    // the pixels of each image, kept with it, which a redraw writes directly instead of through Java2D
+    private int[] backPixels;
+    private int[] frontPixels;
+    private float timeSinceRedraw;
+    private float drawnSunX = Float.NaN;
+    private float drawnSunY = Float.NaN;
+
+    /**
+     * Constructor
+     *
+     * @param windowDimensions The dimensions of the windows.
+     * @param clock            The clock of the day-night cycle.
+     * @param haloColor        The color of the sun's halo.
+     * @param redrawRate       The maximal number of redraws per second.
+     */
+    public SkyBackdrop(Vector2 windowDimensions, DayNightClock clock, Color haloColor, float redrawRate) {
+        this.clock = clock;
+        this.haloColor = haloColor;
+        this.redrawInterval = 1 / redrawRate;
+        this.backImage = new BufferedImage((int) windowDimensions.x(), (int) windowDimensions.y(),
+                BufferedImage.TYPE_INT_RGB);
+        this.frontImage = new BufferedImage((int) windowDimensions.x(), (int) windowDimensions.y(),
+                BufferedImage.TYPE_INT_RGB);
+        this.backPixels = pixelsOf(backImage);
+        this.frontPixels = pixelsOf(frontImage);
+        this.sunPixels = drawSun();
+        redraw();
+    }
+
+    /**
+     * This function creates the backdrop as a single game object which covers the window, at the back of it.
+     * The backdrop also advances the given clock.
+     *
+     * @param gameObjects      The collection of all participating game objects.
+     * @param layer            The number of the layer to which the backdrop should be added.
+     * @param windowDimensions The dimensions of the windows.
+     * @param clock            The clock of the day-night cycle.
+     * @param haloColor        The color of the sun's halo.
+     * @param redrawRate       The maximal number of redraws per second.
+     * @return A new game object representing the sky.
+     */
+    public static GameObject create(GameObjectCollection gameObjects, int layer, Vector2 windowDimensions,
+                                    DayNightClock clock, Color haloColor, float redrawRate) {
+        SkyBackdrop skyBackdrop = new SkyBackdrop(windowDimensions, clock, haloColor, redrawRate);
+        GameObject backdrop = new GameObject(Vector2.ZERO, windowDimensions, skyBackdrop);
+        backdrop.setCoordinateSpace(CoordinateSpace.CAMERA_COORDINATES);
+        backdrop.addComponent(clock);
+        backdrop.addComponent(skyBackdrop::redrawIfChanged);
+        gameObjects.addGameObject(backdrop, layer);
+        backdrop.setTag(BACKDROP_TAG);
+        return backdrop;
+    }
+
+    /**
+     * Redraws the backdrop, if enough time passed since the last redraw and the sun moved visibly.
+     *
+     * @param deltaTime time since the last frame
+     */
+    public void redrawIfChanged(float deltaTime) {
+        timeSinceRedraw += deltaTime;
+        if (timeSinceRedraw < redrawInterval) {
+            return;
+        }
+        Vector2 sunCenter = clock.getSunCenter();
+        if (Math.abs(sunCenter.x() - drawnSunX) < MIN_SUN_MOVEMENT
+                && Math.abs(sunCenter.y() - drawnSunY) < MIN_SUN_MOVEMENT) {
+            return;
+        }
+        redraw();
+    }
+
+    /**
+     * Draws the last composited image of the sky.
+     */
+    @Override
+    public void render(Graphics2D g, Vector2 topLeftCorner, Vector2 dimensions, double degreesCounterClockwise,
+                       boolean isFlippedHorizontally, boolean isFlippedVertically, double opaqueness) {
+        g.drawImage(frontImage, (int) topLeftCorner.x(), (int) topLeftCorner.y(),
+                (int) dimensions.x(), (int) dimensions.y(), null);
+    }
+
+    /*
+     * composites the sky at the current time into the back image, and swaps it to the front
+     */
+    private void redraw() {
+        Vector2 sunCenter = clock.getSunCenter();
+
+        int[] pixels = backPixels;
+        int width = backImage.getWidth();
+        int height = backImage.getHeight();
+        Arrays.fill(pixels, Sky.BASIC_SKY_COLOR.getRGB());
+        // the rows of the sun which are inside the image
+        int left = (int) (sunCenter.x() - haloSize / 2);
+        int top = (int) (sunCenter.y() - haloSize / 2);
+        int firstColumn = Math.max(0, -left);
+        int lastColumn = Math.min(sunImageSize, width - left);
+        for (int row = Math.max(0, -top); row < Math.min(sunImageSize, height - top)
+                && firstColumn < lastColumn; row++) {
+            System.arraycopy(sunPixels, row * sunImageSize + firstColumn,
+                    pixels, (top + row) * width + left + firstColumn, lastColumn - firstColumn);
+        }
+
+        BufferedImage drawnImage = backImage;
+        backImage = frontImage;
+        frontImage = drawnImage;
+        backPixels = frontPixels;
+        frontPixels = pixels;
+
+        drawnSunX = sunCenter.x();
+        drawnSunY = sunCenter.y();
+        timeSinceRedraw = 0;
+    }
+
+    /*
+     * draws the sun in the middle of its halo, over the sky, in a square of the halo's size, antialiased
+     */
+    private int[] drawSun() {
+        BufferedImage image = new BufferedImage(sunImageSize, sunImageSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Sky.BASIC_SKY_COLOR);
+        g.fillRect(0, 0, sunImageSize, sunImageSize);
+        g.setColor(haloColor);
+        g.fillOval(0, 0, sunImageSize, sunImageSize);
+        g.setColor(Color.YELLOW);
+        int sunOffset = (int) ((haloSize - sunSize) / 2);
+        g.fillOval(sunOffset, sunOffset, (int) sunSize, (int) sunSize);
+        g.dispose();
+        return pixelsOf(image);
+    }
+
+    /*
+     * the pixels of an image of TYPE_INT_RGB, which are written in place
+     */
+    private static int[] pixelsOf(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -13,7 +13,7 @@ import java.awt.*;
  * Represents the halo of sun.
  */
 public class SunHalo {
-    private static final float HALO_FACTOR = 2f;
+    static final float HALO_FACTOR = 2f;
     private static final String HALO_TAG = "sun halo";
 
     /**
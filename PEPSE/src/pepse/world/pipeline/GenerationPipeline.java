@@ -0,0 +1,227 @@
+package pepse.world.pipeline;
+
+import pepse.world.chunks.ChunkColumns;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Describes chunks of the world by running an ordered list of stages over their columns. The columns
+ * after every stage are cached per chunk, keyed by the seed and the versions of that stage and all the
+ * stages before it, so a chunk which is described again only runs the stages after the last cached one,
+ * and changing a stage only recomputes it and the stages after it. The cache keeps a bounded number of
+ * the most recently used outputs in memory, and once persisted, every output in a stage store on disk,
+ * so a changed stage reuses the outputs of the stages before it across runs too. Chunks may be described
+ * in parallel, and the time spent in every stage is summed up.
+ */
+public class GenerationPipeline implements Closeable {
+    /* Constants */
+    /**
+     * Number of stage outputs which are cached, unless given otherwise.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final double NANOS_IN_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /* Fields */
+    private final GenerationStage[] stages;
+    // the seed and the versions of every stage and the stages before it, which key its cached outputs
+    private final String[] stageKeys;
+    private final LongAdder[] stageNanos;
+    private final LongAdder[] stageRuns;
+    private final Map<String, byte[]> cache;
+    private final int cacheSize;
+    // the persistent outputs of every stage, or null if they are kept in memory only
+    private StageStore[] stores;
+
+    /**
+     * Constructor
+     *
+     * @param seed      The seed of the world.
+     * @param stages    The stages, in the order they run in.
+     * @param cacheSize The maximal number of cached stage outputs, or 0 not to cache.
+     */
+    public GenerationPipeline(int seed, List<GenerationStage> stages, int cacheSize) {
+        this.stages = stages.toArray(new GenerationStage[0]);
+        this.cacheSize = cacheSize;
+        this.stageKeys = new String[this.stages.length];
+        this.stageNanos = new LongAdder[this.stages.length];
+        this.stageRuns = new LongAdder[this.stages.length];
+        StringBuilder key = new StringBuilder().append(seed);
+        for (int s = 0; s < this.stages.length; s++) {
+            key.append('/').append(this.stages[s].getName()).append(this.stages[s].getVersion());
+            stageKeys[s] = key.toString();
+            stageNanos[s] = new LongAdder();
+            stageRuns[s] = new LongAdder();
+        }
+        this.cache = new LinkedHashMap<String, byte[]>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Keeps the output of every stage in a stage store in a directory, as well as in memory. The outputs
+     * stored by earlier runs are used from then on. Should be called before any chunk is described.
+     *
+     * @param directory    The directory of the stage stores.
+     * @param windowHeight The height of the window the world is generated for.
+     * @throws IOException If a store cannot be opened. No store is used then.
+     */
+    public void persistTo(Path directory, int windowHeight) throws IOException {
+        StageStore[] openedStores = new StageStore[stages.length];
+        try {
+            for (int s = 0; s < stages.length; s++) {
+                openedStores[s] = StageStore.open(directory, stageKeys[s], windowHeight);
+            }
+        } catch (IOException e) {
+            try {
+                closeStores(openedStores);
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        stores = openedStores;
+    }
+
+    /**
+     * Describes the columns of a chunk, starting after the last stage whose output is cached in memory or
+     * stored.
+     *
+     * @param columns The columns to fill.
+     */
+    public void fill(ChunkColumns columns) {
+        int firstStage = 0;
+        for (int s = stages.length - 1; s >= 0; s--) {
+            byte[] cached = getCached(cacheKey(s, columns));
+            if (cached != null) {
+                columns.restore(cached);
+                firstStage = s + 1;
+                break;
+            }
+            if (stores != null && stores[s].read(columns)) {
+                firstStage = s + 1;
+                break;
+            }
+        }
+
+        for (int s = firstStage; s < stages.length; s++) {
+            long startTime = System.nanoTime();
+            stages[s].fill(columns);
+            stageNanos[s].add(System.nanoTime() - startTime);
+            stageRuns[s].increment();
+            if (cacheSize > 0 || stores != null) {
+                byte[] records = columns.snapshot();
+                if (cacheSize > 0) {
+                    putCached(cacheKey(s, columns), records);
+                }
+                if (stores != null) {
+                    stores[s].write(records, columns);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the stage stores, if the pipeline was persisted. The outputs are kept in memory
+     * only from then on.
+     *
+     * @throws IOException If a store cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        StageStore[] closedStores = stores;
+        stores = null;
+        if (closedStores != null) {
+            closeStores(closedStores);
+        }
+    }
+
+    /**
+     * getter for the time spent in a stage
+     *
+     * @param stage index of the stage
+     * @return the total nanoseconds spent in the stage, over all chunks
+     */
+    public long getStageNanos(int stage) {
+        return stageNanos[stage].sum();
+    }
+
+    /**
+     * getter for the number of times a stage ran
+     *
+     * @param stage index of the stage
+     * @return the number of chunks the stage ran over (chunks restored from the cache are not counted)
+     */
+    public long getStageRuns(int stage) {
+        return stageRuns[stage].sum();
+    }
+
+    /**
+     * Summarizes the time spent in every stage.
+     *
+     * @return a line per stage, with the number of chunks it ran over and its total time
+     */
+    public String timingReport() {
+        StringBuilder report = new StringBuilder();
+        for (int s = 0; s < stages.length; s++) {
+            report.append(String.format("%-12s %8d chunks %10.3f ms%n", stages[s].getName(),
+                    getStageRuns(s), getStageNanos(s) / NANOS_IN_MILLI));
+        }
+        return report.toString();
+    }
+
+    /*
+     * closes every opened store of an array, and throws the first failure
+     */
+    private static void closeStores(StageStore[] storesToClose) throws IOException {
+        IOException failure = null;
+        for (StageStore store : storesToClose) {
+            if (store == null) {
+                continue;
+            }
+            try {
+                store.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /*
+     * the key of the output of a stage over a chunk
+     */
+    private String cacheKey(int stage, ChunkColumns columns) {
+        return stageKeys[stage] + '@' + columns.getFirstColumn() + '+' + columns.size();
+    }
+
+    /*
+     * the cached output of a stage over a chunk, or null
+     */
+    private byte[] getCached(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /*
+     * caches the output of a stage over a chunk, dropping the least recently used output if it is full
+     */
+    private void putCached(String key, byte[] records) {
+        synchronized (cache) {
+            cache.put(key, records);
+        }
+    }
+}
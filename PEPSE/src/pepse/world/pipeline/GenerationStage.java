@@ -0,0 +1,57 @@
+package pepse.world.pipeline;
+
+import pepse.world.chunks.ChunkColumns;
+
+import java.util.function.Consumer;
+
+/**
+ * A single stage of the world generation, which fills some of the fields of a chunk's columns from the
+ * fields that the stages before it filled.
+ */
+public class GenerationStage {
+    /* Fields */
+    private final String name;
+    private final int version;
+    private final Consumer<ChunkColumns> filler;
+
+    /**
+     * Constructor
+     *
+     * @param name    The name of the stage, for its timing.
+     * @param version The version of the stage. Should be increased whenever the output of the stage
+     *                changes, so cached outputs of this stage and the stages after it are not used.
+     * @param filler  Fills the columns of a chunk. Must be safe to run on several chunks in parallel.
+     */
+    public GenerationStage(String name, int version, Consumer<ChunkColumns> filler) {
+        this.name = name;
+        this.version = version;
+        this.filler = filler;
+    }
+
+    /**
+     * Runs the stage over the columns of a chunk.
+     *
+     * @param columns The columns to fill.
+     */
+    public void fill(ChunkColumns columns) {
+        filler.accept(columns);
+    }
+
+    /**
+     * getter for the name of the stage
+     *
+     * @return the name of the stage
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * getter for the version of the stage
+     *
+     * @return the version of the stage
+     */
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,155 @@
+package pepse.world.pipeline;
+
+import pepse.world.chunks.ChunkColumns;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A persistent store of the output of a single generation stage, kept in a memory-mapped file which is
+ * indexed by the column number, the same as a chunk store. Every column has a byte which tells whether its
+ * record was stored, ahead of the records, so a stage output never looks like a complete column.
+ * <p>
+ * The file name contains the key of the stage (the seed, and the names and versions of the stage and the
+ * stages before it) and the window height, so changing any of them starts a fresh store, while the
+ * stores of the stages before a changed one are still used.
+ */
+public class StageStore implements Closeable {
+    /* Constants */
+    /**
+     * Number of columns on each side of column 0 that can be stored.
+     */
+    public static final int COLUMNS_PER_SIDE = 1 << 17;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x50455354; // "PEST"
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_NAME_FORMAT = "stage-%s-%d.bin";
+    private static final int SLOT_SIZE = 1 + ChunkColumns.RECORD_SIZE;
+    private static final byte STORED = 1;
+
+    /* Fields */
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+
+    /*
+     * private constructor, use open
+     */
+    private StageStore(FileChannel channel, MappedByteBuffer mapping) {
+        this.channel = channel;
+        this.mapping = mapping;
+    }
+
+    /**
+     * Opens (or creates) the store of a stage.
+     *
+     * @param directory    The directory of the store files.
+     * @param stageKey     The key of the stage's outputs, which only holds letters, digits and separators.
+     * @param windowHeight The height of the window the world is generated for.
+     * @return An open stage store.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public static StageStore open(Path directory, String stageKey, int windowHeight) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format(FILE_NAME_FORMAT,
+                stageKey.replaceAll("[^A-Za-z0-9-]", "_"), windowHeight));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean isValid = channel.size() == storeSize();
+        if (isValid) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            isValid = header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+        }
+        if (!isValid) {
+            // the file is sparse, so starting over is cheap
+            channel.truncate(0);
+        }
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, storeSize());
+        if (!isValid) {
+            mapping.putInt(4, FORMAT_VERSION);
+            mapping.putInt(0, MAGIC);
+        }
+        return new StageStore(channel, mapping);
+    }
+
+    /**
+     * Reads the stored output of the stage over a run of columns.
+     *
+     * @param columns The columns to overwrite with the stored records.
+     * @return true if every column was stored and was read, false if the columns were left as they were
+     */
+    public boolean read(ChunkColumns columns) {
+        int firstSlot = slotOf(columns.getFirstColumn());
+        if (firstSlot < 0 || firstSlot + columns.size() > 2 * COLUMNS_PER_SIDE) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (mapping.get(HEADER_SIZE + (firstSlot + i) * SLOT_SIZE) != STORED) {
+                return false;
+            }
+        }
+        byte[] records = new byte[columns.size() * ChunkColumns.RECORD_SIZE];
+        // the position of the mapping itself is never moved, so duplicating it is safe between threads
+        ByteBuffer view = mapping.duplicate();
+        for (int i = 0; i < columns.size(); i++) {
+            view.position(HEADER_SIZE + (firstSlot + i) * SLOT_SIZE + 1);
+            view.get(records, i * ChunkColumns.RECORD_SIZE, ChunkColumns.RECORD_SIZE);
+        }
+        columns.restore(records);
+        return true;
+    }
+
+    /**
+     * Stores the output of the stage over a run of columns. Columns out of the range of the store are
+     * not stored.
+     *
+     * @param records The records of the columns, as taken by ChunkColumns.snapshot.
+     * @param columns The columns the records were taken of.
+     */
+    public void write(byte[] records, ChunkColumns columns) {
+        int firstSlot = slotOf(columns.getFirstColumn());
+        if (firstSlot < 0 || firstSlot + columns.size() > 2 * COLUMNS_PER_SIDE) {
+            return;
+        }
+        ByteBuffer view = mapping.duplicate();
+        for (int i = 0; i < columns.size(); i++) {
+            int slot = HEADER_SIZE + (firstSlot + i) * SLOT_SIZE;
+            view.position(slot + 1);
+            view.put(records, i * ChunkColumns.RECORD_SIZE, ChunkColumns.RECORD_SIZE);
+            // marked only after the record, so a column is never read half written
+            view.put(slot, STORED);
+        }
+    }
+
+    /**
+     * Flushes the store to disk and closes its file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        mapping.force();
+        channel.close();
+    }
+
+    /*
+     * the index of the slot of a column
+     */
+    private static int slotOf(int column) {
+        return column + COLUMNS_PER_SIDE;
+    }
+
+    /*
+     * the size in bytes of a store
+     */
+    private static long storeSize() {
+        return HEADER_SIZE + 2L * COLUMNS_PER_SIDE * SLOT_SIZE;
+    }
+}
@@ -2,7 +2,6 @@ package pepse.world.trees;
 
 import danogl.GameObject;
 import danogl.collisions.Collision;
-import danogl.components.Transition;
 import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
 
@@ -26,10 +25,44 @@ public class Leaf extends GameObject {
      */
     public static final String LEAF_FALLING_TAG = "falling leaf";
 
-    /* Transition */
-    private Transition<Float> angleTransition;
-    private Transition<Float> widthTransition;
-    private Transition<Float> horizontalTransitionInFall;
+    private static final float INITIAL_ANGLE = 0;
+    private static final float FINAL_ANGLE = 40;
+    private static final float ANGLE_CYCLE = 6;
+    private static final float WIDTH_CYCLE = ANGLE_CYCLE / 2;
+    private static final float MAX_WIDTH_CHANGE = SIZE / 3;
+    // the widths of the sway, a pixel apart, shared by all the leaves so a swaying leaf creates no vectors
+    private static final Vector2[] SWAY_DIMENSIONS = new Vector2[(int) MAX_WIDTH_CHANGE + 1];
+
+    static {
+        for (int widthChange = 0; widthChange < SWAY_DIMENSIONS.length; widthChange++) {
+            SWAY_DIMENSIONS[widthChange] = new Vector2(SIZE - widthChange, SIZE);
+        }
+    }
+
+    /* Movements */
+    // the movements are advanced from primitive fields in update, so a moving leaf allocates nothing
+    private boolean isSwaying;
+    private float swayTime;
+    // seconds between redraws of the sway, 0 to redraw it every frame
+    private float swayInterval;
+    private float swayRedrawTime;
+    private int swayWidthChange;
+    private boolean isFallSwaying;
+    private float fallSwayTime;
+    private float fallSwayVelocity;
+    private float fallSwayCycle;
+    private boolean isFading;
+    private float fadeTime;
+    private float fadeLength;
+    private float initialOpaqueness;
+    private float finalOpaqueness;
+    private Runnable onFadeEnd;
+    // a single pending task of the leaf, such as its next fall, which needs no component
+    private float scheduledDelay;
+    private Runnable scheduledTask;
+
+    /* Fields */
+    private float phase;
 
     /**
      * Constructor
@@ -42,33 +75,150 @@ public class Leaf extends GameObject {
     }
 
     /**
-     * Sets the different transitions
+     * Starts swaying the leaf in the wind from its initial angle and width: the angle goes back and
+     * forth, and the width shrinks and grows back twice as fast.
+     */
+    public void startSway() {
+        isSwaying = true;
+        swayTime = 0;
+    }
+
+    /**
+     * setter for the rate of the sway: the sway keeps its time, but the angle and width of the leaf are
+     * only redrawn once in a given interval, which saves their updates on slow machines.
+     *
+     * @param swayInterval the seconds between redraws of the sway, 0 to redraw it every frame
+     */
+    public void setSwayInterval(float swayInterval) {
+        this.swayInterval = swayInterval;
+    }
+
+    /**
+     * Starts moving the leaf sideways during its fall: its horizontal velocity goes from the given
+     * velocity to its opposite and back.
+     *
+     * @param velocityX the initial horizontal velocity
+     * @param cycle     the seconds it takes to reach the opposite velocity
+     */
+    public void startFallSway(float velocityX, float cycle) {
+        isFallSwaying = true;
+        fallSwayTime = 0;
+        fallSwayVelocity = velocityX;
+        fallSwayCycle = cycle;
+    }
+
+    /**
+     * Fades the leaf linearly from its current opaqueness.
+     *
+     * @param opaqueness the final opaqueness
+     * @param fadeLength the seconds the fade takes
+     * @param onFadeEnd  called once the fade ends, or null
+     */
+    public void fadeTo(float opaqueness, float fadeLength, Runnable onFadeEnd) {
+        fadeTo(opaqueness, fadeLength, 0, onFadeEnd);
+    }
+
+    /**
+     * Fades the leaf linearly from its current opaqueness, continuing a fade which already started.
      *
-     * @param angleTransition the transition on the angle of the leaf
-     * @param widthTransition the transition on the width of the leaf
+     * @param opaqueness the final opaqueness
+     * @param fadeLength the seconds the whole fade takes
+     * @param elapsed    the seconds of the fade which already passed
+     * @param onFadeEnd  called once the fade ends, or null
      */
-    public void setTransitions(Transition<Float> angleTransition, Transition<Float> widthTransition) {
-        this.angleTransition = angleTransition;
-        this.widthTransition = widthTransition;
+    public void fadeTo(float opaqueness, float fadeLength, float elapsed, Runnable onFadeEnd) {
+        this.isFading = true;
+        this.fadeTime = elapsed;
+        this.fadeLength = fadeLength;
+        this.initialOpaqueness = renderer().getOpaqueness();
+        this.finalOpaqueness = opaqueness;
+        this.onFadeEnd = onFadeEnd;
     }
 
     /**
-     * setter for the horizontal movement of the leaf during its fall
+     * Schedules a task of the leaf, instead of the one which was scheduled before, if any.
      *
-     * @param horizontalTransitionInFall the transition on the horizontal velocity of the leaf
+     * @param delay the seconds until the task runs
+     * @param task  the task, which may schedule the next one
      */
-    public void setFallTransition(Transition<Float> horizontalTransitionInFall) {
-        this.horizontalTransitionInFall = horizontalTransitionInFall;
+    public void schedule(float delay, Runnable task) {
+        this.scheduledDelay = delay;
+        this.scheduledTask = task;
     }
 
+    /**
+     * getter for the phase of the leaf
+     *
+     * @return the seconds since the movements of the leaf were scheduled
+     */
+    public float getPhase() {
+        return phase;
+    }
+
+    /**
+     * setter for the phase of the leaf, when its movements are scheduled
+     *
+     * @param phase the seconds since the movements of the leaf were scheduled
+     */
+    public void setPhase(float phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Advances the phase of the leaf
+     *
+     * @param deltaTime time since the last frame
+     */
+    @Override
+    public void update(float deltaTime) {
+        super.update(deltaTime);
+        phase += deltaTime;
+
+        if (scheduledTask != null) {
+            scheduledDelay -= deltaTime;
+            if (scheduledDelay <= 0) {
+                Runnable task = scheduledTask;
+                scheduledTask = null;
+                task.run();
+            }
+        }
+        if (isSwaying) {
+            swayTime += deltaTime;
+            swayRedrawTime += deltaTime;
+        }
+        if (isSwaying && swayRedrawTime >= swayInterval) {
+            swayRedrawTime = 0;
+            renderer().setRenderableAngle(INITIAL_ANGLE +
+                    (FINAL_ANGLE - INITIAL_ANGLE) * backAndForth(swayTime, ANGLE_CYCLE));
+            int widthChange = Math.round(MAX_WIDTH_CHANGE * backAndForth(swayTime, WIDTH_CYCLE));
+            if (widthChange != swayWidthChange) {
+                swayWidthChange = widthChange;
+                setDimensions(SWAY_DIMENSIONS[widthChange]);
+            }
+        }
+        if (isFallSwaying) {
+            fallSwayTime += deltaTime;
+            transform().setVelocityX(fallSwayVelocity * (1 - 2 * backAndForth(fallSwayTime, fallSwayCycle)));
+        }
+        if (isFading) {
+            fadeTime += deltaTime;
+            float fadePart = Math.min(1, fadeTime / fadeLength);
+            renderer().setOpaqueness(initialOpaqueness + (finalOpaqueness - initialOpaqueness) * fadePart);
+            if (fadePart == 1) {
+                isFading = false;
+                if (onFadeEnd != null) {
+                    onFadeEnd.run();
+                }
+            }
+        }
+    }
 
     /**
-     * removes the previous transitions
+     * Stops the swaying of the leaf, and its sideways movement if it is falling
      */
-    public void removeTransitions() {
-        this.removeComponent(horizontalTransitionInFall);
-        this.removeComponent(widthTransition);
-        this.removeComponent(angleTransition);
+    public void stopMovements() {
+        isSwaying = false;
+        isFallSwaying = false;
     }
 
     /**
@@ -85,9 +235,15 @@ public class Leaf extends GameObject {
         super.onCollisionEnter(other, collision);
         this.setVelocity(Vector2.ZERO);
         this.transform().setVelocityX(0);
-        this.removeComponent(horizontalTransitionInFall);
-        this.removeComponent(widthTransition);
-        this.removeComponent(angleTransition);
+        stopMovements();
+    }
+
+    /*
+     * goes linearly from 0 to 1 over a cycle, and back to 0 over the next one
+     */
+    private static float backAndForth(float time, float cycle) {
+        float cyclePart = (time % (2 * cycle)) / cycle;
+        return cyclePart <= 1 ? cyclePart : 2 - cyclePart;
     }
 
     /**
@@ -1,13 +1,20 @@
 package pepse.world.trees;
 
 import danogl.GameObject;
-import danogl.collisions.GameObjectCollection;
-import danogl.gui.rendering.RectangleRenderable;
+import danogl.collisions.LayerManager;
 import danogl.util.Vector2;
-import pepse.util.ColorSupplier;
+import pepse.util.Palette;
+import pepse.world.Biome;
 import pepse.world.Block;
+import pepse.world.MemoryBudget;
+import pepse.world.MutationQueue;
+import pepse.world.SpatialIndex;
+import pepse.world.WorldAuditor;
+import pepse.world.chunks.ChunkColumns;
+import pepse.world.chunks.LeafStates;
 
 import java.awt.*;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
@@ -19,11 +26,8 @@ import java.util.function.Function;
  */
 public class Tree {
     /* Constants */
-    private static final int BASIC_TREE_HEIGHT = 10;
-    private static final int TREE_HEIGHT_RANGE = 7;
     private static final String TREE_TAG = "tree";
     private static final int PLANT_BOUND = 100;
-    private static final int PLANT_CHANCES = 5;
 
     /* World */
     private final int layer;
@@ -36,42 +40,53 @@ public class Tree {
     /* Rendering */
     private static final Color TRUNK_COLOR = new Color(100, 50, 20);
     private static final Color LEAVES_COLOR = new Color(50, 200, 30);
-    private final RectangleRenderable trunkRectangle = new RectangleRenderable(ColorSupplier.approximateColor(TRUNK_COLOR));
-    private final RectangleRenderable leafRectangle = new RectangleRenderable(ColorSupplier.approximateColor(LEAVES_COLOR));
+    private final Palette trunkPalette;
+    private final Palette leafPalette;
+    private final TreeArchetypes archetypes;
 
     /* Fields */
     private final Vector2 windowDimensions;
-    private final GameObjectCollection gameObjects;
+    private final MutationQueue mutations;
     private final Function<Float, Float> height;
     private final Map<Integer, HashSet<Object>> treeInX = new Hashtable<>();
+    private SpatialIndex spatialIndex;
+
+    /* Quality */
+    // read by the threads which build the trees
+    private volatile float leafDensity = 1;
+    private volatile float leafSwayInterval;
 
     /**
      * Constructor for tree
      *
-     * @param gameObjects      gameObject manager
+     * @param mutations        the queue which adds the trees to the game
      * @param layer            the layer to put the tree in
      * @param groundLayer      the layer of the ground
      * @param windowDimensions the dimensions of the window
      * @param seed             the randomness seed
      * @param height           function which calculates the height of the terrain in a given x
      */
-    public Tree(GameObjectCollection gameObjects,
+    public Tree(MutationQueue mutations,
                 int layer,
                 int groundLayer,
                 Vector2 windowDimensions,
                 int seed,
                 Function<Float, Float> height) {
-        this.gameObjects = gameObjects;
+        this.mutations = mutations;
         this.layer = layer;
         this.groundLayer = groundLayer;
         this.windowDimensions = windowDimensions;
         this.seed = seed;
         this.height = height;
+        this.trunkPalette = new Palette(TRUNK_COLOR, seed);
+        this.leafPalette = new Palette(LEAVES_COLOR, seed);
+        this.archetypes = new TreeArchetypes(seed);
 //        this.noiseGenerator = new NoiseGenerator(seed);
     }
 
     /**
-     * a setter for the leaves layers
+     * a setter for the leaves layers, which also sets the collisions of those layers once for all the
+     * leaves: leaves do not collide with each other, and falling leaves land on the ground
      *
      * @param leavesLayer        the layer for leaves on tree
      * @param fallingLeavesLayer the layer for falling leaves
@@ -79,9 +94,64 @@ public class Tree {
     public void setLeavesLayers(int leavesLayer, int fallingLeavesLayer) {
         this.leavesLayer = leavesLayer;
         this.fallingLeavesLayer = fallingLeavesLayer;
+        if (mutations != null) {
+            LayerManager layers = mutations.getGameObjects().layers();
+            layers.shouldLayersCollide(leavesLayer, leavesLayer, false);
+            layers.shouldLayersCollide(fallingLeavesLayer, groundLayer, true);
+            layers.shouldLayersCollide(fallingLeavesLayer, leavesLayer, false);
+        }
     }
 
 
+    /**
+     * a setter for the index which the trees in the game and their leaves are kept in. Must be called
+     * before any tree is added to the game.
+     *
+     * @param spatialIndex the index of the live objects of the world, or null for none
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * a setter for the part of the leaf anchors of every tree top which get a leaf. It applies to the
+     * trees which are built from now on.
+     *
+     * @param leafDensity the part of the anchors which get a leaf, between 0 and 1
+     */
+    public void setLeafDensity(float leafDensity) {
+        this.leafDensity = leafDensity;
+    }
+
+    /**
+     * a setter for the rate of the sway of the leaves, of the trees in the game and of the ones which are
+     * built from now on
+     *
+     * @param leafSwayInterval the seconds between redraws of the sway, 0 to redraw it every frame
+     */
+    public void setLeafSwayInterval(float leafSwayInterval) {
+        this.leafSwayInterval = leafSwayInterval;
+        for (HashSet<Object> tree : treeInX.values()) {
+            for (Object part : tree) {
+                if (part instanceof TreeTop) {
+                    ((TreeTop) part).setSwayInterval(leafSwayInterval);
+                }
+            }
+        }
+    }
+
+    /**
+     * a setter for whether falling leaves land on the ground, or fall through it while they fade out.
+     * Must be called after setLeavesLayers.
+     *
+     * @param collide true if falling leaves collide with the ground
+     */
+    public void setFallingLeavesCollide(boolean collide) {
+        if (mutations != null) {
+            mutations.getGameObjects().layers().shouldLayersCollide(fallingLeavesLayer, groundLayer, collide);
+        }
+    }
+
     /**
      * This method creates trees in a given range of x-values.
      *
@@ -94,27 +164,263 @@ public class Tree {
         // in a way that minX and maxX is a multiple of Block.SIZE
         minX = minX % Block.SIZE == 0 ? minX : (int) (minX - Block.SIZE - (minX % Block.SIZE));
 
-        for (int x = minX; x < maxX; x += Block.SIZE) {
-            if (toPlant(x)) {
-                HashSet<Object> set = new HashSet<>();
+        int firstColumn = (int) Math.floor(minX / Block.SIZE);
+        ChunkColumns columns = new ChunkColumns(firstColumn, (int) Math.ceil((maxX - minX) / Block.SIZE));
+        for (int i = 0; i < columns.size(); i++) {
+            columns.setGroundHeight(i, height.apply((float) columns.columnX(i)));
+        }
+        fillColumns(columns);
+        attach(generateInRange(columns));
+    }
 
-                int treeHeight = (int) ((windowDimensions.y() - height.apply((float) x)) / Block.SIZE) + 2;
-                int treeTopHeight = BASIC_TREE_HEIGHT + (int) (TREE_HEIGHT_RANGE * new Random(x).nextFloat());
+    /**
+     * This method describes the trees of the given columns: where a tree is planted, its archetype and
+     * its variation. The ground heights of the columns must already be filled.
+     *
+     * @param columns The columns to fill.
+     */
+    public void fillColumns(ChunkColumns columns) {
+        plantColumns(columns);
+        fillTreeTops(columns);
+    }
 
-                for (int i = 1; i <= treeTopHeight; i++) {
-                    GameObject treeBark = new Block(new Vector2(x, windowDimensions.y() -
-                            (treeHeight + i) * Block.SIZE), trunkRectangle);
+    /**
+     * This method decides where trees are planted in the given columns, by the density of their biome,
+     * and the archetype of every tree, which its trunk height is taken from. The biomes of the columns
+     * must already be filled.
+     *
+     * @param columns The columns to fill.
+     */
+    public void plantColumns(ChunkColumns columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            int x = columns.columnX(i);
+            if (toPlant(x, Biome.fromId(columns.getBiome(i)))) {
+                int archetype = archetypes.pick(x);
+                columns.setTree(i, archetypes.getTrunkHeight(archetype));
+                columns.setArchetype(i, archetype);
+            }
+        }
+    }
 
-                    gameObjects.addGameObject(treeBark, layer);
-                    treeBark.setTag(TREE_TAG);
-                    set.add(treeBark);
+    /**
+     * This method describes the tops of the trees which are planted in the given columns: the number of
+     * their leaves, by their archetypes, and the variation of every tree from its archetype. The trees of
+     * the columns must already be filled.
+     *
+     * @param columns The columns to fill.
+     */
+    public void fillTreeTops(ChunkColumns columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.hasTree(i)) {
+                columns.setLeafCount(i, archetypes.getLeafCount(columns.getArchetype(i)));
+                columns.setVariation(i, archetypes.variationAt(columns.columnX(i)));
+            }
+        }
+    }
+
+    /**
+     * This method builds the trees of the given columns without adding them to the game.
+     * It does not touch any shared state, so it can safely run on a background thread.
+     *
+     * @param columns The description of the columns, as filled by fillColumns.
+     * @return A map between every x where a tree is planted and the parts of that tree.
+     */
+    public Map<Integer, HashSet<Object>> generateInRange(ChunkColumns columns) {
+        return generateInRange(columns, null);
+    }
+
+    /**
+     * This method builds the trees of the given columns without adding them to the game, continuing the
+     * state their leaves had when the columns were streamed out.
+     *
+     * @param columns     The description of the columns.
+     * @param leafStates  The state of the leaves of the columns, or null for new leaves.
+     * @return A map between every x where a tree is planted and the parts of that tree.
+     */
+    public Map<Integer, HashSet<Object>> generateInRange(ChunkColumns columns, LeafStates leafStates) {
+        Map<Integer, HashSet<Object>> trees = new HashMap<>();
+        int firstLeafState = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.hasTree(i)) {
+                int x = columns.columnX(i);
+                HashSet<Object> set = new HashSet<>();
+
+                int treeHeight = treeBaseHeight(columns, i);
+                int treeTopHeight = columns.getTrunkHeight(i);
+
+                for (int j = 1; j <= treeTopHeight; j++) {
+                    set.add(barkBlock(x, treeHeight, j));
                 }
 
-                Vector2 treeTopVector = new Vector2(x, windowDimensions.y() - (treeHeight + treeTopHeight) * Block.SIZE);
-                TreeTop treeTop = new TreeTop(treeTopVector, leafRectangle, seed);
-                treeTop.create(gameObjects, leavesLayer, fallingLeavesLayer, groundLayer);
+                TreeTop treeTop = new TreeTop(treeTopLocation(columns, i), leafPalette, archetypes);
+                treeTop.build(columns, i, leafStates, firstLeafState, leafDensity);
+                treeTop.setSwayInterval(leafSwayInterval);
+                firstLeafState += columns.getLeafCount(i);
                 set.add(treeTop);
-                treeInX.put(x, set);
+                trees.put(x, set);
+            }
+        }
+        return trees;
+    }
+
+    /**
+     * Collects the state of the leaves of the trees in the given columns, which are in the game.
+     *
+     * @param columns The description of the columns.
+     * @return The state of the leaves, in the order of the columns and the anchors.
+     */
+    public LeafStates getLeafStates(ChunkColumns columns) {
+        int numOfLeaves = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            numOfLeaves += columns.getLeafCount(i);
+        }
+
+        LeafStates leafStates = new LeafStates(numOfLeaves);
+        int firstLeafState = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            HashSet<Object> tree = treeInX.get(columns.columnX(i));
+            if (tree == null) {
+                continue;
+            }
+            for (Object part : tree) {
+                if (part instanceof TreeTop) {
+                    ((TreeTop) part).getLeafStates(leafStates, firstLeafState);
+                }
+            }
+            firstLeafState += columns.getLeafCount(i);
+        }
+        return leafStates;
+    }
+
+    /**
+     * Counts the leaves of the trees in the given columns, which are in the game, falling or not.
+     *
+     * @param columns The description of the columns.
+     * @return The number of leaves.
+     */
+    public int countLeaves(ChunkColumns columns) {
+        int numOfLeaves = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            TreeTop treeTop = treeTopInX(columns.columnX(i));
+            if (treeTop != null) {
+                numOfLeaves += treeTop.getNumOfLeaves();
+            }
+        }
+        return numOfLeaves;
+    }
+
+    /**
+     * Counts the falling leaves of the trees in the given columns, which are in the game.
+     *
+     * @param columns The description of the columns.
+     * @return The number of falling leaves.
+     */
+    public int countFallingLeaves(ChunkColumns columns) {
+        int numOfFallingLeaves = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            TreeTop treeTop = treeTopInX(columns.columnX(i));
+            if (treeTop != null) {
+                numOfFallingLeaves += treeTop.getNumOfFallingLeaves();
+            }
+        }
+        return numOfFallingLeaves;
+    }
+
+    /**
+     * This method replaces the trunk of every tree in the given columns, which are in the game, by a
+     * single object which stands for all its blocks, or splits such an object back into separate blocks.
+     *
+     * @param columns The description of the columns.
+     * @param merged  true to merge the trunks, false to split them.
+     */
+    public void setTrunksMerged(ChunkColumns columns, boolean merged) {
+        for (int i = 0; i < columns.size(); i++) {
+            int x = columns.columnX(i);
+            HashSet<Object> tree = treeInX.get(x);
+            if (tree == null) {
+                continue;
+            }
+
+            unindexTrunk(tree);
+            for (Object part : tree) {
+                if (part instanceof GameObject) {
+                    mutations.remove((GameObject) part, layer);
+                }
+            }
+            tree.removeIf(part -> part instanceof GameObject);
+            int treeHeight = treeBaseHeight(columns, i);
+            int treeTopHeight = columns.getTrunkHeight(i);
+            if (merged) {
+                int barkY = (int) (windowDimensions.y() - (treeHeight + treeTopHeight) * Block.SIZE);
+                GameObject trunk = new Block(new Vector2(x, barkY), treeTopHeight,
+                        trunkPalette.variantAt(x, barkY));
+                trunk.setTag(TREE_TAG);
+                mutations.add(trunk, layer);
+                tree.add(trunk);
+            } else {
+                for (int j = 1; j <= treeTopHeight; j++) {
+                    GameObject treeBark = barkBlock(x, treeHeight, j);
+                    mutations.add(treeBark, layer);
+                    tree.add(treeBark);
+                }
+            }
+            indexTrunk(tree);
+        }
+    }
+
+    /**
+     * This method removes the leaves of the trees in the given columns from the game, or adds them back.
+     * The trees themselves are kept, and so is the state of their leaves.
+     *
+     * @param columns  The description of the columns.
+     * @param attached true to add the leaves back, false to remove them.
+     */
+    public void setLeavesAttached(ChunkColumns columns, boolean attached) {
+        for (int i = 0; i < columns.size(); i++) {
+            TreeTop treeTop = treeTopInX(columns.columnX(i));
+            if (treeTop == null) {
+                continue;
+            }
+            if (attached) {
+                treeTop.reattach();
+            } else {
+                treeTop.remove(mutations);
+            }
+        }
+    }
+
+    /**
+     * Adds trees that were built by generateInRange to the game.
+     *
+     * @param trees A map between x values and the parts of the tree planted there.
+     */
+    public void attach(Map<Integer, HashSet<Object>> trees) {
+        for (Map.Entry<Integer, HashSet<Object>> tree : trees.entrySet()) {
+            for (Object part : tree.getValue()) {
+                if (part instanceof TreeTop) {
+                    ((TreeTop) part).attach(mutations, spatialIndex, leavesLayer, fallingLeavesLayer);
+                } else {
+                    mutations.add((GameObject) part, layer);
+                }
+            }
+            indexTrunk(tree.getValue());
+            treeInX.put(tree.getKey(), tree.getValue());
+        }
+    }
+
+    /**
+     * Reports every part of a tree which is expected in the game to an audit.
+     *
+     * @param census The census of the audit.
+     */
+    public void census(WorldAuditor.Census census) {
+        for (Map.Entry<Integer, HashSet<Object>> tree : treeInX.entrySet()) {
+            for (Object part : tree.getValue()) {
+                if (part instanceof TreeTop) {
+                    ((TreeTop) part).census(census, tree.getKey());
+                } else {
+                    census.expect((GameObject) part, layer, MemoryBudget.Subsystem.TRUNKS, tree.getKey());
+                }
             }
         }
     }
@@ -132,24 +438,115 @@ public class Tree {
         minX = minX % Block.SIZE == 0 ? minX : (int) (minX - Block.SIZE - (minX % Block.SIZE));
 
         for (int x = minX; x < maxX; x += Block.SIZE) {
-            if (toPlant(x)) {
-                HashSet<Object> toDelete = treeInX.remove(x);
-
+            HashSet<Object> toDelete = treeInX.remove(x);
+            if (toDelete != null) {
+                unindexTrunk(toDelete);
                 for (Object objectToRemove : toDelete) {
                     if (objectToRemove instanceof TreeTop) {
-                        ((TreeTop) objectToRemove).remove(gameObjects);
+                        ((TreeTop) objectToRemove).remove(mutations);
                     } else {
-                        gameObjects.removeGameObject((GameObject) objectToRemove, layer);
+                        mutations.remove((GameObject) objectToRemove, layer);
                     }
                 }
             }
         }
     }
 
+    /**
+     * This method removes all the trees currently in the game, regardless of their location.
+     */
+    public void removeAll() {
+        for (HashSet<Object> toDelete : treeInX.values()) {
+            unindexTrunk(toDelete);
+            for (Object objectToRemove : toDelete) {
+                if (objectToRemove instanceof TreeTop) {
+                    ((TreeTop) objectToRemove).remove(mutations);
+                } else {
+                    mutations.remove((GameObject) objectToRemove, layer);
+                }
+            }
+        }
+        treeInX.clear();
+    }
+
+    /*
+     * the tree top of the tree in a given x, if there is one in the game
+     */
+    private TreeTop treeTopInX(int x) {
+        HashSet<Object> tree = treeInX.get(x);
+        if (tree != null) {
+            for (Object part : tree) {
+                if (part instanceof TreeTop) {
+                    return (TreeTop) part;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * indexes the lowest object of the trunk of a tree, which stands for the tree
+     */
+    private void indexTrunk(HashSet<Object> tree) {
+        GameObject trunk = trunkOf(tree);
+        if (spatialIndex != null && trunk != null) {
+            spatialIndex.add(trunk, SpatialIndex.Kind.TREE);
+        }
+    }
+
+    /*
+     * removes the object which stands for a tree from the index
+     */
+    private void unindexTrunk(HashSet<Object> tree) {
+        GameObject trunk = trunkOf(tree);
+        if (spatialIndex != null && trunk != null) {
+            spatialIndex.remove(trunk, SpatialIndex.Kind.TREE);
+        }
+    }
+
+    /*
+     * the lowest object of the trunk of a tree
+     */
+    private static GameObject trunkOf(HashSet<Object> tree) {
+        GameObject trunk = null;
+        for (Object part : tree) {
+            if (part instanceof GameObject && (trunk == null
+                    || ((GameObject) part).getTopLeftCorner().y() > trunk.getTopLeftCorner().y())) {
+                trunk = (GameObject) part;
+            }
+        }
+        return trunk;
+    }
+
+    /*
+     * a single block of the trunk of a tree, by its index from the ground
+     */
+    private GameObject barkBlock(int x, int treeHeight, int j) {
+        int barkY = (int) (windowDimensions.y() - (treeHeight + j) * Block.SIZE);
+        GameObject treeBark = new Block(new Vector2(x, barkY), trunkPalette.variantAt(x, barkY));
+        treeBark.setTag(TREE_TAG);
+        return treeBark;
+    }
+
+    /*
+     * the height (in blocks) of the ground under the tree in a column
+     */
+    private int treeBaseHeight(ChunkColumns columns, int i) {
+        return (int) ((windowDimensions.y() - columns.getGroundHeight(i)) / Block.SIZE) + 2;
+    }
+
+    /*
+     * the location of the top of the tree in a column
+     */
+    private Vector2 treeTopLocation(ChunkColumns columns, int i) {
+        return new Vector2(columns.columnX(i), windowDimensions.y() -
+                (treeBaseHeight(columns, i) + columns.getTrunkHeight(i)) * Block.SIZE);
+    }
+
     /*
      * decides whether a tree should be planted in a given x
      */
-    private boolean toPlant(int x) {
-        return (new Random((long) x * seed).nextInt(PLANT_BOUND)) < PLANT_CHANCES;
+    private boolean toPlant(int x, Biome biome) {
+        return (new Random((long) x * seed).nextInt(PLANT_BOUND)) < biome.getTreeChances();
     }
 }
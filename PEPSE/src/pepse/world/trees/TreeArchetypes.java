@@ -0,0 +1,219 @@
+package pepse.world.trees;
+
+import pepse.world.Block;
+
+import java.util.Random;
+
+/**
+ * A seeded library of tree archetypes, from which every tree of the world is drawn. An archetype holds
+ * everything which used to be computed per tree: the height of the trunk, the offsets of the leaves from
+ * the tree top, and the timings of their sway and fall. A planted tree is then only an archetype id and a
+ * small variation (mirrored or not, and a shift of the timings), so building its leaves copies the
+ * precomputed offsets, and a tree which is stored or streamed out takes a couple of bytes.
+ * The library never changes after it is built, so it can be used from any thread.
+ */
+public final class TreeArchetypes {
+    /* Constants */
+    /**
+     * The number of archetypes in a library.
+     */
+    public static final int DEFAULT_SIZE = 32;
+
+    /**
+     * The number of timing shifts a variation can have.
+     */
+    public static final int PHASE_SHIFTS = 128;
+
+    private static final int BASIC_TREE_HEIGHT = 10;
+    private static final int TREE_HEIGHT_RANGE = 7;
+    private static final int AVERAGE_TREE_LEAVES = 40;
+    private static final int VARIATION_TREE_LEAVES = AVERAGE_TREE_LEAVES / 8;
+    private static final float TREE_LEAVES_LOCATION = 7;
+    // the seconds over which the fall times of the leaves are spread
+    private static final float FALL_CYCLE = 600f;
+    private static final int MIRROR_FLAG = 1;
+    private static final int X_PRIME = 73856093;
+    private static final int MIX_FACTOR = 0x45d9f3b;
+    private static final int VARIATION_SALT = 0x2545F491;
+
+    /* Fields */
+    private final int seed;
+    private final int[] trunkHeights;
+    private final byte[][] offsetsX;
+    private final byte[][] offsetsY;
+    private final float[][] movementPeriods;
+    private final float[][] fallTimes;
+    private final float[][] fallSways;
+
+    /**
+     * Constructor of a library of DEFAULT_SIZE archetypes
+     *
+     * @param seed The seed of the world.
+     */
+    public TreeArchetypes(int seed) {
+        this(seed, DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param seed The seed of the world.
+     * @param size The number of archetypes, at most 256 (an id is kept in a byte).
+     */
+    public TreeArchetypes(int seed, int size) {
+        this.seed = seed;
+        this.trunkHeights = new int[size];
+        this.offsetsX = new byte[size][];
+        this.offsetsY = new byte[size][];
+        this.movementPeriods = new float[size][];
+        this.fallTimes = new float[size][];
+        this.fallSways = new float[size][];
+        Random random = new Random(seed);
+        for (int id = 0; id < size; id++) {
+            trunkHeights[id] = BASIC_TREE_HEIGHT + (int) (TREE_HEIGHT_RANGE * random.nextFloat());
+            int numOfLeaves = AVERAGE_TREE_LEAVES + (int) (VARIATION_TREE_LEAVES * random.nextFloat());
+            offsetsX[id] = new byte[numOfLeaves];
+            offsetsY[id] = new byte[numOfLeaves];
+            movementPeriods[id] = new float[numOfLeaves];
+            fallTimes[id] = new float[numOfLeaves];
+            fallSways[id] = new float[numOfLeaves];
+            for (int leaf = 0; leaf < numOfLeaves; leaf++) {
+                offsetsX[id][leaf] = (byte) Math.round(
+                        TREE_LEAVES_LOCATION * Block.SIZE * (random.nextFloat() - 0.5f));
+                offsetsY[id][leaf] = (byte) Math.round(
+                        TREE_LEAVES_LOCATION * Block.SIZE * (random.nextFloat() - 0.5f));
+                movementPeriods[id][leaf] = random.nextFloat();
+                fallTimes[id][leaf] = FALL_CYCLE * random.nextFloat();
+                fallSways[id][leaf] = random.nextFloat() - 0.5f;
+            }
+        }
+    }
+
+    /**
+     * getter for the number of archetypes
+     *
+     * @return the number of archetypes in the library
+     */
+    public int size() {
+        return trunkHeights.length;
+    }
+
+    /**
+     * Picks the archetype of the tree in a column.
+     *
+     * @param x The x of the column.
+     * @return the id of the archetype
+     */
+    public int pick(int x) {
+        return Math.floorMod(mix(x, seed), trunkHeights.length);
+    }
+
+    /**
+     * Picks the variation of the tree in a column: whether it is mirrored, and how far its timings are
+     * shifted, so neighbours of the same archetype neither look nor move the same.
+     *
+     * @param x The x of the column.
+     * @return the variation, which fits in a byte
+     */
+    public int variationAt(int x) {
+        return mix(x, seed ^ VARIATION_SALT) & 0xFF;
+    }
+
+    /**
+     * getter for the trunk height of an archetype
+     *
+     * @param id The id of the archetype.
+     * @return the trunk height in blocks
+     */
+    public int getTrunkHeight(int id) {
+        return trunkHeights[id];
+    }
+
+    /**
+     * getter for the number of leaves of an archetype
+     *
+     * @param id The id of the archetype.
+     * @return the number of leaves
+     */
+    public int getLeafCount(int id) {
+        return offsetsX[id].length;
+    }
+
+    /**
+     * getter for the x offset of a leaf
+     *
+     * @param id        The id of the archetype.
+     * @param leaf      The index of the leaf.
+     * @param variation The variation of the tree.
+     * @return the x offset of the leaf from the tree top, in pixels, mirrored around the trunk if the
+     * variation is mirrored
+     */
+    public int getOffsetX(int id, int leaf, int variation) {
+        return isMirrored(variation) ? -offsetsX[id][leaf] : offsetsX[id][leaf];
+    }
+
+    /**
+     * getter for the y offset of a leaf
+     *
+     * @param id   The id of the archetype.
+     * @param leaf The index of the leaf.
+     * @return the y offset of the leaf from the tree top, in pixels
+     */
+    public int getOffsetY(int id, int leaf) {
+        return offsetsY[id][leaf];
+    }
+
+    /**
+     * getter for the sway period of a leaf
+     *
+     * @param id   The id of the archetype.
+     * @param leaf The index of the leaf.
+     * @return the seconds between the sways of the leaf
+     */
+    public float getMovementPeriod(int id, int leaf) {
+        return movementPeriods[id][leaf];
+    }
+
+    /**
+     * getter for the fall time of a leaf
+     *
+     * @param id        The id of the archetype.
+     * @param leaf      The index of the leaf.
+     * @param variation The variation of the tree.
+     * @return the seconds until the leaf falls, shifted by the variation
+     */
+    public float getFallTime(int id, int leaf, int variation) {
+        float shift = FALL_CYCLE * (variation >>> 1) / PHASE_SHIFTS;
+        return (fallTimes[id][leaf] + shift) % FALL_CYCLE;
+    }
+
+    /**
+     * getter for the sideways sway of a falling leaf
+     *
+     * @param id        The id of the archetype.
+     * @param leaf      The index of the leaf.
+     * @param variation The variation of the tree.
+     * @return the factor of the sideways velocity, between -0.5 and 0.5, mirrored with the tree
+     */
+    public float getFallSway(int id, int leaf, int variation) {
+        return isMirrored(variation) ? -fallSways[id][leaf] : fallSways[id][leaf];
+    }
+
+    /*
+     * whether a variation is mirrored
+     */
+    private static boolean isMirrored(int variation) {
+        return (variation & MIRROR_FLAG) != 0;
+    }
+
+    /*
+     * mixes the bits of a column with a seed, the same as the palettes do
+     */
+    private static int mix(int x, int seed) {
+        int hash = x * X_PRIME ^ seed;
+        hash ^= hash >>> 16;
+        hash *= MIX_FACTOR;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
@@ -1,203 +1,321 @@
 package pepse.world.trees;
 
-import danogl.collisions.GameObjectCollection;
 import danogl.components.ScheduledTask;
-import danogl.components.Transition;
-import danogl.gui.rendering.Renderable;
 import danogl.util.Vector2;
-import pepse.world.Block;
+import pepse.util.Palette;
+import pepse.world.MemoryBudget;
+import pepse.world.MutationQueue;
+import pepse.world.SpatialIndex;
+import pepse.world.WorldAuditor;
+import pepse.world.chunks.ChunkColumns;
+import pepse.world.chunks.LeafStates;
 
-import java.util.HashSet;
-import java.util.Objects;
-import java.util.Random;
+import java.util.ArrayList;
 
 public class TreeTop {
     /* Constants */
-    private static final int AVERAGE_TREE_LEAVES = 40;
-    private static final int VARIATION_TREE_LEAVES = AVERAGE_TREE_LEAVES / 8;
-    private static final float TREE_LEAVES_LOCATION = 7;
     private static final float FADEOUT_TIME = 7;
     private static final float FADEIN_TIME = 2;
     private static final float LEAF_FALL_VELOCITY = 100;
     private static final float HORIZONTAL_VELOCITY = 100f;
     private static final float LEAF_FALL_CYCLE = 5;
-    private static final float LEAF_ANGLE_CYCLE = 6;
-    private static final float LEAF_WIDTH_CYCLE = LEAF_ANGLE_CYCLE / 2;
-    private static final float INITIAL_ANGLE = 0;
-    private static final float FINAL_ANGLE = 40;
-    private static final float INITIAL_DIMENSION = 0;
-    private static final float FINAL_DIMENSION = Leaf.SIZE / 3;
-    private static final float TIME_CONSTANT = 600f;
 
     /* Fields */
-    private final int seed;
-    private final int numOfLeaves;
     private final Vector2 topLeftCorner;
-    private final Renderable renderable;
-    private final HashSet<Leaf> leaves = new HashSet<>();
-    private GameObjectCollection gameObjects;
+    private final Palette palette;
+    private final TreeArchetypes archetypes;
+    private int archetype;
+    private int variation;
+    private final ArrayList<Leaf> leaves = new ArrayList<>();
+    private MutationQueue mutations;
+    private SpatialIndex spatialIndex;
     private int leavesLayer;
     private int fallingLeavesLayer;
-    private int groundLayer;
+    private int numOfFallingLeaves;
+    // whether the leaves are in the game, between attach() (or reattach()) and remove()
+    private boolean isAttached;
 
 
     /**
      * constructor
      *
      * @param topLeftCorner top of the tree location
-     * @param renderable    renderable for the tree top
-     * @param seed          randomness seed
+     * @param palette       the colors of the leaves
+     * @param archetypes    the archetypes which the leaves are copied from
      */
-    public TreeTop(Vector2 topLeftCorner, Renderable renderable, int seed) {
+    public TreeTop(Vector2 topLeftCorner, Palette palette, TreeArchetypes archetypes) {
         this.topLeftCorner = topLeftCorner;
-        this.renderable = renderable;
-        this.seed = seed;
-        numOfLeaves = AVERAGE_TREE_LEAVES + (int) (VARIATION_TREE_LEAVES * new Random(seed).nextFloat());
+        this.palette = palette;
+        this.archetypes = archetypes;
     }
 
     /**
-     * Creates a treeTop in the given layer
+     * Builds the leaves of the treeTop without adding them to the game, so it can run on a
+     * background thread
      *
-     * @param gameObjects        game Object which the Leaves will be added to
-     * @param leavesLayer        the layer for leaves on tree
-     * @param fallingLeavesLayer the layer for falling leaves
-     * @param groundLayer        the layer of the ground
+     * @param columns the columns which describe the tree
+     * @param column  index of the column of the tree
      */
-    public void create(GameObjectCollection gameObjects, int leavesLayer, int fallingLeavesLayer,
-                       int groundLayer) {
-        this.gameObjects = gameObjects;
-        this.leavesLayer = leavesLayer;
-        this.fallingLeavesLayer = fallingLeavesLayer;
-        this.groundLayer = groundLayer;
+    public void build(ChunkColumns columns, int column) {
+        build(columns, column, null, 0, 1);
+    }
+
+    /**
+     * Builds the leaves of the treeTop without adding them to the game, continuing the movements they
+     * had when their frame was streamed out
+     *
+     * @param columns    the columns which describe the tree
+     * @param column     index of the column of the tree
+     * @param states      the state of the leaves of the frame, or null for new leaves
+     * @param firstState  index of the state of the first leaf of this tree
+     * @param leafDensity the part of the anchors which get a leaf. The anchors are random, so the first
+     *                    ones are spread over the whole tree top.
+     */
+    public void build(ChunkColumns columns, int column, LeafStates states, int firstState, float leafDensity) {
+        archetype = columns.getArchetype(column);
+        variation = columns.getVariation(column);
+        int numOfLeaves = Math.round(columns.getLeafCount(column) * Math.min(1, leafDensity));
         for (int i = 0; i < numOfLeaves; i++) {
-            float x = topLeftCorner.x() + TREE_LEAVES_LOCATION * Block.SIZE *
-                    (new Random(Objects.hash(topLeftCorner.x() + i, seed)).nextFloat() - 0.5f);
-
-            float y = topLeftCorner.y() + TREE_LEAVES_LOCATION * Block.SIZE *
-                    (new Random(Objects.hash(topLeftCorner.y() + i, seed)).nextFloat() - 0.5f);
-            Leaf leaf = new Leaf(new Vector2(x, y), renderable);
-            gameObjects.addGameObject(leaf, leavesLayer);
-            setLeafMovements(new Vector2(x, y), leaf);
+            float x = topLeftCorner.x() + archetypes.getOffsetX(archetype, i, variation);
+            float y = topLeftCorner.y() + archetypes.getOffsetY(archetype, i);
+            Leaf leaf = new Leaf(new Vector2(x, y), palette.variantAt((int) x, (int) y));
+            if (states == null) {
+                setLeafMovements(i, new Vector2(x, y), leaf, 0, false);
+            } else {
+                setLeafMovements(i, new Vector2(x, y), leaf,
+                        states.getPhase(firstState + i), states.isFalling(firstState + i));
+            }
             leaves.add(leaf);
-            leaf.physics().preventIntersectionsFromDirection(Vector2.ZERO);
-            gameObjects.layers().shouldLayersCollide(leavesLayer, leavesLayer, false);
             leaf.setTag(Leaf.LEAF_ON_TREE_TAG);
             leaf.physics().preventIntersectionsFromDirection(Vector2.ZERO);
+        }
+    }
 
+    /**
+     * Sets the rate of the sway of all the leaves
+     *
+     * @param swayInterval the seconds between redraws of the sway, 0 to redraw it every frame
+     */
+    public void setSwayInterval(float swayInterval) {
+        for (Leaf leaf : leaves) {
+            leaf.setSwayInterval(swayInterval);
         }
+    }
 
+    /**
+     * getter for the number of leaves
+     *
+     * @return the number of leaves which were built, falling or not
+     */
+    public int getNumOfLeaves() {
+        return leaves.size();
     }
 
     /**
-     * Creates the movements of the leaf
+     * Writes the state of the leaves, in the order of their anchors. Anchors without a leaf (by the leaf
+     * density it was built with) keep their state.
      *
-     * @param location the location of the leaf, for recreation
-     * @param leaf     the leaf object
+     * @param states     the state of the leaves of the frame
+     * @param firstState index of the state of the first leaf of this tree
      */
-    private void setLeafMovements(Vector2 location, Leaf leaf) {
-        Runnable leafMovement = getLeavesTransition(leaf);
-        new ScheduledTask(
-                leaf,
-                new Random(Objects.hash(location.x() + location.y(), seed)).nextFloat(),
-                true,
-                leafMovement);
-
-        new ScheduledTask(
-                leaf,
-                TIME_CONSTANT * new Random(Objects.hash(location.x() * location.y(), seed)).nextFloat(),
-                false,
-                getFallTransition(location, leaf)
-        );
+    public void getLeafStates(LeafStates states, int firstState) {
+        for (int i = 0; i < leaves.size(); i++) {
+            Leaf leaf = leaves.get(i);
+            states.set(firstState + i, leaf.getPhase(), leaf.getTag().equals(Leaf.LEAF_FALLING_TAG));
+        }
     }
 
-    /*
-     * creates runnable of leaf fall
+    /**
+     * Adds the leaves which were built by build() to the game
+     *
+     * @param mutations          the queue which adds the leaves to the game
+     * @param spatialIndex       the index which the leaves are kept in, or null for none
+     * @param leavesLayer        the layer for leaves on tree
+     * @param fallingLeavesLayer the layer for falling leaves
      */
-    private Runnable getFallTransition(Vector2 location, Leaf leaf) {
-        return () -> {
-            updateLayers(leaf);
-            leaf.renderer().fadeOut(FADEOUT_TIME, () -> onFadeOutEnd(location, leaf));
-            leaf.transform().setVelocityY(LEAF_FALL_VELOCITY);
-            leaf.setTag(Leaf.LEAF_FALLING_TAG);
-            float randomVelocityFactor = new Random((long) (seed * location.x())).nextFloat() - 0.5f;
-            Transition<Float> horizontalTransitionInFall = new Transition<>(
-                    leaf, //the game object being changed
-                    velocity -> leaf.transform().setVelocityX(velocity),  //the method to call
-                    randomVelocityFactor * HORIZONTAL_VELOCITY,    //initial transition value
-                    -randomVelocityFactor * HORIZONTAL_VELOCITY,   //final transition value
-                    Transition.LINEAR_INTERPOLATOR_FLOAT,
-                    LEAF_FALL_CYCLE,
-                    Transition.TransitionType.TRANSITION_BACK_AND_FORTH,
-                    null);  //nothing further to execute upon reaching final value
-            leaf.setFallTransition(horizontalTransitionInFall);
-        };
+    public void attach(MutationQueue mutations, SpatialIndex spatialIndex, int leavesLayer,
+                       int fallingLeavesLayer) {
+        this.mutations = mutations;
+        this.spatialIndex = spatialIndex;
+        this.leavesLayer = leavesLayer;
+        this.fallingLeavesLayer = fallingLeavesLayer;
+        this.isAttached = true;
+        for (Leaf leaf : leaves) {
+            mutations.add(leaf, leavesLayer);
+            if (spatialIndex != null) {
+                spatialIndex.add(leaf, SpatialIndex.Kind.LEAF);
+            }
+        }
     }
 
-    /*
-     * creates runnable of leaf movement
+    /**
+     * Creates the movements of the leaf. A leaf which is rebuilt continues from its phase: its fall keeps
+     * its time, and a leaf which was falling starts falling right away, with its fade as far as it was.
+     *
+     * @param index     the index of the leaf in its archetype, which its timings are copied from
+     * @param location  the location of the leaf, for recreation
+     * @param leaf      the leaf object
+     * @param phase     the seconds since the movements of the leaf were scheduled
+     * @param isFalling whether the leaf was falling
      */
-    private Runnable getLeavesTransition(Leaf leaf) {
-        return () -> {
-            Transition<Float> angleTransition = new Transition<>(
-                    leaf, //the game object being changed
-                    leaf.renderer()::setRenderableAngle,  //the method to call
-                    INITIAL_ANGLE,    //initial transition value
-                    FINAL_ANGLE,   //final transition value
-                    Transition.LINEAR_INTERPOLATOR_FLOAT,
-                    LEAF_ANGLE_CYCLE,
-                    Transition.TransitionType.TRANSITION_BACK_AND_FORTH,
-                    null);  //nothing further to execute upon reaching final value
-
-            Transition<Float> widthTransition = new Transition<>(
-                    leaf, //the game object being changed
-                    dim -> leaf.setDimensions(new Vector2(Leaf.SIZE - dim, Leaf.SIZE)),  //the method to call
-                    INITIAL_DIMENSION,    //initial transition value
-                    FINAL_DIMENSION,   //final transition value
-                    Transition.LINEAR_INTERPOLATOR_FLOAT,
-                    LEAF_WIDTH_CYCLE,
-                    Transition.TransitionType.TRANSITION_BACK_AND_FORTH,
-                    null);  //nothing further to execute upon reaching final value
-            leaf.removeTransitions();
-            leaf.setTransitions(angleTransition, widthTransition);
-        };
+    private void setLeafMovements(int index, Vector2 location, Leaf leaf, float phase, boolean isFalling) {
+        leaf.setPhase(phase);
+        Runnable leafMovement = leaf::startSway;
+        float movementPeriod = archetypes.getMovementPeriod(archetype, index);
+        if (phase == 0) {
+            new ScheduledTask(leaf, movementPeriod, true, leafMovement);
+        } else {
+            new ScheduledTask(leaf, movementPeriod - phase % movementPeriod, false, () -> {
+                leafMovement.run();
+                new ScheduledTask(leaf, movementPeriod, true, leafMovement);
+            });
+        }
+
+        float fallTime = archetypes.getFallTime(archetype, index, variation);
+        LeafFall leafFall = new LeafFall(index, location, leaf, fallTime);
+        if (isFalling) {
+            leafFall.fallElapsed = Math.max(0, phase - fallTime);
+            leaf.schedule(0, leafFall.fall);
+        } else {
+            leaf.schedule(Math.max(0, fallTime - phase), leafFall.fall);
+        }
     }
 
     /*
-     * updates the layers for falling leaf
+     * updates the layers for falling leaf (the collisions of the layers are set once, by Tree)
      */
     private void updateLayers(Leaf leaf) {
-        gameObjects.removeGameObject(leaf, leavesLayer);
-        gameObjects.addGameObject(leaf, fallingLeavesLayer);
-        gameObjects.layers().shouldLayersCollide(fallingLeavesLayer, groundLayer, true);
-        gameObjects.layers().shouldLayersCollide(fallingLeavesLayer, leavesLayer, false);
+        mutations.move(leaf, leavesLayer, fallingLeavesLayer);
+        if (spatialIndex != null) {
+            spatialIndex.move(leaf, SpatialIndex.Kind.LEAF, SpatialIndex.Kind.FALLING_LEAF);
+        }
     }
 
-    /*
-     * after fall ends procedure
+    /**
+     * getter for the number of falling leaves
+     *
+     * @return the number of leaves of the treeTop which are falling
      */
-    private void onFadeOutEnd(Vector2 location, Leaf leaf) {
-        leaf.setTag(Leaf.LEAF_ON_TREE_TAG);
-        gameObjects.removeGameObject(leaf, fallingLeavesLayer);
-        gameObjects.addGameObject(leaf, leavesLayer);
-        leaf.transform().setVelocityX(0);
-        leaf.setCenter(location);
-        leaf.renderer().fadeIn(FADEIN_TIME);
-        setLeafMovements(location, leaf);
+    public int getNumOfFallingLeaves() {
+        return numOfFallingLeaves;
     }
 
+    /**
+     * Adds the leaves which were attached before back to the game, each in the layer of its state, after
+     * they were removed by remove(). Their movements continue from where they stopped.
+     */
+    public void reattach() {
+        isAttached = true;
+        for (Leaf leaf : leaves) {
+            if (leaf.getTag().equals(Leaf.LEAF_ON_TREE_TAG)) {
+                mutations.add(leaf, leavesLayer);
+            } else {
+                mutations.add(leaf, fallingLeavesLayer);
+            }
+            if (spatialIndex != null) {
+                spatialIndex.add(leaf, kindOf(leaf));
+            }
+        }
+    }
 
     /**
      * removes the treeTop parts
      *
-     * @param gameObjects the game object to remove from
+     * @param mutations the queue which removes the leaves from the game
      */
-    public void remove(GameObjectCollection gameObjects) {
+    public void remove(MutationQueue mutations) {
+        isAttached = false;
         for (Leaf objectToRemove : leaves) {
             if (objectToRemove.getTag().equals(Leaf.LEAF_ON_TREE_TAG)) {
-                gameObjects.removeGameObject(objectToRemove, leavesLayer);
+                mutations.remove(objectToRemove, leavesLayer);
+            } else {
+                mutations.remove(objectToRemove, fallingLeavesLayer);
+            }
+            if (spatialIndex != null) {
+                spatialIndex.remove(objectToRemove, kindOf(objectToRemove));
+            }
+        }
+    }
+
+    /**
+     * Reports the leaves which are expected in the game to an audit, each in the layer of its state.
+     *
+     * @param census  The census of the audit.
+     * @param columnX The x of the column of the tree.
+     */
+    public void census(WorldAuditor.Census census, int columnX) {
+        if (!isAttached) {
+            return;
+        }
+        for (Leaf leaf : leaves) {
+            if (leaf.getTag().equals(Leaf.LEAF_ON_TREE_TAG)) {
+                census.expect(leaf, leavesLayer, MemoryBudget.Subsystem.LEAVES, columnX);
             } else {
-                gameObjects.removeGameObject(objectToRemove, fallingLeavesLayer);
+                census.expect(leaf, fallingLeavesLayer, MemoryBudget.Subsystem.FALLING_LEAVES, columnX);
+            }
+        }
+    }
+
+    /*
+     * the kind of a leaf in the index, by whether it is falling
+     */
+    private static SpatialIndex.Kind kindOf(Leaf leaf) {
+        return leaf.getTag().equals(Leaf.LEAF_ON_TREE_TAG) ? SpatialIndex.Kind.LEAF
+                : SpatialIndex.Kind.FALLING_LEAF;
+    }
+
+    /*
+     * The fall of a leaf and its return to the tree, created once with the leaf, so a leaf falls again and
+     * again without allocating
+     */
+    private class LeafFall {
+        private final int index;
+        private final Vector2 location;
+        private final Leaf leaf;
+        private final float fallTime;
+        private final Runnable fall = this::fall;
+        private final Runnable land = this::land;
+        // the seconds which a fall that is continued already took, 0 for a new fall
+        private float fallElapsed;
+
+        LeafFall(int index, Vector2 location, Leaf leaf, float fallTime) {
+            this.index = index;
+            this.location = location;
+            this.leaf = leaf;
+            this.fallTime = fallTime;
+        }
+
+        /*
+         * starts the fall of the leaf
+         */
+        private void fall() {
+            updateLayers(leaf);
+            numOfFallingLeaves++;
+            leaf.fadeTo(0, FADEOUT_TIME, fallElapsed, land);
+            fallElapsed = 0;
+            leaf.transform().setVelocityY(LEAF_FALL_VELOCITY);
+            leaf.setTag(Leaf.LEAF_FALLING_TAG);
+            float velocityFactor = archetypes.getFallSway(archetype, index, variation);
+            leaf.startFallSway(velocityFactor * HORIZONTAL_VELOCITY, LEAF_FALL_CYCLE);
+        }
+
+        /*
+         * after fall ends procedure: the leaf returns to its place, and falls again after its fall time
+         */
+        private void land() {
+            leaf.setTag(Leaf.LEAF_ON_TREE_TAG);
+            numOfFallingLeaves--;
+            mutations.move(leaf, fallingLeavesLayer, leavesLayer);
+            // a leaf which did not land on the ground (falling leaves may not collide) is still moving
+            leaf.setVelocity(Vector2.ZERO);
+            leaf.stopMovements();
+            leaf.setCenter(location);
+            if (spatialIndex != null) {
+                spatialIndex.move(leaf, SpatialIndex.Kind.FALLING_LEAF, SpatialIndex.Kind.LEAF);
             }
+            leaf.fadeTo(1, FADEIN_TIME, null);
+            leaf.setPhase(0);
+            leaf.schedule(fallTime, fall);
         }
     }
 }
@@ -0,0 +1,134 @@
+package pepse;
+
+import danogl.collisions.GameObjectCollection;
+import danogl.gui.UserInputListener;
+import danogl.gui.WindowController;
+import danogl.util.Vector2;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Stand-ins of the engine, for tests which run the game without a window: the interfaces which the engine
+ * hands to the game, and a game which hands out its collection of objects.
+ */
+public final class EngineStubs {
+    /*
+     * private constructor, the stand-ins are created by the static methods
+     */
+    private EngineStubs() {
+    }
+
+    /**
+     * Creates a stand-in of an engine interface, which knows the dimensions of the window, and of which no
+     * key is ever pressed. Every other method does nothing and returns the default value of its type.
+     *
+     * @param type             The interface.
+     * @param windowDimensions The dimensions which every method that returns a vector returns.
+     * @param <T>              The type of the interface.
+     * @return the stand-in
+     */
+    public static <T> T stub(Class<T> type, Vector2 windowDimensions) {
+        return stub(type, windowDimensions, new AtomicInteger());
+    }
+
+    /**
+     * Creates a stand-in of an engine interface, which knows the dimensions of the window, and counts the
+     * keys which are read from it, none of which is ever pressed.
+     *
+     * @param type             The interface.
+     * @param windowDimensions The dimensions which every method that returns a vector returns.
+     * @param keyReads         The counter of the calls which return a boolean.
+     * @param <T>              The type of the interface.
+     * @return the stand-in
+     */
+    public static <T> T stub(Class<T> type, Vector2 windowDimensions, AtomicInteger keyReads) {
+        return stub(type, windowDimensions, keyReads, key -> false);
+    }
+
+    /**
+     * Creates a stand-in of an engine interface, which knows the dimensions of the window, and of which
+     * given keys are pressed.
+     *
+     * @param type             The interface.
+     * @param windowDimensions The dimensions which every method that returns a vector returns.
+     * @param pressedKeys      Tells whether a key code is pressed when it is read.
+     * @param <T>              The type of the interface.
+     * @return the stand-in
+     */
+    public static <T> T stub(Class<T> type, Vector2 windowDimensions, IntPredicate pressedKeys) {
+        return stub(type, windowDimensions, new AtomicInteger(), pressedKeys);
+    }
+
+    /**
+     * Creates a game in a window of given dimensions, and initializes it with stand-ins of the engine.
+     *
+     * @param windowDimensions The dimensions of the window.
+     * @return the initialized game
+     */
+    public static WindowlessGame startGame(Vector2 windowDimensions) {
+        return startGame(windowDimensions, key -> false);
+    }
+
+    /**
+     * Creates a game in a window of given dimensions, and initializes it with stand-ins of the engine, of
+     * which given keys are pressed.
+     *
+     * @param windowDimensions The dimensions of the window.
+     * @param pressedKeys      Tells whether a key code is pressed when it is read.
+     * @return the initialized game
+     */
+    public static WindowlessGame startGame(Vector2 windowDimensions, IntPredicate pressedKeys) {
+        WindowlessGame game = new WindowlessGame(windowDimensions);
+        game.initializeGame(null, null, stub(UserInputListener.class, windowDimensions, pressedKeys),
+                stub(WindowController.class, windowDimensions));
+        return game;
+    }
+
+    /*
+     * a stand-in which counts the keys read from it, and answers them by the pressed keys
+     */
+    private static <T> T stub(Class<T> type, Vector2 windowDimensions, AtomicInteger keyReads,
+                              IntPredicate pressedKeys) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == Vector2.class) {
+                        return windowDimensions;
+                    }
+                    if (returnType == boolean.class) {
+                        keyReads.incrementAndGet();
+                        return args != null && args.length == 1 && args[0] instanceof Integer
+                                && pressedKeys.test((Integer) args[0]);
+                    }
+                    // the default value of any other type
+                    return returnType.isPrimitive() && returnType != void.class
+                            ? Array.get(Array.newInstance(returnType, 1), 0) : null;
+                }));
+    }
+
+    /**
+     * A game which hands out its collection of objects, so a test can add objects of its own to the game.
+     */
+    public static class WindowlessGame extends PepseGameManager {
+        /**
+         * Constructor
+         *
+         * @param windowDimensions The dimensions of the window.
+         */
+        public WindowlessGame(Vector2 windowDimensions) {
+            super("PEPSE", windowDimensions);
+        }
+
+        /**
+         * getter for the objects of the game
+         *
+         * @return the collection of the objects of the game
+         */
+        public GameObjectCollection objects() {
+            return gameObjects();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pepse;
+
+import danogl.util.Vector2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pepse.world.Block;
+import pepse.world.StreamingWindow;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a headless world streams the frames around its scripted avatar the same way the game does:
+ * the initial window is built at once, and walking builds exactly one frame for every frame boundary the
+ * window crosses, in either direction.
+ */
+public class HeadlessWorldTest {
+    /* Constants */
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1280, 720);
+    private static final int SEED = 1234;
+    private static final float DELTA_TIME = 1 / 60f;
+    // the frames of the screen, and one more on each side
+    private static final int FRAMES_IN_WINDOW = 5;
+    private static final int FRAME_SIZE = StreamingWindow.frameSizeOf(WINDOW_DIMENSIONS.x());
+    private static final float START_X = FRAME_SIZE * 3 / 2f;
+    // the first two legs of the script: 20 seconds to the right at 300, then 5 to the left at 300
+    private static final float FIRST_LEG_SECONDS = 20;
+    private static final float SECOND_LEG_SECONDS = 5;
+    private static final float WALKING_SPEED = 300;
+    private static final float POSITION_TOLERANCE = 10;
+
+    /* Fields */
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void createPool() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void initialWindowIsBuilt() {
+        HeadlessWorld world = new HeadlessWorld(SEED, WINDOW_DIMENSIONS, pool);
+        assertEquals(FRAMES_IN_WINDOW, world.getFramesBuilt());
+        assertEquals(FRAMES_IN_WINDOW * (long) (FRAME_SIZE / Block.SIZE), world.getColumnsBuilt());
+        assertEquals(START_X, world.getAvatarX(), 0);
+    }
+
+    @Test
+    void walkingBuildsAFramePerCrossedBoundary() {
+        HeadlessWorld world = new HeadlessWorld(SEED, WINDOW_DIMENSIONS, pool);
+        // the window starts a frame left of 0, and moves once the avatar passes its last 2 frames
+        int leftBoundary = -FRAME_SIZE;
+        int expectedFrames = FRAMES_IN_WINDOW;
+
+        step(world, FIRST_LEG_SECONDS);
+        float rightX = START_X + WALKING_SPEED * FIRST_LEG_SECONDS;
+        assertEquals(rightX, world.getAvatarX(), POSITION_TOLERANCE);
+        while (rightX > leftBoundary + 3 * FRAME_SIZE) {
+            leftBoundary += FRAME_SIZE;
+            expectedFrames++;
+        }
+        assertEquals(expectedFrames, world.getFramesBuilt());
+
+        step(world, SECOND_LEG_SECONDS);
+        float leftX = rightX - WALKING_SPEED * SECOND_LEG_SECONDS;
+        assertEquals(leftX, world.getAvatarX(), POSITION_TOLERANCE);
+        int rightBoundary = leftBoundary + FRAMES_IN_WINDOW * FRAME_SIZE;
+        while (leftX < rightBoundary - 3 * FRAME_SIZE) {
+            rightBoundary -= FRAME_SIZE;
+            expectedFrames++;
+        }
+        assertEquals(expectedFrames, world.getFramesBuilt());
+    }
+
+    @Test
+    void worldsOfAnySeedWalkTheSameScript() {
+        HeadlessWorld world = new HeadlessWorld(SEED, WINDOW_DIMENSIONS, pool);
+        HeadlessWorld other = new HeadlessWorld(SEED + 1, WINDOW_DIMENSIONS, pool);
+        step(world, FIRST_LEG_SECONDS);
+        step(other, FIRST_LEG_SECONDS);
+        assertEquals(world.getFramesBuilt(), other.getFramesBuilt());
+        assertEquals(world.getAvatarX(), other.getAvatarX(), 0);
+    }
+
+    /*
+     * steps a world for a number of seconds
+     */
+    private static void step(HeadlessWorld world, float seconds) {
+        for (int step = 0; step < Math.round(seconds / DELTA_TIME); step++) {
+            world.step(DELTA_TIME);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pepse;
+
+import danogl.gui.UserInputListener;
+import danogl.gui.WindowController;
+import danogl.util.Vector2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a steady-state frame of the game allocates nothing, without opening a window. The whole game
+ * is initialized and advanced by PepseGameManager.update, as the engine does, so the frame runs the avatar,
+ * its energy display, the leaves, the day-night clock, the sky, the hills and the streaming of the world.
+ * No key is pressed and no frame boundary is crossed while the frames are measured. A fixed number of
+ * rounds is measured after the warm-up, and every round must stay within a budget of bytes per frame: rare
+ * paths (such as a leaf which starts to fall) allocate a few hundred bytes in a round, while a single
+ * vector in every frame would take three times the budget.
+ */
+public class SteadyFrameAllocationTest {
+    /* Constants */
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1280, 720);
+    private static final float DELTA_TIME = 1 / 60f;
+    private static final int WARMUP_FRAMES = 2000;
+    private static final int ROUND_FRAMES = 600;
+    private static final int NUM_OF_ROUNDS = 10;
+    // a vector takes 24 bytes
+    private static final long MAX_BYTES_PER_FRAME = 8;
+    private static final String TARGET_FRAME_RATE_PROPERTY = "pepse.targetFrameRate";
+
+    /* Fields */
+    private final AtomicInteger keyReads = new AtomicInteger();
+    private String targetFrameRate;
+
+    @BeforeEach
+    void keepNormalQuality() {
+        // adapting the quality streams frames in and out, which is not a steady state
+        targetFrameRate = System.setProperty(TARGET_FRAME_RATE_PROPERTY, "0");
+    }
+
+    @AfterEach
+    void restoreQuality() {
+        if (targetFrameRate == null) {
+            System.clearProperty(TARGET_FRAME_RATE_PROPERTY);
+        } else {
+            System.setProperty(TARGET_FRAME_RATE_PROPERTY, targetFrameRate);
+        }
+    }
+
+    @Test
+    void steadyFrameStaysWithinItsBudget() {
+        assertTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "This JVM does not measure allocated bytes per thread");
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        UserInputListener inputListener = EngineStubs.stub(UserInputListener.class, WINDOW_DIMENSIONS, keyReads);
+        PepseGameManager game = new PepseGameManager("PEPSE", WINDOW_DIMENSIONS);
+        game.initializeGame(null, null, inputListener,
+                EngineStubs.stub(WindowController.class, WINDOW_DIMENSIONS, keyReads));
+        for (int frame = 0; frame < WARMUP_FRAMES; frame++) {
+            game.update(DELTA_TIME);
+        }
+
+        for (int round = 0; round < NUM_OF_ROUNDS; round++) {
+            keyReads.set(0);
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            for (int frame = 0; frame < ROUND_FRAMES; frame++) {
+                game.update(DELTA_TIME);
+            }
+            long frameBytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+            // the stand-in listener boxes its own arguments, which is not part of the game
+            int numOfKeyReads = keyReads.get();
+            startBytes = threads.getThreadAllocatedBytes(threadId);
+            for (int read = 0; read < numOfKeyReads; read++) {
+                inputListener.isKeyPressed(0);
+            }
+            long listenerBytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+            long roundBytes = Math.max(0, frameBytes - listenerBytes);
+            assertTrue(roundBytes <= MAX_BYTES_PER_FRAME * ROUND_FRAMES, roundBytes + " bytes allocated by "
+                    + ROUND_FRAMES + " steady frames in round " + round);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.util.Vector2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pepse.EngineStubs;
+
+import java.awt.event.KeyEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that in fixed step mode an avatar jumps as high whether the engine runs a single step in a frame
+ * or several, while the jump key is held down.
+ */
+public class AvatarJumpTest {
+    /* Constants */
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1280, 720);
+    private static final String FIXED_STEP_RATE_PROPERTY = "pepse.fixedStepRate";
+    private static final float FIXED_STEP_RATE = 60;
+    private static final float SECONDS_TO_LAND = 3;
+    private static final float SECONDS_OF_JUMP = 1.5f;
+    // the collisions of several steps are resolved together, at most a step of gravity apart
+    private static final float APEX_TOLERANCE = 3;
+
+    /* Fields */
+    private String fixedStepRate;
+    private boolean isJumpPressed;
+
+    @BeforeEach
+    void useFixedSteps() {
+        fixedStepRate = System.setProperty(FIXED_STEP_RATE_PROPERTY, Float.toString(FIXED_STEP_RATE));
+    }
+
+    @AfterEach
+    void restoreFixedSteps() {
+        if (fixedStepRate == null) {
+            System.clearProperty(FIXED_STEP_RATE_PROPERTY);
+        } else {
+            System.setProperty(FIXED_STEP_RATE_PROPERTY, fixedStepRate);
+        }
+    }
+
+    @Test
+    void jumpIsAsHighWithSeveralStepsInAFrame() {
+        float singleStepHeight = jumpHeight(1);
+        float doubleStepHeight = jumpHeight(2);
+        assertTrue(singleStepHeight > 0, "the avatar did not jump");
+        assertEquals(singleStepHeight, doubleStepHeight, APEX_TOLERANCE);
+    }
+
+    /*
+     * lands an avatar which runs a given number of steps in a frame, holds the jump key, and measures how
+     * high above the ground it rose
+     */
+    private float jumpHeight(int stepsPerFrame) {
+        isJumpPressed = false;
+        EngineStubs.WindowlessGame game = EngineStubs.startGame(WINDOW_DIMENSIONS,
+                key -> isJumpPressed && key == KeyEvent.VK_SPACE);
+        Avatar avatar = findAvatar(game.objects());
+        float deltaTime = stepsPerFrame / FIXED_STEP_RATE;
+
+        run(game, deltaTime, SECONDS_TO_LAND);
+        float groundY = avatar.getTopLeftCorner().y();
+        isJumpPressed = true;
+        float apexY = groundY;
+        for (float time = 0; time < SECONDS_OF_JUMP; time += deltaTime) {
+            game.update(deltaTime);
+            apexY = Math.min(apexY, avatar.getTopLeftCorner().y());
+        }
+        return groundY - apexY;
+    }
+
+    /*
+     * runs a game for a number of seconds
+     */
+    private static void run(EngineStubs.WindowlessGame game, float deltaTime, float seconds) {
+        for (float time = 0; time < seconds; time += deltaTime) {
+            game.update(deltaTime);
+        }
+    }
+
+    /*
+     * the avatar of a game
+     */
+    private static Avatar findAvatar(GameObjectCollection gameObjects) {
+        Avatar avatar = null;
+        for (GameObject gameObject : gameObjects) {
+            if (gameObject instanceof Avatar) {
+                avatar = (Avatar) gameObject;
+            }
+        }
+        assertNotNull(avatar, "the game has no avatar");
+        return avatar;
+    }
+}
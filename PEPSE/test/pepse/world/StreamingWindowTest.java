@@ -0,0 +1,72 @@
+package pepse.world;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every way of placing the streaming window agrees on the layout, at every margin: the avatar
+ * is in the middle frame, and the window only moves once the avatar passes into the outermost frames of
+ * the screen.
+ */
+public class StreamingWindowTest {
+    /* Constants */
+    private static final int FRAME_SIZE = StreamingWindow.frameSizeOf(1280);
+    private static final int MAX_MARGIN = 3;
+
+    @Test
+    void frameIsMadeOfWholeBlocks() {
+        assertEquals(0, FRAME_SIZE % (int) Block.SIZE);
+        assertTrue(FRAME_SIZE * StreamingWindow.FRAMES_IN_SCREEN <= 1280);
+    }
+
+    @Test
+    void initialWindowIsCenteredOnTheAvatar() {
+        for (int margin = 0; margin <= MAX_MARGIN; margin++) {
+            StreamingWindow initial = new StreamingWindow(FRAME_SIZE, margin);
+            StreamingWindow centered = new StreamingWindow(FRAME_SIZE, margin);
+            centered.centerOn(initial.getInitialAvatarX());
+            assertEquals(-margin * FRAME_SIZE, initial.getLeftBoundary());
+            assertEquals(initial.getLeftBoundary(), centered.getLeftBoundary());
+            assertEquals(initial.getRightBoundary(), centered.getRightBoundary());
+            assertEquals((StreamingWindow.FRAMES_IN_SCREEN + 2 * margin) * FRAME_SIZE,
+                    initial.getRightBoundary() - initial.getLeftBoundary());
+        }
+    }
+
+    @Test
+    void windowMovesAtTheOutermostFramesOfTheScreen() {
+        for (int margin = 0; margin <= MAX_MARGIN; margin++) {
+            StreamingWindow window = new StreamingWindow(FRAME_SIZE, margin);
+            int middleFrame = window.getLeftBoundary() + (margin + 1) * FRAME_SIZE;
+            assertFalse(window.shouldMoveRight(middleFrame + FRAME_SIZE));
+            assertTrue(window.shouldMoveRight(middleFrame + FRAME_SIZE + 1));
+            assertFalse(window.shouldMoveLeft(middleFrame));
+            assertTrue(window.shouldMoveLeft(middleFrame - 1));
+
+            // a moved window is where centering on its new middle frame places it
+            window.moveRight();
+            StreamingWindow centered = new StreamingWindow(FRAME_SIZE, margin);
+            centered.centerOn(middleFrame + FRAME_SIZE);
+            assertEquals(centered.getLeftBoundary(), window.getLeftBoundary());
+            assertEquals(centered.getRightBoundary(), window.getRightBoundary());
+            window.moveLeft();
+            window.moveLeft();
+            centered.centerOn(middleFrame - FRAME_SIZE);
+            assertEquals(centered.getLeftBoundary(), window.getLeftBoundary());
+            assertEquals(centered.getRightBoundary(), window.getRightBoundary());
+        }
+    }
+
+    @Test
+    void newMarginTakesEffectWhenCentered() {
+        StreamingWindow window = new StreamingWindow(FRAME_SIZE, 1);
+        window.setMargin(2);
+        assertEquals(-FRAME_SIZE, window.getLeftBoundary());
+        window.centerOn(-0.5f);
+        assertEquals(-4 * FRAME_SIZE, window.getLeftBoundary());
+        assertEquals(3 * FRAME_SIZE, window.getRightBoundary());
+    }
+}
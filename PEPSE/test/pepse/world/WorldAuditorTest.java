@@ -0,0 +1,126 @@
+package pepse.world;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import danogl.util.Vector2;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pepse.EngineStubs;
+import pepse.world.trees.Tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the world auditor against a world which is streamed the same way the game streams it, into the
+ * objects of a game, in layers of its own: a world which is streamed in and out is clean, and an object
+ * which is added or removed behind the back of the world is reported.
+ */
+public class WorldAuditorTest {
+    /* Constants */
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1280, 720);
+    private static final int SEED = 1234;
+    private static final int FRAME_SIZE = 420;
+    private static final int FRAMES_IN_WINDOW = 5;
+    // a window of a forest, so every kind of world object is streamed
+    private static final int FIRST_FRAME_X = 10 * FRAME_SIZE;
+    // layers which the game does not use, so only the objects of the audited world are in them
+    private static final int TREE_LAYER = Layer.STATIC_OBJECTS + 1;
+    private static final int TERRAIN_LAYER = Layer.STATIC_OBJECTS + 2;
+    private static final int BACKGROUND_LAYER = Layer.STATIC_OBJECTS + 3;
+    private static final int LEAVES_LAYER = Layer.STATIC_OBJECTS + 4;
+    private static final int FALLING_LEAVES_LAYER = Layer.STATIC_OBJECTS + 5;
+
+    /* Fields */
+    private GameObjectCollection gameObjects;
+    private MutationQueue mutations;
+    private WorldGenerator worldGenerator;
+    private WorldAuditor worldAuditor;
+    private int leftWorldBoundary;
+    private int rightWorldBoundary;
+
+    @BeforeEach
+    void createWorld() {
+        gameObjects = EngineStubs.startGame(WINDOW_DIMENSIONS).objects();
+
+        mutations = new MutationQueue(gameObjects);
+        Terrain terrain = new Terrain(mutations, TERRAIN_LAYER, WINDOW_DIMENSIONS, SEED);
+        terrain.setBackgroundLayer(BACKGROUND_LAYER);
+        Tree trees = new Tree(mutations, TREE_LAYER, TERRAIN_LAYER, WINDOW_DIMENSIONS, SEED,
+                terrain::groundHeightAt);
+        trees.setLeavesLayers(LEAVES_LAYER, FALLING_LEAVES_LAYER);
+        worldGenerator = new WorldGenerator(terrain, trees, FRAME_SIZE, SEED);
+        worldAuditor = new WorldAuditor(gameObjects, terrain, trees, TERRAIN_LAYER, BACKGROUND_LAYER,
+                TREE_LAYER, LEAVES_LAYER, FALLING_LEAVES_LAYER);
+
+        leftWorldBoundary = FIRST_FRAME_X;
+        rightWorldBoundary = leftWorldBoundary + FRAMES_IN_WINDOW * FRAME_SIZE;
+        worldGenerator.createInRange(leftWorldBoundary, rightWorldBoundary);
+        mutations.flush();
+    }
+
+    @Test
+    void streamedWorldIsClean() {
+        WorldAuditor.Report report = audit();
+        assertTrue(report.isClean(), report.toString());
+        assertTrue(report.getExpected(MemoryBudget.Subsystem.TERRAIN) > 0);
+        assertTrue(report.getExpected(MemoryBudget.Subsystem.TRUNKS) > 0);
+        assertTrue(report.getExpected(MemoryBudget.Subsystem.LEAVES) > 0);
+
+        // to the right and back to the left, a frame at a time, as the avatar walks
+        for (int frame = 0; frame < FRAMES_IN_WINDOW; frame++) {
+            worldGenerator.removeInRange(leftWorldBoundary, leftWorldBoundary + FRAME_SIZE);
+            worldGenerator.createInRange(rightWorldBoundary, rightWorldBoundary + FRAME_SIZE);
+            leftWorldBoundary += FRAME_SIZE;
+            rightWorldBoundary += FRAME_SIZE;
+            mutations.flush();
+            report = audit();
+            assertTrue(report.isClean(), report.toString());
+        }
+        for (int frame = 0; frame < FRAMES_IN_WINDOW; frame++) {
+            worldGenerator.removeInRange(rightWorldBoundary - FRAME_SIZE, rightWorldBoundary);
+            worldGenerator.createInRange(leftWorldBoundary - FRAME_SIZE, leftWorldBoundary);
+            leftWorldBoundary -= FRAME_SIZE;
+            rightWorldBoundary -= FRAME_SIZE;
+            mutations.flush();
+            report = audit();
+            assertTrue(report.isClean(), report.toString());
+        }
+    }
+
+    @Test
+    void leakedObjectIsReported() {
+        gameObjects.addGameObject(new GameObject(Vector2.ZERO, Vector2.ONES, null), TERRAIN_LAYER);
+        WorldAuditor.Report report = audit();
+        assertFalse(report.isClean());
+        assertEquals(1, report.getNumOfLeaked());
+        assertEquals(0, report.getNumOfOrphaned());
+    }
+
+    @Test
+    void orphanedObjectIsReported() {
+        GameObject block = gameObjects.objectsInLayer(TERRAIN_LAYER).iterator().next();
+        gameObjects.removeGameObject(block, TERRAIN_LAYER);
+        WorldAuditor.Report report = audit();
+        assertFalse(report.isClean());
+        assertEquals(0, report.getNumOfLeaked());
+        assertEquals(1, report.getNumOfOrphaned());
+    }
+
+    @Test
+    void frameLeftBehindIsStale() {
+        // the window moved on, but its first frame was never streamed out
+        WorldAuditor.Report report = worldAuditor.audit(leftWorldBoundary + FRAME_SIZE, rightWorldBoundary);
+        assertFalse(report.isClean());
+        assertTrue(report.getNumOfStale() > 0);
+    }
+
+    /*
+     * audits the world against its window
+     */
+    private WorldAuditor.Report audit() {
+        return worldAuditor.audit(leftWorldBoundary, rightWorldBoundary);
+    }
+}
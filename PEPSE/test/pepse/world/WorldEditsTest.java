@@ -0,0 +1,168 @@
+package pepse.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the world edits against a plain map of the same edits, over many chunks on both sides of column
+ * 0, as edits are made, forgotten, written and read back.
+ */
+public class WorldEditsTest {
+    /* Constants */
+    private static final int SEED = 1234;
+    private static final int NUM_OF_EDITS = 20000;
+    private static final int COLUMN_RANGE = 100 * WorldEdits.CHUNK_COLUMNS;
+    private static final int ROW_RANGE = 40;
+
+    @Test
+    void editIsKeptUntilForgotten() {
+        WorldEdits edits = new WorldEdits();
+        int placed = WorldEdits.placed(SurfaceMaterial.STONE);
+        edits.set(-1, 3, WorldEdits.DUG);
+        edits.set(-1, 5, placed);
+        assertEquals(WorldEdits.DUG, edits.get(-1, 3));
+        assertEquals(placed, edits.get(-1, 5));
+        assertEquals(WorldEdits.NONE, edits.get(-1, 4));
+        assertEquals(WorldEdits.NONE, edits.get(WorldEdits.CHUNK_COLUMNS - 1, 3));
+        assertEquals(SurfaceMaterial.STONE, WorldEdits.materialOf(edits.get(-1, 5)));
+        assertEquals(2, edits.size());
+
+        edits.set(-1, 3, WorldEdits.NONE);
+        edits.set(-1, 5, WorldEdits.NONE);
+        assertEquals(WorldEdits.NONE, edits.get(-1, 3));
+        assertEquals(0, edits.size());
+        assertFalse(edits.hasEdits(-1));
+    }
+
+    @Test
+    void columnHasEditsFromItsFirstEditToItsLast() {
+        WorldEdits edits = new WorldEdits();
+        int column = 2 * WorldEdits.CHUNK_COLUMNS + 5;
+        assertFalse(edits.hasEdits(column));
+        edits.set(column, 1, WorldEdits.DUG);
+        edits.set(column, 2, WorldEdits.DUG);
+        assertTrue(edits.hasEdits(column));
+        // the neighbours in the chunk and the same column of other chunks are not edited
+        assertFalse(edits.hasEdits(column - 1));
+        assertFalse(edits.hasEdits(column + 1));
+        assertFalse(edits.hasEdits(column - WorldEdits.CHUNK_COLUMNS));
+        assertFalse(edits.hasEdits(-column));
+
+        edits.set(column, 1, WorldEdits.NONE);
+        assertTrue(edits.hasEdits(column));
+        edits.set(column, 2, WorldEdits.NONE);
+        assertFalse(edits.hasEdits(column));
+    }
+
+    @Test
+    void placedBlocksAreCountedAndCollected() {
+        WorldEdits edits = new WorldEdits();
+        edits.set(7, 10, WorldEdits.placed(SurfaceMaterial.SAND));
+        edits.set(7, 11, WorldEdits.DUG);
+        edits.set(7, 12, WorldEdits.placed(SurfaceMaterial.SOIL));
+        edits.set(8, 10, WorldEdits.placed(SurfaceMaterial.STONE));
+        assertEquals(2, edits.getPlaced(7, null, null));
+
+        int[] rows = new int[2];
+        SurfaceMaterial[] materials = new SurfaceMaterial[2];
+        assertEquals(2, edits.getPlaced(7, rows, materials));
+        // the order of the slots is not kept, so the rows are put in order
+        if (rows[0] > rows[1]) {
+            rows = new int[]{rows[1], rows[0]};
+            materials = new SurfaceMaterial[]{materials[1], materials[0]};
+        }
+        assertArrayEquals(new int[]{10, 12}, rows);
+        assertEquals(SurfaceMaterial.SAND, materials[0]);
+        assertEquals(SurfaceMaterial.SOIL, materials[1]);
+    }
+
+    @Test
+    void manyEditsMatchAPlainMap() throws IOException {
+        WorldEdits edits = new WorldEdits();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(SEED);
+        for (int i = 0; i < NUM_OF_EDITS; i++) {
+            int column = random.nextInt(2 * COLUMN_RANGE) - COLUMN_RANGE;
+            int row = random.nextInt(ROW_RANGE);
+            // a third of the edits forget a block
+            int edit = random.nextInt(3) == 0 ? WorldEdits.NONE
+                    : 1 + random.nextInt(1 + SurfaceMaterial.values().length);
+            edits.set(column, row, edit);
+            if (edit == WorldEdits.NONE) {
+                expected.remove(keyOf(column, row));
+            } else {
+                expected.put(keyOf(column, row), edit);
+            }
+        }
+        assertMatches(expected, edits);
+
+        // every chunk left of column 0 empties out, and is removed
+        for (Long key : expected.keySet().toArray(new Long[0])) {
+            int column = (int) (key >> Integer.SIZE);
+            if (column < 0) {
+                edits.set(column, (int) (key & 0xFFFFFFFFL), WorldEdits.NONE);
+                expected.remove(key);
+            }
+        }
+        assertMatches(expected, edits);
+
+        ByteBuffer buffer = ByteBuffer.allocate(edits.serializedSize());
+        edits.write(buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertMatches(expected, WorldEdits.read(buffer));
+    }
+
+    @Test
+    void truncatedEditsAreNotRead() {
+        WorldEdits edits = new WorldEdits();
+        edits.set(-100, 3, WorldEdits.DUG);
+        edits.set(100, 4, WorldEdits.placed(SurfaceMaterial.SOIL));
+        ByteBuffer buffer = ByteBuffer.allocate(edits.serializedSize());
+        edits.write(buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+        assertThrows(IOException.class, () -> WorldEdits.read(buffer));
+    }
+
+    @Test
+    void rowOutOfRangeIsRejected() {
+        WorldEdits edits = new WorldEdits();
+        assertThrows(IllegalArgumentException.class, () -> edits.set(0, WorldEdits.MAX_ROWS, WorldEdits.DUG));
+        assertThrows(IllegalArgumentException.class, () -> edits.set(0, -1, WorldEdits.DUG));
+    }
+
+    /*
+     * checks every block of the range of the edits, and every column, against the expected edits
+     */
+    private static void assertMatches(Map<Long, Integer> expected, WorldEdits edits) {
+        assertEquals(expected.size(), edits.size());
+        for (int column = -COLUMN_RANGE; column < COLUMN_RANGE; column++) {
+            boolean isEdited = false;
+            for (int row = 0; row < ROW_RANGE; row++) {
+                int edit = expected.getOrDefault(keyOf(column, row), WorldEdits.NONE);
+                assertEquals(edit, edits.get(column, row));
+                isEdited |= edit != WorldEdits.NONE;
+            }
+            assertEquals(isEdited, edits.hasEdits(column));
+        }
+    }
+
+    /*
+     * a key of a block in the plain map
+     */
+    private static long keyOf(int column, int row) {
+        return (long) column << Integer.SIZE | row;
+    }
+}
@@ -0,0 +1,81 @@
+package pepse.world.trees;
+
+import danogl.GameObject;
+import danogl.collisions.GameObjectCollection;
+import danogl.collisions.Layer;
+import danogl.util.Vector2;
+import org.junit.jupiter.api.Test;
+import pepse.EngineStubs;
+import pepse.world.MutationQueue;
+import pepse.world.Terrain;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Checks that a leaf which fell without landing on the ground, as falling leaves do at the lower qualities,
+ * is put back on its tree at rest.
+ */
+public class LeafFallTest {
+    /* Constants */
+    private static final Vector2 WINDOW_DIMENSIONS = new Vector2(1280, 720);
+    private static final int SEED = 1234;
+    private static final float DELTA_TIME = 1 / 30f;
+    // trees grow in this range, and the first of their leaves falls and returns long before the limit
+    private static final int MIN_X = 4200;
+    private static final int MAX_X = 6300;
+    private static final float MAX_SECONDS = 600;
+    private static final float SECONDS_AT_REST = 3;
+    // layers which the game does not use, so only the tested trees are in them
+    private static final int TREE_LAYER = Layer.STATIC_OBJECTS + 1;
+    private static final int GROUND_LAYER = Layer.STATIC_OBJECTS + 2;
+    private static final int LEAVES_LAYER = Layer.STATIC_OBJECTS + 3;
+    private static final int FALLING_LEAVES_LAYER = Layer.STATIC_OBJECTS + 4;
+
+    @Test
+    void leafWhichDidNotLandStaysOnItsTree() {
+        EngineStubs.WindowlessGame game = EngineStubs.startGame(WINDOW_DIMENSIONS);
+        GameObjectCollection gameObjects = game.objects();
+        MutationQueue mutations = new MutationQueue(gameObjects);
+        Terrain terrain = new Terrain(mutations, GROUND_LAYER, WINDOW_DIMENSIONS, SEED);
+        Tree trees = new Tree(mutations, TREE_LAYER, GROUND_LAYER, WINDOW_DIMENSIONS, SEED,
+                terrain::groundHeightAt);
+        trees.setLeavesLayers(LEAVES_LAYER, FALLING_LEAVES_LAYER);
+        trees.setFallingLeavesCollide(false);
+        trees.createInRange(MIN_X, MAX_X);
+        mutations.flush();
+
+        Set<GameObject> fallenLeaves = Collections.newSetFromMap(new IdentityHashMap<>());
+        Leaf returnedLeaf = null;
+        for (float time = 0; time < MAX_SECONDS && returnedLeaf == null; time += DELTA_TIME) {
+            game.update(DELTA_TIME);
+            mutations.flush();
+            for (GameObject leaf : gameObjects.objectsInLayer(FALLING_LEAVES_LAYER)) {
+                fallenLeaves.add(leaf);
+            }
+            // a leaf which fell is back in the layer of the leaves on the trees once it returned
+            for (GameObject leaf : gameObjects.objectsInLayer(LEAVES_LAYER)) {
+                if (fallenLeaves.contains(leaf)) {
+                    returnedLeaf = (Leaf) leaf;
+                }
+            }
+        }
+        assertNotNull(returnedLeaf, "no leaf fell and returned to its tree");
+
+        float x = returnedLeaf.getTopLeftCorner().x();
+        float y = returnedLeaf.getTopLeftCorner().y();
+        for (float time = 0; time < SECONDS_AT_REST; time += DELTA_TIME) {
+            game.update(DELTA_TIME);
+            mutations.flush();
+        }
+        assertEquals(Leaf.LEAF_ON_TREE_TAG, returnedLeaf.getTag());
+        assertEquals(x, returnedLeaf.getTopLeftCorner().x(), 0);
+        assertEquals(y, returnedLeaf.getTopLeftCorner().y(), 0);
+        assertEquals(0, returnedLeaf.getVelocity().x(), 0);
+        assertEquals(0, returnedLeaf.getVelocity().y(), 0);
+    }
+}